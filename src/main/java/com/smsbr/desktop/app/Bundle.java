@@ -105,6 +105,13 @@ public class Bundle {
 	mLocale = locale;
     }
 
+    /**
+     * @return The bundle's locale.
+     */
+    public Locale getLocale() {
+	return mLocale;
+    }
+
     /**
      * Set the bundle's name.
      * 
@@ -44,6 +44,7 @@ public class Preferences {
 
     public static final String DEFAULT_PREFERENCES_DIR = ".smsbr-viewer";
     public static final String DEFAULT_PREFERENCES_FILE = "preferences.properties";
+    public static final String DEFAULT_CACHE_DIR = "cache";
 
     public static final String P_MESSAGE_WIDTH = "preferredMessageWidth";
     public static final String P_ORDER_BY = "preferredOrderBy";
@@ -56,6 +57,10 @@ public class Preferences {
     public static final String P_LOAD_LAST_FILE = "loadLastFile";
     public static final String P_LANGUAGE = "language";
     public static final String P_EMOJI_SIZE = "emojiSize";
+    public static final String P_EXPORT_ASSETS = "exportAssets";
+    public static final String P_OFF_HEAP_STORAGE = "offHeapStorage";
+    public static final String P_LOAD_ON_DEMAND = "loadOnDemand";
+    public static final String P_FAST_PARSER = "fastParser";
 
     private String messageWidth;
     private OrderBy orderBy;
@@ -67,6 +72,10 @@ public class Preferences {
     private String lastFile;
     private boolean isLoadLastFile;
     private int preferredEmojiSize;
+    private boolean isExportAssets;
+    private boolean isOffHeapStorage;
+    private boolean isLoadOnDemand;
+    private boolean isFastParser;
 
     private PropertyChangeSupport mPropChangeSupport;
 
@@ -126,6 +135,39 @@ public class Preferences {
 	return preferredEmojiSize;
     }
 
+    /**
+     * @return <code>true</code> if images and emojis are exported as separate
+     *         files, <code>false</code> if they are in-lined in HTML pages.
+     */
+    public boolean isExportAssets() {
+	return isExportAssets;
+    }
+
+    /**
+     * @return <code>true</code> if the bodies of the messages are stored out of
+     *         the Java heap when a file is loaded.
+     */
+    public boolean isOffHeapStorage() {
+	return isOffHeapStorage;
+    }
+
+    /**
+     * @return <code>true</code> if a loaded file is only indexed, and its
+     *         conversations parsed when they are displayed.
+     */
+    public boolean isLoadOnDemand() {
+	return isLoadOnDemand;
+    }
+
+    /**
+     * @return <code>true</code> if a loaded file is parsed with the byte-level
+     *         parser specialized for SMS Backup &amp; Restore files, instead of
+     *         a SAX parser.
+     */
+    public boolean isFastParser() {
+	return isFastParser;
+    }
+
     public void setPreferredMessageWidth(String s) {
 	String oldValue = messageWidth;
 	if (s != null && s.matches("[0-9]+(%|px)")) {
@@ -207,6 +249,22 @@ public class Preferences {
 	isLoadLastFile = loadLastFile;
     }
 
+    public void setExportAssets(boolean exportAssets) {
+	isExportAssets = exportAssets;
+    }
+
+    public void setOffHeapStorage(boolean offHeapStorage) {
+	isOffHeapStorage = offHeapStorage;
+    }
+
+    public void setLoadOnDemand(boolean loadOnDemand) {
+	isLoadOnDemand = loadOnDemand;
+    }
+
+    public void setFastParser(boolean fastParser) {
+	isFastParser = fastParser;
+    }
+
     public void setPreferredEmojiSize(int preferredEmojiSize) {
 	int oldValue = this.preferredEmojiSize;
 	this.preferredEmojiSize = preferredEmojiSize;
@@ -216,11 +274,26 @@ public class Preferences {
 	}
     }
 
+    /**
+     * @return The directory where preferences are stored (in the user's home).
+     */
+    public static File getPreferencesDirectory() {
+	return new File(FileUtils.getUserDirectory(), DEFAULT_PREFERENCES_DIR);
+    }
+
+    /**
+     * @return The directory where the application can store cached data between
+     *         two sessions.
+     */
+    public static File getCacheDirectory() {
+	return new File(getPreferencesDirectory(), DEFAULT_CACHE_DIR);
+    }
+
     /**
      * Load the default preferences.
      */
     public void load() {
-	File prefsDir = new File(FileUtils.getUserDirectory(), DEFAULT_PREFERENCES_DIR);
+	File prefsDir = getPreferencesDirectory();
 	if (!prefsDir.exists()) {
 	    prefsDir.mkdirs();
 	}
@@ -235,7 +308,7 @@ public class Preferences {
     }
 
     public void save() {
-	File prefsDir = new File(FileUtils.getUserDirectory(), DEFAULT_PREFERENCES_DIR);
+	File prefsDir = getPreferencesDirectory();
 	File prefsFile = new File(prefsDir, DEFAULT_PREFERENCES_FILE);
 	save(prefsFile);
     }
@@ -251,6 +324,10 @@ public class Preferences {
 	p.setProperty(P_PALETTE, String.valueOf(palette));
 	p.setProperty(P_LAST_FILE, String.valueOf(lastFile));
 	p.setProperty(P_LOAD_LAST_FILE, String.valueOf(isLoadLastFile));
+	p.setProperty(P_EXPORT_ASSETS, String.valueOf(isExportAssets));
+	p.setProperty(P_OFF_HEAP_STORAGE, String.valueOf(isOffHeapStorage));
+	p.setProperty(P_LOAD_ON_DEMAND, String.valueOf(isLoadOnDemand));
+	p.setProperty(P_FAST_PARSER, String.valueOf(isFastParser));
 	try (FileOutputStream out = new FileOutputStream(dest);) {
 	    p.store(out, null);
 	} catch (IOException e) {
@@ -268,6 +345,10 @@ public class Preferences {
 	setPreferredLocale(Locale.getDefault());
 	setLastFile(null);
 	setLoadLastFile(false);
+	setExportAssets(false);
+	setOffHeapStorage(false);
+	setLoadOnDemand(false);
+	setFastParser(false);
 	setPreferredEmojiSize(28);
     }
 
@@ -284,6 +365,10 @@ public class Preferences {
 	    setPreferredPalette(Integer.parseInt(p.getProperty(P_PALETTE, "1")));
 	    setLastFile(p.getProperty(P_LAST_FILE));
 	    setLoadLastFile(Boolean.parseBoolean(p.getProperty(P_LOAD_LAST_FILE, "false")));
+	    setExportAssets(Boolean.parseBoolean(p.getProperty(P_EXPORT_ASSETS, "false")));
+	    setOffHeapStorage(Boolean.parseBoolean(p.getProperty(P_OFF_HEAP_STORAGE, "false")));
+	    setLoadOnDemand(Boolean.parseBoolean(p.getProperty(P_LOAD_ON_DEMAND, "false")));
+	    setFastParser(Boolean.parseBoolean(p.getProperty(P_FAST_PARSER, "false")));
 	    setPreferredLocale(new Locale(p.getProperty(P_LOCALE, "fr")));
 	    setPreferredEmojiSize(Integer.parseInt(p.getProperty(P_EMOJI_SIZE, "28")));
 
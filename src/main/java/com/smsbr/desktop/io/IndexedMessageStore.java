@@ -0,0 +1,174 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.smsbr.desktop.model.Contact;
+import com.smsbr.desktop.model.IMessageStore;
+import com.smsbr.desktop.model.Sms;
+
+/**
+ * Message store reading conversations on demand from their backup file, using
+ * its index (see {@link SmsBackupFileIndex}) : the list of contacts, the number
+ * and the dates of their messages are known without parsing any message, and a
+ * conversation is only parsed when its messages are requested.
+ * 
+ * The most recently read conversations are kept in a small LRU cache. The store
+ * is read-only : messages can't be added.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class IndexedMessageStore implements IMessageStore {
+
+    /** Number of conversations kept in memory. */
+    public static final int CACHE_SIZE = 8;
+
+    /** The backup file. */
+    protected SmsBackupFile mFile;
+    /** Its index. */
+    protected SmsBackupFileIndex mIndex;
+    /** Conversations already read, least recently used first. */
+    protected Map<Contact, List<Sms>> mCache;
+
+    /**
+     * Constructor.
+     * 
+     * @param file  The backup file.
+     * @param index Its index (see {@link SmsBackupFile#buildIndex}).
+     */
+    public IndexedMessageStore(SmsBackupFile file, SmsBackupFileIndex index) {
+	mFile = file;
+	mIndex = index;
+	mCache = new LinkedHashMap<>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<Contact, List<Sms>> eldest) {
+		return size() > CACHE_SIZE;
+	    }
+	};
+    }
+
+    /**
+     * Not supported : messages are read from the backup file.
+     */
+    @Override
+    public void add(Sms message) {
+	throw new UnsupportedOperationException("Messages are read from the backup file");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void remove(Contact contact) {
+	mIndex.remove(contact);
+	mCache.remove(contact);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts() {
+	return mIndex.getContacts();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(Contact contact) {
+	return mIndex.size(contact);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDate(Contact contact, int index) {
+	return mIndex.getDate(contact, index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Sms> getMessages(Contact contact, int from, int to) {
+	return getConversation(contact).subList(from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Sms> getMessagesWithImages(Contact contact) {
+	return getConversation(contact).stream().filter(sms -> !sms.getImages().isEmpty())
+		.collect(Collectors.toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void dispose() {
+	mCache.clear();
+	SpilledAttributeStore spilled = mFile.detachSpilledAttributes();
+	if (spilled != null) {
+	    spilled.dispose();
+	}
+    }
+
+    /**
+     * Get all the messages of a contact, from the cache or from the file.
+     * 
+     * @param contact The contact.
+     * @return The messages, in ascending order of dates.
+     * @throws UncheckedIOException If the file can't be read.
+     */
+    protected synchronized List<Sms> getConversation(Contact contact) {
+	if (mIndex.size(contact) == 0) {
+	    return Collections.emptyList();
+	}
+	List<Sms> messages = mCache.get(contact);
+	if (messages == null) {
+	    try {
+		messages = mFile.parseMessages(mIndex, contact);
+	    } catch (IOException e) {
+		throw new UncheckedIOException(e);
+	    } catch (SAXException | ParserConfigurationException e) {
+		throw new UncheckedIOException(new IOException(e));
+	    }
+	    // Stable : messages with the same date keep the order of the file
+	    messages.sort(Comparator.comparingLong(Sms::getDate));
+	    mCache.put(contact, messages);
+	}
+	return messages;
+    }
+}
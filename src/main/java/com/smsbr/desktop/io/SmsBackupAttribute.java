@@ -0,0 +1,128 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Attributes of the elements of a backup file that are read to build the
+ * messages. The values of the attributes of an element are given as an array
+ * indexed by the ordinals of this enum (see {@link SmsBackupContentHandler}) :
+ * the other attributes are never decoded.
+ * 
+ * @author Alexandre DERMONT
+ */
+public enum SmsBackupAttribute {
+
+    /** Phone number(s) of the contact ("sms", "mms" and "addr"). */
+    ADDRESS("address"),
+    /** Date of the message, in milliseconds ("sms" and "mms"). */
+    DATE("date"),
+    /** Name of the contact ("sms" and "mms"). */
+    CONTACT_NAME("contact_name"),
+    /** Phone number of the service center ("sms"). */
+    SERVICE_CENTER("service_center"),
+    /** Type of the message ("sms") or of the address ("addr"). */
+    TYPE("type"),
+    /** Text of the message ("sms"). */
+    BODY("body"),
+    /** Text of the message ("mms"). */
+    SNIPPET("snippet"),
+    /** Type of the message ("mms"). */
+    M_TYPE("m_type"),
+    /** Text or SMIL layout ("part"). */
+    TEXT("text"),
+    /** Name of the content ("part"). */
+    CL("cl"),
+    /** MIME type of the content ("part"). */
+    CT("ct"),
+    /** Base64 content ("part"). */
+    DATA("data");
+
+    /** Number of attributes, i.e. the length of the arrays of values. */
+    public static final int COUNT = values().length;
+
+    /** The attributes (a copy of {@link #values()}, made once). */
+    private static final SmsBackupAttribute[] VALUES = values();
+
+    /** Attributes, by name in lower case. */
+    private static final Map<String, SmsBackupAttribute> BY_NAME = new HashMap<>();
+
+    static {
+	for (SmsBackupAttribute attribute : values()) {
+	    BY_NAME.put(attribute.mName, attribute);
+	}
+    }
+
+    /** Name of the attribute, in lower case. */
+    private final String mName;
+    /** Name of the attribute, in ASCII. */
+    private final byte[] mBytes;
+
+    /**
+     * Constructor.
+     * 
+     * @param name Name of the attribute, in lower case.
+     */
+    SmsBackupAttribute(String name) {
+	mName = name;
+	mBytes = name.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return The name of the attribute, in lower case.
+     */
+    public String getName() {
+	return mName;
+    }
+
+    /**
+     * @param name The name of an attribute (case is ignored).
+     * @return The attribute, <code>null</code> if it is not read.
+     */
+    public static SmsBackupAttribute forName(String name) {
+	SmsBackupAttribute attribute = BY_NAME.get(name);
+	return attribute != null ? attribute : BY_NAME.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param bytes  Bytes containing the name of an attribute.
+     * @param start  Index of the name in the bytes.
+     * @param length Length of the name.
+     * @return The attribute (compared ignoring ASCII case), <code>null</code> if
+     *         it is not read.
+     */
+    public static SmsBackupAttribute forName(ByteBuffer bytes, int start, int length) {
+	for (SmsBackupAttribute attribute : VALUES) {
+	    byte[] name = attribute.mBytes;
+	    if (name.length != length) {
+		continue;
+	    }
+	    int i = 0;
+	    while (i < length && SmsBackupFileScanner.equalsIgnoreCase(bytes.get(start + i), name[i])) {
+		i++;
+	    }
+	    if (i == length) {
+		return attribute;
+	    }
+	}
+	return null;
+    }
+}
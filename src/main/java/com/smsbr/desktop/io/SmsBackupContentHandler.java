@@ -0,0 +1,83 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Handler of the content of a backup file, fed either by a SAX parser or by
+ * the {@link SmsBackupFileFastParser}. Elements are given with the values of
+ * their {@link SmsBackupAttribute attributes} only, so that both parsers build
+ * exactly the same messages.
+ * 
+ * @author Alexandre DERMONT
+ */
+public abstract class SmsBackupContentHandler extends DefaultHandler {
+
+    /**
+     * Called at the start of an element.
+     * 
+     * @param name   Name of the element.
+     * @param values Values of its attributes, indexed by the ordinals of
+     *               {@link SmsBackupAttribute} (<code>null</code> if missing).
+     * @throws SAXException To stop the parsing.
+     */
+    public abstract void startElement(String name, String[] values) throws SAXException;
+
+    /**
+     * Called at the end of an element.
+     * 
+     * @param name Name of the element.
+     * @throws SAXException To stop the parsing.
+     */
+    public abstract void endElement(String name) throws SAXException;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+	startElement(qName, toValues(atts));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+	endElement(qName);
+    }
+
+    /**
+     * Get the values of the attributes that are read.
+     * 
+     * @param atts Attributes of an element.
+     * @return Their values, indexed by the ordinals of {@link SmsBackupAttribute}
+     *         (<code>null</code> if missing).
+     */
+    public static String[] toValues(Attributes atts) {
+	String[] values = new String[SmsBackupAttribute.COUNT];
+	for (int iAtt = 0; iAtt < atts.getLength(); iAtt++) {
+	    SmsBackupAttribute attribute = SmsBackupAttribute.forName(atts.getLocalName(iAtt));
+	    if (attribute != null) {
+		values[attribute.ordinal()] = atts.getValue(iAtt);
+	    }
+	}
+	return values;
+    }
+}
@@ -15,17 +15,32 @@
  */
 package com.smsbr.desktop.io;
 
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,25 +48,28 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import com.google.i18n.phonenumbers.PhoneNumberMatch;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberFormat;
 import com.smsbr.desktop.model.Contact;
-import com.smsbr.desktop.model.Conversations;
+import com.smsbr.desktop.model.ContactPool;
 import com.smsbr.desktop.model.ImagePart;
+import com.smsbr.desktop.model.ImagePayload;
+import com.smsbr.desktop.model.ImagePayloadStore;
 import com.smsbr.desktop.model.Sms;
 import com.smsbr.desktop.services.SmsBackupFileLoadingTaskHandler;
+import com.smsbr.desktop.util.ImageCache;
 import com.smsbr.desktop.util.ImageUtil;
 
 import javafx.concurrent.Task;
-import javafx.scene.image.Image;
 
 /**
  * Represents an XML File exported in the SMS Backup & Restore format.
@@ -84,20 +102,42 @@ public class SmsBackupFile extends File {
 
     // SMS fields
     private static final String SPEC_TYPE = "type";
-    private static final String SPEC_BODY = "body";
 
     // MMS fields
     private static final String SPEC_MTYPE = "m_type";
-    private static final String SPEC_TEXT = "text";
     private static final String SPEC_PART = "part";
-    private static final String SPEC_CL = "cl";
-    private static final String SPEC_CT = "ct";
     private static final String SPEC_DATA = "data";
     private static final String SPEC_ADDR = "addr";
 
+    /** Width of the images of a MMS, in the "text" attribute of its parts. */
+    private static final Pattern ROOT_LAYOUT_WIDTH_PATTERN =
+	    Pattern.compile("<root-layout.*width=\"([0-9]*)[^\"]*\"");
+    /** Height of the images of a MMS, in the "text" attribute of its parts. */
+    private static final Pattern ROOT_LAYOUT_HEIGHT_PATTERN =
+	    Pattern.compile("<root-layout.*height=\"([0-9]*)[^\"]*\"");
+
+    /** Property of the JDK parser limiting the size of an entity (0 : none). */
+    private static final String JDK_MAX_GENERAL_ENTITY_SIZE =
+	    "http://www.oracle.com/xml/jaxp/properties/maxGeneralEntitySizeLimit";
+    /** Property of the JDK parser limiting the size of all entities (0 : none). */
+    private static final String JDK_TOTAL_ENTITY_SIZE =
+	    "http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit";
+
     // -------------------------------------------------------------------
 
     private transient SmsBackupFileMetadata metadata;
+    /** Contacts of the current load, shared by their messages. */
+    private transient ContactPool contactPool = new ContactPool();
+    /** Normalized phone numbers, by raw phone number (normalization is costly). */
+    private transient Map<String, String> normalizedNumbers = new HashMap<>();
+    /** Filters of the current load. */
+    private transient SmsBackupFileLoadOptions loadOptions = new SmsBackupFileLoadOptions();
+    /** Directory of the temporary file of the spilled attribute values. */
+    private transient File spillDirectory = new File(System.getProperty("java.io.tmpdir"));
+    /** Oversized attribute values of the parsed messages, <code>null</code> if none. */
+    private transient SpilledAttributeStore spilledAttributes;
+    /** <code>true</code> to parse the content with {@link SmsBackupFileFastParser}. */
+    private transient boolean isFastParsing;
 
     /**
      * Constructor.
@@ -148,8 +188,29 @@ public class SmsBackupFile extends File {
      */
     public void parse(Task<?> task, SmsBackupFileLoadingTaskHandler fileHandler)
 	    throws IOException, SAXException, ParserConfigurationException {
+	parse(task, fileHandler, new SmsBackupFileLoadOptions());
+    }
+
+    /**
+     * Parse the file, loading only the messages accepted by the options.
+     * 
+     * @param task        The task this method is called from. Can be
+     *                    <code>null</code>.
+     * @param fileHandler The handler notified of the metadata and of each loaded
+     *                    message.
+     * @param options     Filters of the loaded messages.
+     * @throws IOException                  In case of an I/O error.
+     * @throws SAXException                 If the task has been cancelled or if a
+     *                                      parsing exception occurs.
+     * @throws ParserConfigurationException If the parser is not well configured.
+     */
+    public void parse(Task<?> task, SmsBackupFileLoadingTaskHandler fileHandler, SmsBackupFileLoadOptions options)
+	    throws IOException, SAXException, ParserConfigurationException {
 
 	metadata.clear();
+	contactPool = new ContactPool();
+	normalizedNumbers = new HashMap<>();
+	loadOptions = options;
 
 	// Parse the file to read metadata only (count "sms" and "mms" items.
 	// This allows to provide progress information during loading.
@@ -175,8 +236,7 @@ public class SmsBackupFile extends File {
 	// Using lambdas avoids evaluating the argument if the log level is filtered
 	logger.log(Level.INFO, () -> String.format("Parsing metadata of file '%s'", getAbsolutePath()));
 
-	SAXParserFactory parserFactory = SAXParserFactory.newDefaultInstance();
-	SAXParser reader = parserFactory.newSAXParser();
+	SAXParser reader = newParser();
 
 	DefaultHandler metadataHandler = new DefaultHandler() {
 	    @Override
@@ -206,13 +266,18 @@ public class SmsBackupFile extends File {
 			}
 		    }
 
-		    metadata.addContact(new Contact(normalizePhoneNumber(contactNumber), contactName));
+		    metadata.addContact(contactPool.intern(normalizePhoneNumber(contactNumber), contactName));
 		}
 	    }
 	};
 
-	try (FileInputStream fis = new FileInputStream(this)) {
-	    reader.parse(new InputSource(fis), metadataHandler);
+	// Attachments are not needed : they are dropped without being materialized
+	SpilledAttributeStore discarded = new SpilledAttributeStore(spillDirectory);
+	discarded.setDiscarding(true);
+	try (Reader in = new SmsBackupFileReader(
+		new InputStreamReader(Files.newInputStream(toPath()), StandardCharsets.UTF_8), Set.of(SPEC_DATA),
+		discarded)) {
+	    reader.parse(new InputSource(in), metadataHandler);
 	}
 
 	fileHandler.onMetadataLoaded(metadata);
@@ -226,6 +291,17 @@ public class SmsBackupFile extends File {
      *         error occurred during parse.
      */
     protected String normalizePhoneNumber(String contactNumber) {
+	return normalizedNumbers.computeIfAbsent(contactNumber, this::formatE164);
+    }
+
+    /**
+     * Format a phone number in E164 international standard (see
+     * {@link #normalizePhoneNumber(String)}).
+     * 
+     * @param contactNumber The number to normalize in E164 international standard.
+     * @return the normalized number.
+     */
+    private String formatE164(String contactNumber) {
 	StringBuilder result = new StringBuilder();
 	PhoneNumberUtil phoneNumberUtil = PhoneNumberUtil.getInstance();
 
@@ -263,109 +339,289 @@ public class SmsBackupFile extends File {
 
 	logger.log(Level.INFO, () -> String.format("Parsing content of file '%s'", getAbsolutePath()));
 
-	SAXParserFactory parserFactory = SAXParserFactory.newDefaultInstance();
-	SAXParser reader = parserFactory.newSAXParser();
-
-	Conversations conversations = new Conversations();
 	Deque<Sms> stack = new ArrayDeque<>();
+	// Identical images share the same content
+	ImagePayloadStore payloads = new ImagePayloadStore();
+
+	// Images of a previously loaded file are not valid anymore
+	ImageCache.getInstance().clear();
+
+	// The file is streamed : oversized attachments are spilled to a temporary
+	// file instead of being materialized as huge strings
+	SpilledAttributeStore spilled = newSpilledAttributeStore();
+	SmsBackupContentHandler contentHandler = createContentHandler(task, stack, payloads, spilled, sms -> {
+	    metadata.addContact(sms.getContact());
+	    fileHandler.onMessageLoaded(sms);
+	});
 
-	// COMPLETELY LOAD THE FILE AS A STRING (very cost effective)
-	String content = FileUtils.readFileToString(this, StandardCharsets.UTF_8);
-	DefaultHandler contentHandler = new DefaultHandler() {
+	if (isFastParsing) {
+	    SmsBackupFileFastParser parser = new SmsBackupFileFastParser(contentHandler, spilled);
+	    parser.parse(toPath());
+	    logger.log(Level.INFO, "{0} part(s) of the file parsed with SAX", parser.getFallbackCount());
+	} else {
+	    try (Reader in = new SmsBackupFileReader(
+		    new InputStreamReader(Files.newInputStream(toPath()), StandardCharsets.UTF_8), Set.of(SPEC_DATA),
+		    spilled)) {
+		newParser().parse(new InputSource(in), contentHandler);
+	    }
+	}
+	logger.log(Level.INFO, "{0} distinct image(s), {1} duplicate(s)", payloads.size(),
+		payloads.getDuplicateCount());
+    }
+
+    /**
+     * Create the handler that reads messages, with SAX or with the fast parser.
+     * 
+     * @param task      The task this method is called from, for cancellation
+     *                  purpose. Can be <code>null</code>.
+     * @param stack     The stack of the messages being read.
+     * @param payloads  Shared contents of the images.
+     * @param spilled   Oversized attachments spilled while reading.
+     * @param onMessage Called each time a message is successfully read.
+     * @return The handler.
+     */
+    private SmsBackupContentHandler createContentHandler(Task<?> task, Deque<Sms> stack,
+	    ImagePayloadStore payloads, SpilledAttributeStore spilled, Consumer<Sms> onMessage) {
+	return new SmsBackupContentHandler() {
+
+	    /** <code>true</code> while the content of a filtered out message is read. */
+	    private boolean isSkipping;
 
 	    @Override
-	    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+	    public void startElement(String name, String[] values) throws SAXException {
 
 		if (task != null && task.isCancelled()) {
 		    // The only way to stop the loading process if the task has been cancelled
 		    throw new SAXException("Loading task cancelled");
 		}
-		if (SPEC_SMS.equalsIgnoreCase(qName)) {
-		    parseSms(stack, atts);
-		} else if (SPEC_MMS.equalsIgnoreCase(qName)) {
-		    parseMms(stack, atts);
-		} else if (SPEC_PART.equalsIgnoreCase(qName)) {
-		    parseMmsPart(stack, atts);
-		} else if (SPEC_ADDR.equalsIgnoreCase(qName)) {
-		    parseMmsAddr(stack, atts);
+		if (SPEC_SMS.equalsIgnoreCase(name)) {
+		    isSkipping = !parseSms(stack, values);
+		} else if (SPEC_MMS.equalsIgnoreCase(name)) {
+		    isSkipping = !parseMms(stack, values);
+		} else if (isSkipping && SPEC_PART.equalsIgnoreCase(name)) {
+		    // Parts and addresses of a filtered out message are ignored
+		    discardSpilledData(values, spilled);
+		} else if (!isSkipping && SPEC_PART.equalsIgnoreCase(name)) {
+		    parseMmsPart(stack, values, payloads, spilled);
+		} else if (!isSkipping && SPEC_ADDR.equalsIgnoreCase(name)) {
+		    parseMmsAddr(stack, values);
 		}
 	    }
 
 	    @Override
-	    public void endElement(String uri, String localName, String qName) throws SAXException {
+	    public void endElement(String name) throws SAXException {
 
 		if (task != null && task.isCancelled()) {
 		    throw new SAXException("Loading task cancelled");
 		}
 
-		if (SPEC_SMS.equalsIgnoreCase(qName) || SPEC_MMS.equalsIgnoreCase(qName)) {
-		    Sms sms = stack.pop();
-		    Contact contact = sms.getContact();
-
-		    if (StringUtils.isAnyBlank(contact.getCompleteName(), contact.getCompleteName())) {
-			sms.setDraft(true);
-			contact.setCompleteName("");
-			contact.setPhoneNumber("");
+		if (SPEC_SMS.equalsIgnoreCase(name) || SPEC_MMS.equalsIgnoreCase(name)) {
+		    if (!isSkipping) {
+			onMessage.accept(stack.pop());
 		    }
-		    conversations.add(sms);
-		    metadata.addContact(contact);
-		    fileHandler.onMessageLoaded(sms);
+		    isSkipping = false;
 		}
 	    }
 	};
+    }
 
-	// Replace "&#xxxxxx;" HTML codes by a custom standardized URL like
-	// "emoji://xxxxxxx;" that will be more easily converted thereafter.
-	StringBuffer sb = new StringBuffer(content.length());
-	Pattern pattern = Pattern.compile("\\&\\#([0-9][0-9][0-9]+)\\;");
-	Matcher matcher = pattern.matcher(content);
-	while (matcher.find()) {
-	    matcher.appendReplacement(sb, "emoji://" + matcher.group(1) + ";");
+    /**
+     * Create a SAX parser without the JDK limits on the size of entities : the
+     * whole file counts as a single entity, and backups can be huge. The
+     * limits on entity expansion are kept.
+     * 
+     * @return The parser.
+     * @throws SAXException                 If the parser can't be created.
+     * @throws ParserConfigurationException If the parser is not well configured.
+     */
+    static SAXParser newParser() throws SAXException, ParserConfigurationException {
+	SAXParser parser = SAXParserFactory.newDefaultInstance().newSAXParser();
+	try {
+	    parser.setProperty(JDK_MAX_GENERAL_ENTITY_SIZE, "0");
+	    parser.setProperty(JDK_TOTAL_ENTITY_SIZE, "0");
+	} catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+	    // Not the JDK parser : its own limits apply
+	    logger.log(Level.DEBUG, e.getLocalizedMessage());
 	}
-	matcher.appendTail(sb);
+	return parser;
+    }
 
-	reader.parse(new InputSource(new StringReader(sb.toString())), contentHandler);
+    /**
+     * @param fastParsing <code>true</code> to parse the content with the
+     *                    byte-level {@link SmsBackupFileFastParser} instead of
+     *                    a SAX parser (the filters and the spilling of
+     *                    attachments are the same).
+     */
+    public void setFastParsing(boolean fastParsing) {
+	isFastParsing = fastParsing;
     }
 
     /**
-     * Parse a "&lt;sms&gt;" element and make it a {@link Sms} model object. The
-     * {@link Sms} object is then enqueued onto the <code>stack</code> parameter.
+     * Set the directory of the temporary file where oversized attachments are
+     * spilled while parsing (by default, the temporary directory of the
+     * system).
      * 
-     * @param stack The stack to fill with read data.
-     * @param atts  The element's attributes.
+     * @param directory The directory.
      */
-    private void parseSms(Deque<Sms> stack, Attributes atts) {
-
-	String contactName = "";
-	String contactNumber = "";
-	String serviceNumber = "";
-	long date = 0L;
-	String body = "";
-	boolean isMe = false;
-	boolean isDraft = false;
-
-	for (int iAtt = 0; iAtt < atts.getLength(); iAtt++) {
-	    String name = atts.getLocalName(iAtt);
-	    String value = atts.getValue(iAtt);
-
-	    if (SPEC_ADDRESS.equalsIgnoreCase(name)) {
-		contactNumber = value;
-	    } else if (SPEC_DATE.equalsIgnoreCase(name)) {
-		date = Long.parseLong(value);
-	    } else if (SPEC_CONTACTNAME.equalsIgnoreCase(name)) {
-		contactName = value;
-	    } else if (SPEC_BODY.equalsIgnoreCase(name)) {
-		body = value;
-	    } else if (SPEC_SERVICE_CENTER.equalsIgnoreCase(name)) {
-		serviceNumber = value;
-	    } else if (SPEC_TYPE.equalsIgnoreCase(name)) {
-		isMe = Integer.parseInt(value) >= 2;
-		if (Integer.parseInt(value) == 3) {
-		    isDraft = true;
-		}
+    public void setSpillDirectory(File directory) {
+	spillDirectory = directory;
+    }
+
+    /**
+     * Get the attachments spilled by the last parsing, and forget them : the
+     * caller must dispose them (see {@link SpilledAttributeStore#dispose()})
+     * once the parsed messages are not used anymore.
+     * 
+     * @return The spilled attachments, <code>null</code> if none.
+     */
+    public synchronized SpilledAttributeStore detachSpilledAttributes() {
+	SpilledAttributeStore spilled = spilledAttributes;
+	spilledAttributes = null;
+	return spilled;
+    }
+
+    /**
+     * Create the storage of the attachments spilled by a new parsing, in place
+     * of the previous one (disposed if it has not been detached).
+     * 
+     * @return The storage.
+     */
+    private synchronized SpilledAttributeStore newSpilledAttributeStore() {
+	if (spilledAttributes != null) {
+	    spilledAttributes.dispose();
+	}
+	spilledAttributes = new SpilledAttributeStore(spillDirectory);
+	spilledAttributes.setDiscarding(loadOptions.isSkipAttachments());
+	return spilledAttributes;
+    }
+
+    /**
+     * Scan the file to build the index of its messages by contact, without
+     * parsing them (see {@link SmsBackupFileScanner}). The contacts are resolved
+     * exactly as by {@link #parse(Task, SmsBackupFileLoadingTaskHandler)}.
+     * 
+     * @param task        The task this method is called from, for cancellation
+     *                    purpose. Can be <code>null</code>.
+     * @param fileHandler Notified of the progress of the scan. Can be
+     *                    <code>null</code>.
+     * @param options     Filters of the indexed messages. They also apply when
+     *                    the messages are parsed (see
+     *                    {@link #parseMessages(SmsBackupFileIndex, Contact)}).
+     * @return The index, or <code>null</code> if the task has been cancelled.
+     * @throws IOException In case of I/O error.
+     */
+    public SmsBackupFileIndex buildIndex(Task<?> task, SmsBackupFileLoadingTaskHandler fileHandler,
+	    SmsBackupFileLoadOptions options) throws IOException {
+
+	logger.log(Level.INFO, () -> String.format("Indexing file '%s'", getAbsolutePath()));
+
+	metadata.clear();
+	contactPool = new ContactPool();
+	normalizedNumbers = new HashMap<>();
+	loadOptions = options;
+
+	// Images of a previously loaded file are not valid anymore
+	ImageCache.getInstance().clear();
+
+	SmsBackupFileIndex index = new SmsBackupFileIndex();
+	Deque<Sms> stack = new ArrayDeque<>();
+	long size = length();
+	// Only the attributes needed to find the contact and the date are read
+	SmsBackupFileScanner scanner = new SmsBackupFileScanner(Set.of(SPEC_SMS, SPEC_MMS),
+		Set.of(SPEC_ADDRESS, SPEC_DATE, SPEC_CONTACTNAME, SPEC_SERVICE_CENTER, SPEC_TYPE, SPEC_MTYPE));
+	boolean isComplete = scanner.scan(toPath(),
+		(name, atts, start, end) -> {
+		    // Only the start tag is read : the message has no content
+		    String[] values = SmsBackupContentHandler.toValues(atts);
+		    boolean isAccepted = SPEC_SMS.equalsIgnoreCase(name) ? parseSms(stack, values)
+			    : parseMms(stack, values);
+		    if (!isAccepted) {
+			return;
+		    }
+		    Sms sms = stack.pop();
+		    metadata.addContact(sms.getContact());
+		    index.add(sms.getContact(), sms.getDate(), start, (int) (end - start));
+		}, () -> task != null && task.isCancelled(), position -> {
+		    if (fileHandler != null) {
+			fileHandler.onBytesScanned(position, size);
+		    }
+		});
+	if (!isComplete) {
+	    return null;
+	}
+	metadata.setMessageCount(index.getMessageCount());
+	logger.log(Level.INFO, "{0} message(s) of {1} contact(s) indexed", index.getMessageCount(),
+		index.getContacts().size());
+	return index;
+    }
+
+    /**
+     * Parse the messages of a contact, using the index of the file (see
+     * {@link #buildIndex(Task, SmsBackupFileLoadingTaskHandler, SmsBackupFileLoadOptions)}).
+     * Only the elements of the contact are read.
+     * 
+     * @param index   The index of this file.
+     * @param contact The contact.
+     * @return The messages of the contact, in the order of the file.
+     * @throws IOException                  In case of an I/O error.
+     * @throws SAXException                 If a parsing exception occurs.
+     * @throws ParserConfigurationException If the parser is not well configured.
+     */
+    public List<Sms> parseMessages(SmsBackupFileIndex index, Contact contact)
+	    throws IOException, SAXException, ParserConfigurationException {
+
+	long[] starts = index.getStarts(contact);
+	int[] lengths = index.getLengths(contact);
+
+	// Oversized attachments of all the conversations are spilled to the same
+	// file, which lives as long as the index
+	SpilledAttributeStore spilled;
+	synchronized (this) {
+	    if (spilledAttributes == null) {
+		newSpilledAttributeStore();
 	    }
+	    spilled = spilledAttributes;
 	}
 
+	// Stream the elements, wrapped in a root element
+	SAXParser reader = newParser();
+	List<Sms> messages = new ArrayList<>(starts.length);
+	try (FileChannel channel = FileChannel.open(toPath(), StandardOpenOption.READ);
+		Reader in = new SmsBackupFileReader(new InputStreamReader(new SequenceInputStream(
+			new ByteArrayInputStream(("<" + SPEC_SMSES + ">").getBytes(StandardCharsets.UTF_8)),
+			new SequenceInputStream(new RangesInputStream(channel, starts, lengths),
+				new ByteArrayInputStream(("</" + SPEC_SMSES + ">").getBytes(StandardCharsets.UTF_8)))),
+			StandardCharsets.UTF_8), Set.of(SPEC_DATA), spilled)) {
+	    // The spilled values must not interleave with another parsing
+	    synchronized (spilled) {
+		reader.parse(new InputSource(in),
+			createContentHandler(null, new ArrayDeque<>(), new ImagePayloadStore(), spilled, messages::add));
+	    }
+	}
+	return messages;
+    }
+
+    /**
+     * Parse a "&lt;sms&gt;" element and make it a {@link Sms} model object. The
+     * {@link Sms} object is then enqueued onto the <code>stack</code> parameter,
+     * unless it is filtered out by the load options.
+     * 
+     * @param stack  The stack to fill with read data.
+     * @param values Values of the element's attributes (see
+     *               {@link SmsBackupAttribute}).
+     * @return <code>false</code> if the message is filtered out.
+     */
+    private boolean parseSms(Deque<Sms> stack, String[] values) {
+
+	String contactName = valueOf(values, SmsBackupAttribute.CONTACT_NAME, "");
+	String contactNumber = valueOf(values, SmsBackupAttribute.ADDRESS, "");
+	String serviceNumber = valueOf(values, SmsBackupAttribute.SERVICE_CENTER, "");
+	String date = values[SmsBackupAttribute.DATE.ordinal()];
+	String body = valueOf(values, SmsBackupAttribute.BODY, "");
+	String type = values[SmsBackupAttribute.TYPE.ordinal()];
+	boolean isMe = type != null && Integer.parseInt(type) >= 2;
+	boolean isDraft = type != null && Integer.parseInt(type) == 3;
+
 	String normalizePhoneNumber = normalizePhoneNumber(contactNumber);
 	if (StringUtils.isBlank(normalizePhoneNumber)) {
 	    if (!"null".equals(serviceNumber)) {
@@ -374,87 +630,129 @@ public class SmsBackupFile extends File {
 	    contactName = contactNumber;
 	}
 
-	stack.push(new Sms(date, isMe, isDraft, body, new Contact(normalizePhoneNumber, contactName)));
+	return push(stack, createMessage(date != null ? Long.parseLong(date) : 0L, isMe, isDraft, body,
+		normalizePhoneNumber, contactName));
     }
 
     /**
      * Parse a "&lt;mms&gt;" element and make it a {@link Sms} model object. The Sms
-     * object is then enqueued onto the <code>stack</code> parameter.
+     * object is then enqueued onto the <code>stack</code> parameter, unless it is
+     * filtered out by the load options.
      * 
-     * @param stack The stack to fill with read data.
-     * @param atts  The element's attributes.
+     * @param stack  The stack to fill with read data.
+     * @param values Values of the element's attributes (see
+     *               {@link SmsBackupAttribute}).
+     * @return <code>false</code> if the message is filtered out.
      */
-    private void parseMms(Deque<Sms> stack, Attributes atts) {
-	String contactName = "";
-	String contactNumber = "";
-	long date = 0L;
-	String body = "";
-	boolean isMe = false;
-	boolean isDraft = false;
-
-	for (int iAtt = 0; iAtt < atts.getLength(); iAtt++) {
-	    String name = atts.getLocalName(iAtt);
-	    String value = atts.getValue(iAtt);
-
-	    if (SPEC_ADDRESS.equalsIgnoreCase(name)) {
-		contactNumber = value;
-	    } else if (SPEC_DATE.equalsIgnoreCase(name)) {
-		date = Long.parseLong(value);
-	    } else if (name.equalsIgnoreCase("snippet") && !value.equalsIgnoreCase("null")) {
-		body = value;
-	    } else if (SPEC_CONTACTNAME.equalsIgnoreCase(name)) {
-		contactName = value;
-	    } else if (SPEC_MTYPE.equalsIgnoreCase(name)) {
-		isMe = Integer.parseInt(value) == 128;
-	    }
+    private boolean parseMms(Deque<Sms> stack, String[] values) {
+	String contactName = valueOf(values, SmsBackupAttribute.CONTACT_NAME, "");
+	String contactNumber = valueOf(values, SmsBackupAttribute.ADDRESS, "");
+	String date = values[SmsBackupAttribute.DATE.ordinal()];
+	String snippet = values[SmsBackupAttribute.SNIPPET.ordinal()];
+	String body = snippet != null && !snippet.equalsIgnoreCase("null") ? snippet : "";
+	String mType = values[SmsBackupAttribute.M_TYPE.ordinal()];
+	boolean isMe = mType != null && Integer.parseInt(mType) == 128;
+	return push(stack, createMessage(date != null ? Long.parseLong(date) : 0L, isMe, false, body,
+		normalizePhoneNumber(contactNumber), contactName));
+    }
+
+    /**
+     * @param values       Values of the attributes of an element.
+     * @param attribute    An attribute.
+     * @param defaultValue Default value.
+     * @return The value of the attribute, or the default value if it is missing.
+     */
+    private static String valueOf(String[] values, SmsBackupAttribute attribute, String defaultValue) {
+	String value = values[attribute.ordinal()];
+	return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Push a message onto the stack, if it has not been filtered out.
+     * 
+     * @param stack The stack.
+     * @param sms   The message, <code>null</code> if it has been filtered out.
+     * @return <code>false</code> if the message has been filtered out.
+     */
+    private static boolean push(Deque<Sms> stack, Sms sms) {
+	if (sms == null) {
+	    return false;
+	}
+	stack.push(sms);
+	return true;
+    }
+
+    /**
+     * Create a message, with the shared contact of its phone number. A message
+     * without contact name is a draft : it gets the (shared) empty contact.
+     * 
+     * @param date        Date of the message.
+     * @param isMe        <code>true</code> if the message has been sent.
+     * @param isDraft     <code>true</code> if the message is a draft.
+     * @param body        Text of the message.
+     * @param phoneNumber Normalized phone number of the contact.
+     * @param contactName Name of the contact.
+     * @return The message, or <code>null</code> if it is filtered out by the load
+     *         options.
+     */
+    private Sms createMessage(long date, boolean isMe, boolean isDraft, String body, String phoneNumber,
+	    String contactName) {
+	if (StringUtils.isBlank(contactName)) {
+	    isDraft = true;
+	    phoneNumber = "";
+	    contactName = "";
 	}
-	stack.push(new Sms(date, isMe, isDraft, body, new Contact(normalizePhoneNumber(contactNumber), contactName)));
+	Contact contact = contactPool.intern(phoneNumber, contactName);
+	if (!loadOptions.isAccepted(contact, date)) {
+	    return null;
+	}
+	return new Sms(date, isMe, isDraft, body, contact);
     }
 
     /**
      * Read attribute's content of a "&lt;part&gt;" element.
      * 
-     * @param stack The stack to poll for finding current MMS data.
-     * @param atts  The "&lt;part&gt;" element's attributes.
+     * @param stack    The stack to poll for finding current MMS data.
+     * @param values   Values of the "&lt;part&gt;" element's attributes (see
+     *                 {@link SmsBackupAttribute}).
+     * @param payloads Shared contents of the images.
+     * @param spilled  Oversized attachments spilled while reading.
+     * @throws SAXException If a spilled attachment can't be released.
      */
-    private void parseMmsPart(Deque<Sms> stack, Attributes atts) {
+    private void parseMmsPart(Deque<Sms> stack, String[] values, ImagePayloadStore payloads,
+	    SpilledAttributeStore spilled) throws SAXException {
 
-	String data = null;
-	String imageName = "";
-	String mime = null;
-	String body = "";
+	String data = loadOptions.isSkipAttachments() ? null : values[SmsBackupAttribute.DATA.ordinal()];
+	String imageName = valueOf(values, SmsBackupAttribute.CL, "");
+	String mime = values[SmsBackupAttribute.CT.ordinal()];
+	String body = valueOf(values, SmsBackupAttribute.TEXT, "");
 	int width = 0;
 	int height = 0;
 
-	for (int iAtt = 0; iAtt < atts.getLength(); iAtt++) {
-	    String name = atts.getLocalName(iAtt);
-	    String value = atts.getValue(iAtt);
-
-	    if (SPEC_TEXT.equalsIgnoreCase(name)) {
-		body = value;
-
-		// Find the image width
-		Matcher matcher = Pattern.compile("<root-layout.*width=\"([0-9]*)[^\"]*\"").matcher(value);
-		if (matcher.find()) {
-		    width = Integer.parseInt(matcher.group(1));
-		}
-		// Find the image height
-		matcher = Pattern.compile("<root-layout.*height=\"([0-9]*)[^\"]*\"").matcher(value);
-		if (matcher.find()) {
-		    height = Integer.parseInt(matcher.group(1));
-		}
-	    } else if (SPEC_CL.equalsIgnoreCase(name)) {
-		imageName = value;
-	    } else if (SPEC_CT.equalsIgnoreCase(name)) {
-		mime = value;
-	    } else if (SPEC_DATA.equalsIgnoreCase(name)) {
-		data = value;
-	    }
+	// Find the image width and height
+	Matcher matcher = ROOT_LAYOUT_WIDTH_PATTERN.matcher(body);
+	if (matcher.find()) {
+	    width = Integer.parseInt(matcher.group(1));
+	}
+	matcher = ROOT_LAYOUT_HEIGHT_PATTERN.matcher(body);
+	if (matcher.find()) {
+	    height = Integer.parseInt(matcher.group(1));
 	}
 
 	Sms mms = stack.peek();
-	if (mime != null && mime.toLowerCase().startsWith("image/") && data != null) {
-	    ImagePart image = decodeImage(mime, data, imageName, width, height);
+	boolean isImage = mime != null && mime.toLowerCase().startsWith("image/");
+	if (SpilledAttributeStore.isToken(data)) {
+	    if (isImage) {
+		ImagePayload payload = spilled.take(data);
+		if (payload != null) {
+		    mms.add(decodeImage(mime, payloads.intern(payload), imageName, width, height));
+		}
+	    } else {
+		// Videos, sounds... are not displayed : release their space
+		discardSpilledData(values, spilled);
+	    }
+	} else if (isImage && data != null) {
+	    ImagePart image = decodeImage(mime, payloads.intern(data), imageName, width, height);
 	    mms.add(image);
 	}
 	if ("null".equals(body)) {
@@ -463,51 +761,70 @@ public class SmsBackupFile extends File {
 	mms.setBody(body);
     }
 
+    /**
+     * Release the spilled data of a "&lt;part&gt;" element that is ignored.
+     * 
+     * @param values  Values of the "&lt;part&gt;" element's attributes.
+     * @param spilled Oversized attachments spilled while reading.
+     * @throws SAXException If the spilled data can't be released.
+     */
+    private static void discardSpilledData(String[] values, SpilledAttributeStore spilled) throws SAXException {
+	String data = values[SmsBackupAttribute.DATA.ordinal()];
+	if (SpilledAttributeStore.isToken(data)) {
+	    try {
+		spilled.discard(data);
+	    } catch (IOException e) {
+		throw new SAXException(e);
+	    }
+	}
+    }
+
     /**
      * Read attribute's content of a "&lt;addr&gt;" element.
      * 
-     * @param stack The stack to poll for finding current MMS data.
-     * @param atts  The "&lt;addr&gt;" element's attributes.
+     * @param stack  The stack to poll for finding current MMS data.
+     * @param values Values of the "&lt;addr&gt;" element's attributes (see
+     *               {@link SmsBackupAttribute}).
      */
-    private void parseMmsAddr(Deque<Sms> stack, Attributes atts) {
+    private void parseMmsAddr(Deque<Sms> stack, String[] values) {
 
 	Sms mms = stack.peek();
-	String phoneNumber = null;
-	int type = 0;
-
-	for (int iAtt = 0; iAtt < atts.getLength(); iAtt++) {
-	    String name = atts.getLocalName(iAtt);
-	    String value = atts.getValue(iAtt);
-
-	    if (SPEC_ADDRESS.equalsIgnoreCase(name)) {
-		phoneNumber = normalizePhoneNumber(value);
-	    } else if (SPEC_TYPE.equalsIgnoreCase(name)) {
-		type = Integer.parseInt(value);
-	    }
-	}
-	mms.addRecipient(phoneNumber, type);
+	String address = values[SmsBackupAttribute.ADDRESS.ordinal()];
+	String type = values[SmsBackupAttribute.TYPE.ordinal()];
+	mms.addRecipient(address != null ? normalizePhoneNumber(address) : null,
+		type != null ? Integer.parseInt(type) : 0);
     }
 
     /**
-     * Decode bytes of an image and make it an ImagePart model object with metadata.
+     * Make an ImagePart model object with metadata. Only the dimensions of the
+     * image are read : it is decoded when it is displayed (see
+     * {@link ImageCache}), so that parsing doesn't evict the images the user has
+     * viewed.
      * 
      * @param width     Image's width, as declared in the XML file.
      * @param height    Image's height, as declared in the XML file.
      * @param mime      MIME type of the image.
-     * @param data      Bytes to decode.
+     * @param payload   Content of the image, possibly shared with other images.
      * @param imageName The name of the image.
      * @return An ImagePart containing metadata about its dimensions and a base64
      *         encoded string.
      */
-    private ImagePart decodeImage(String mime, String data, String imageName, int width, int height) {
+    private ImagePart decodeImage(String mime, ImagePayload payload, String imageName, int width, int height) {
+	ImagePart image = new ImagePart(mime, imageName, payload, width, height);
+	if (payload.isSpilled()) {
+	    // Oversized : only the declared dimensions are used
+	    return image;
+	}
 	try {
-	    Image i = ImageUtil.decodeBase64Mime(data);
-	    width = (int) i.getWidth();
-	    height = (int) i.getHeight();
+	    Dimension dimension = ImageUtil.readBase64Dimensions(payload.getBase64());
+	    if (dimension != null) {
+		image.setWidth(dimension.width);
+		image.setHeight(dimension.height);
+	    }
 	} catch (IOException e) {
 	    logger.log(Level.ERROR, "decodeImage()", e);
 	}
-	return new ImagePart(mime, imageName, data, width, height);
+	return image;
     }
 
     /**
@@ -526,4 +843,64 @@ public class SmsBackupFile extends File {
 	return super.hashCode();
     }
 
+    /**
+     * Reads ranges of a file, one after the other, without loading them.
+     */
+    static class RangesInputStream extends InputStream {
+
+	/** Channel of the file. */
+	private FileChannel mChannel;
+	/** Positions of the ranges. */
+	private long[] mStarts;
+	/** Lengths of the ranges. */
+	private int[] mLengths;
+	/** Index of the current range. */
+	private int mRange;
+	/** Position of the next byte to read. */
+	private long mPosition;
+	/** Number of bytes left in the current range. */
+	private long mRemaining;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param channel Channel of the file.
+	 * @param starts  Positions of the ranges.
+	 * @param lengths Lengths of the ranges.
+	 */
+	RangesInputStream(FileChannel channel, long[] starts, int[] lengths) {
+	    mChannel = channel;
+	    mStarts = starts;
+	    mLengths = lengths;
+	    mRange = -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+	    if (len == 0) {
+		return 0;
+	    }
+	    while (mRemaining == 0) {
+		if (++mRange >= mStarts.length) {
+		    return -1;
+		}
+		mPosition = mStarts[mRange];
+		mRemaining = mLengths[mRange];
+	    }
+	    int read = mChannel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, mRemaining)), mPosition);
+	    if (read < 0) {
+		throw new EOFException();
+	    }
+	    mPosition += read;
+	    mRemaining -= read;
+	    return read;
+	}
+
+	@Override
+	public int read() throws IOException {
+	    byte[] b = new byte[1];
+	    return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+	}
+    }
+
 }
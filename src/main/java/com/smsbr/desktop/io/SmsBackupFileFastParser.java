@@ -0,0 +1,854 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Byte-level parser of the content of a backup file, specialized for the
+ * format written by SMS Backup &amp; Restore : a flat list of "&lt;sms&gt;" and
+ * "&lt;mms&gt;" elements, whose attributes are always quoted and rarely escaped.
+ * The file is mapped in memory and only the values of the attributes of
+ * {@link SmsBackupAttribute} are decoded : the other ones are skipped. The
+ * handler receives the same events as with a SAX parser and a
+ * {@link SmsBackupFileReader} (emoji codes replaced, oversized "data" values
+ * spilled).
+ * 
+ * Anything the parser doesn't expect (DOCTYPE, text or CDATA between
+ * elements, unknown entity, invalid character...) is left to a SAX parser :
+ * <ul>
+ * <li>a message whose values can't be decoded is parsed again with SAX, alone
+ * ;</li>
+ * <li>a message whose structure is not the expected one is parsed with SAX,
+ * with all the messages that follow ;</li>
+ * <li>a file whose prologue is not the expected one is fully parsed with
+ * SAX.</li>
+ * </ul>
+ * The events of a message are only given to the handler once the message has
+ * been fully read, so no event is ever given twice.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class SmsBackupFileFastParser {
+
+    private static Logger logger = System.getLogger(SmsBackupFileFastParser.class.getName());
+
+    /** Default size of the mapped parts of the file : 256 MB. */
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    /** Root element. */
+    private static final String ROOT = "smses";
+    /** Names of the elements written by SMS Backup &amp; Restore. */
+    private static final String[] ELEMENT_NAMES = { "sms", "mms", "parts", "part", "addrs", "addr", ROOT };
+    /** {@link #ELEMENT_NAMES}, in ASCII. */
+    private static final byte[][] ELEMENT_BYTES = new byte[ELEMENT_NAMES.length][];
+    /** Start tag of the root element, for the content parsed with SAX. */
+    private static final byte[] ROOT_START = ("<" + ROOT + ">").getBytes(StandardCharsets.US_ASCII);
+    /** End tag of the root element, for the content parsed with SAX. */
+    private static final byte[] ROOT_END = ("</" + ROOT + ">").getBytes(StandardCharsets.US_ASCII);
+    /** Bytes ending a name. */
+    private static final byte NAME_END = 1;
+    /** Bytes not allowed in a name. */
+    private static final byte NAME_INVALID = 2;
+    /** {@link #NAME_END}, {@link #NAME_INVALID} or 0, by unsigned byte. */
+    private static final byte[] NAME_CLASSES = new byte[256];
+
+    static {
+	for (int i = 0; i < ELEMENT_NAMES.length; i++) {
+	    ELEMENT_BYTES[i] = ELEMENT_NAMES[i].getBytes(StandardCharsets.US_ASCII);
+	}
+	for (char c : " \n\r\t=/>".toCharArray()) {
+	    NAME_CLASSES[c] = NAME_END;
+	}
+	for (char c : "<\"'".toCharArray()) {
+	    NAME_CLASSES[c] = NAME_INVALID;
+	}
+    }
+
+    /**
+     * Thrown when the structure of the content is not the expected one : SAX
+     * takes over.
+     */
+    private static class UnexpectedContentException extends Exception {
+
+	private static final long serialVersionUID = 5309011473950846431L;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param message What was not expected.
+	 */
+	UnexpectedContentException(String message) {
+	    super(message, null, false, false);
+	}
+    }
+
+    /** Receives the events. */
+    protected SmsBackupContentHandler mHandler;
+    /** Storage of the oversized "data" values, <code>null</code> to never spill. */
+    protected SpilledAttributeStore mStore;
+    /** Length from which "data" values are spilled, in characters. */
+    protected int mSpillThreshold;
+    /** Size of the mapped parts of the file. */
+    protected int mWindowSize;
+
+    /** The parsed file. */
+    protected Path mFile;
+    /** Channel of the file. */
+    protected FileChannel mChannel;
+    /** Size of the file. */
+    protected long mFileSize;
+    /** The mapped part of the file. */
+    protected ByteBuffer mBuffer;
+    /** Position of the mapped part in the file. */
+    protected long mWindowStart;
+    /** Index of the next byte in {@link #mBuffer}. */
+    protected int mIndex;
+
+    /** Names of the elements of the current message, in the order of events. */
+    protected List<String> mEventNames;
+    /** Values of the attributes for start events, <code>null</code> for end events. */
+    protected List<String[]> mEventValues;
+    /** Tokens of the values of the current message spilled so far. */
+    protected List<String> mSpilledTokens;
+    /** <code>true</code> if a value of the current message can't be decoded. */
+    protected boolean isValueRejected;
+    /** Bytes of a value being decoded. */
+    protected byte[] mBytes;
+    /** Characters of a value being unescaped. */
+    protected StringBuilder mText;
+
+    /** Number of messages parsed with SAX. */
+    protected int mFallbackCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param handler Receives the events.
+     * @param store   Storage of the oversized "data" values, <code>null</code>
+     *                to never spill.
+     */
+    public SmsBackupFileFastParser(SmsBackupContentHandler handler, SpilledAttributeStore store) {
+	this(handler, store, SmsBackupFileReader.DEFAULT_SPILL_THRESHOLD, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param handler        Receives the events.
+     * @param store          Storage of the oversized "data" values,
+     *                       <code>null</code> to never spill.
+     * @param spillThreshold Length from which "data" values are spilled, in
+     *                       characters.
+     * @param windowSize     Size of the mapped parts of the file : a message
+     *                       larger than that is parsed with SAX.
+     */
+    public SmsBackupFileFastParser(SmsBackupContentHandler handler, SpilledAttributeStore store,
+	    int spillThreshold, int windowSize) {
+	mHandler = handler;
+	mStore = store;
+	mSpillThreshold = spillThreshold;
+	mWindowSize = windowSize;
+	mEventNames = new ArrayList<>();
+	mEventValues = new ArrayList<>();
+	mSpilledTokens = new ArrayList<>();
+	mBytes = new byte[1024];
+	mText = new StringBuilder();
+    }
+
+    /**
+     * @return The number of messages parsed with SAX by the last parsing (-1 if
+     *         the whole file has been parsed with SAX).
+     */
+    public int getFallbackCount() {
+	return mFallbackCount;
+    }
+
+    /**
+     * Parse a file.
+     * 
+     * @param file The file.
+     * @throws IOException                  In case of I/O error.
+     * @throws SAXException                 If the handler stops the parsing, or
+     *                                      if the file is not well-formed.
+     * @throws ParserConfigurationException If the SAX parser is not well
+     *                                      configured.
+     */
+    public void parse(Path file) throws IOException, SAXException, ParserConfigurationException {
+	mFallbackCount = 0;
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    mFile = file;
+	    mChannel = channel;
+	    mFileSize = channel.size();
+	    map(0);
+
+	    boolean isPrologueRead;
+	    try {
+		isPrologueRead = parsePrologue();
+	    } catch (IndexOutOfBoundsException | UnexpectedContentException e) {
+		isPrologueRead = false;
+	    }
+	    if (!isPrologueRead) {
+		logger.log(Level.INFO, "Unexpected prologue : the file is parsed with SAX");
+		mFallbackCount = -1;
+		parseWithSax(Files.newInputStream(file), false);
+		return;
+	    }
+	    parseMessages();
+	} finally {
+	    clearEvents();
+	    mChannel = null;
+	    mBuffer = null;
+	}
+    }
+
+    /**
+     * Map a part of the file.
+     * 
+     * @param position Position of the part.
+     * @throws IOException If the file can't be mapped.
+     */
+    protected void map(long position) throws IOException {
+	mWindowStart = position;
+	mBuffer = mChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mWindowSize, mFileSize - position));
+	mIndex = 0;
+    }
+
+    /**
+     * @return The position of the next byte in the file.
+     */
+    protected long getPosition() {
+	return mWindowStart + mIndex;
+    }
+
+    /**
+     * Read the prologue, up to the start tag of the root element.
+     * 
+     * @return <code>false</code> if it is not the expected one (DOCTYPE, other
+     *         root element...).
+     * @throws UnexpectedContentException If the content is not the expected
+     *                                    one.
+     */
+    protected boolean parsePrologue() throws UnexpectedContentException {
+	while (true) {
+	    skipSpaces();
+	    if (mBuffer.get(mIndex) != '<') {
+		return false;
+	    }
+	    if (!skipMarkup()) {
+		break;
+	    }
+	}
+	int nameStart = ++mIndex;
+	int nameEnd = readName();
+	if (elementName(nameStart, nameEnd) != ROOT || isEmptyTag(skipTag())) {
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * Parse the messages, one after the other, up to the end of the file.
+     * 
+     * @throws IOException                  In case of I/O error.
+     * @throws SAXException                 If the handler stops the parsing, or
+     *                                      if the file is not well-formed.
+     * @throws ParserConfigurationException If the SAX parser is not well
+     *                                      configured.
+     */
+    protected void parseMessages() throws IOException, SAXException, ParserConfigurationException {
+	boolean isRootClosed = false;
+	while (true) {
+	    long itemStart = getPosition();
+	    if (itemStart == mFileSize) {
+		if (!isRootClosed) {
+		    // Truncated file : the SAX parser reports the error
+		    parseRestWithSax(itemStart);
+		}
+		return;
+	    }
+	    try {
+		skipSpaces();
+		if (getPosition() > itemStart) {
+		    continue;
+		}
+		if (mBuffer.get(mIndex) != '<') {
+		    throw new UnexpectedContentException("Text");
+		}
+		if (skipMarkup()) {
+		    continue;
+		}
+		if (isRootClosed) {
+		    throw new SAXException("Content after the root element at position " + itemStart);
+		}
+		if (mBuffer.get(mIndex + 1) == '/') {
+		    mIndex += 2;
+		    int nameStart = mIndex;
+		    if (elementName(nameStart, readName()) != ROOT) {
+			throw new UnexpectedContentException("End tag");
+		    }
+		    skipSpaces();
+		    expect('>');
+		    isRootClosed = true;
+		    continue;
+		}
+		parseMessage();
+	    } catch (IndexOutOfBoundsException e) {
+		// The end of the mapped part of the file has been reached
+		clearEvents();
+		if (mWindowStart + mBuffer.limit() >= mFileSize || itemStart == mWindowStart) {
+		    // Truncated file, or a message larger than the mapped part
+		    parseRestWithSax(itemStart);
+		    return;
+		}
+		map(itemStart);
+		continue;
+	    } catch (UnexpectedContentException e) {
+		clearEvents();
+		logger.log(Level.DEBUG, "{0} at position {1} : parsed with SAX", e.getMessage(), itemStart);
+		parseRestWithSax(itemStart);
+		return;
+	    }
+
+	    if (isValueRejected) {
+		clearEvents();
+		mFallbackCount++;
+		parseWithSax(new SmsBackupFile.RangesInputStream(mChannel, new long[] { itemStart },
+			new int[] { (int) (getPosition() - itemStart) }), true);
+	    } else {
+		for (int i = 0; i < mEventNames.size(); i++) {
+		    String[] values = mEventValues.get(i);
+		    if (values != null) {
+			mHandler.startElement(mEventNames.get(i), values);
+		    } else {
+			mHandler.endElement(mEventNames.get(i));
+		    }
+		}
+		// The spilled values now belong to the handler
+		mSpilledTokens.clear();
+		mEventNames.clear();
+		mEventValues.clear();
+	    }
+	}
+    }
+
+    /**
+     * Parse a message : its events are kept until it has been fully read.
+     * 
+     * @throws UnexpectedContentException If the content is not the expected
+     *                                    one.
+     * @throws IOException                If a value can't be spilled.
+     */
+    protected void parseMessage() throws UnexpectedContentException, IOException {
+	// Names of the open elements, and their positions
+	String[] names = new String[8];
+	int[] nameStarts = new int[names.length];
+	int[] nameEnds = new int[names.length];
+	int depth = 0;
+	do {
+	    if (mBuffer.get(mIndex + 1) == '/') {
+		// End tag
+		mIndex += 2;
+		int nameStart = mIndex;
+		int nameEnd = readName();
+		depth--;
+		if (!isSameName(nameStarts[depth], nameEnds[depth], nameStart, nameEnd)) {
+		    throw new UnexpectedContentException("Mismatched end tag");
+		}
+		skipSpaces();
+		expect('>');
+		mEventNames.add(names[depth]);
+		mEventValues.add(null);
+	    } else {
+		// Start tag
+		int nameStart = ++mIndex;
+		int nameEnd = readName();
+		String name = elementName(nameStart, nameEnd);
+		if (name == null) {
+		    name = decodeName(nameStart, nameEnd);
+		}
+		mEventNames.add(name);
+		mEventValues.add(parseAttributes());
+		if (mBuffer.get(mIndex - 2) == '/') {
+		    mEventNames.add(name);
+		    mEventValues.add(null);
+		} else {
+		    if (depth == names.length) {
+			throw new UnexpectedContentException("Too deep");
+		    }
+		    names[depth] = name;
+		    nameStarts[depth] = nameStart;
+		    nameEnds[depth] = nameEnd;
+		    depth++;
+		}
+	    }
+	    // Up to the next tag
+	    while (depth > 0) {
+		skipSpaces();
+		if (mBuffer.get(mIndex) != '<') {
+		    throw new UnexpectedContentException("Text");
+		}
+		if (!skipMarkup()) {
+		    break;
+		}
+	    }
+	} while (depth > 0);
+    }
+
+    /**
+     * Parse the attributes of a start tag, up to its '&gt;'.
+     * 
+     * @return The values of the attributes of {@link SmsBackupAttribute}.
+     * @throws UnexpectedContentException If the content is not the expected
+     *                                    one.
+     * @throws IOException                If a value can't be spilled.
+     */
+    protected String[] parseAttributes() throws UnexpectedContentException, IOException {
+	String[] values = new String[SmsBackupAttribute.COUNT];
+	while (true) {
+	    boolean isSeparated = skipSpaces();
+	    byte b = mBuffer.get(mIndex);
+	    if (b == '>') {
+		mIndex++;
+		return values;
+	    } else if (b == '/') {
+		mIndex++;
+		expect('>');
+		return values;
+	    } else if (!isSeparated) {
+		throw new UnexpectedContentException("Attribute");
+	    }
+	    int nameStart = mIndex;
+	    int nameEnd = readName();
+	    skipSpaces();
+	    expect('=');
+	    skipSpaces();
+	    byte quote = mBuffer.get(mIndex);
+	    if (quote != '"' && quote != '\'') {
+		throw new UnexpectedContentException("Unquoted value");
+	    }
+	    int valueStart = ++mIndex;
+	    // Any byte that is not plain printable ASCII is special
+	    boolean isSpecial = false;
+	    while ((b = mBuffer.get(mIndex)) != quote) {
+		if (b < 0x20 || b == '&' || b == '<') {
+		    isSpecial = true;
+		}
+		mIndex++;
+	    }
+	    int valueEnd = mIndex++;
+	    SmsBackupAttribute attribute = SmsBackupAttribute.forName(mBuffer, nameStart, nameEnd - nameStart);
+	    if (isValueRejected) {
+		continue;
+	    } else if (attribute == null) {
+		if (isSpecial) {
+		    // Not read, but the SAX parser would reject it too
+		    unescape(valueStart, valueEnd);
+		}
+		continue;
+	    }
+	    if (values[attribute.ordinal()] != null) {
+		// Duplicate attribute : the SAX parser reports the error
+		isValueRejected = true;
+	    } else if (attribute == SmsBackupAttribute.DATA && mStore != null
+		    && valueEnd - valueStart > mSpillThreshold) {
+		values[attribute.ordinal()] = spill(valueStart, valueEnd);
+	    } else if (isSpecial) {
+		values[attribute.ordinal()] = unescape(valueStart, valueEnd);
+	    } else {
+		values[attribute.ordinal()] = decodeAscii(valueStart, valueEnd);
+	    }
+	}
+    }
+
+    /**
+     * Decode a value of plain printable ASCII.
+     * 
+     * @param start Index of the value in the buffer.
+     * @param end   End of the value (exclusive).
+     * @return The value.
+     */
+    protected String decodeAscii(int start, int end) {
+	int length = end - start;
+	if (mBytes.length < length) {
+	    mBytes = new byte[Math.max(length, mBytes.length * 2)];
+	}
+	mBuffer.get(start, mBytes, 0, length);
+	return new String(mBytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decode a value like a SAX parser reading it through a
+     * {@link SmsBackupFileReader} : normalized white spaces, replaced emoji
+     * codes, resolved entities.
+     * 
+     * @param start Index of the value in the buffer.
+     * @param end   End of the value (exclusive).
+     * @return The value, <code>null</code> if it is rejected (see
+     *         {@link #isValueRejected}).
+     */
+    protected String unescape(int start, int end) {
+	int length = end - start;
+	if (mBytes.length < length) {
+	    mBytes = new byte[Math.max(length, mBytes.length * 2)];
+	}
+	byte[] bytes = mBytes;
+	mBuffer.get(start, bytes, 0, length);
+	StringBuilder text = mText;
+	text.setLength(0);
+	int i = 0;
+	while (i < length) {
+	    byte b = bytes[i];
+	    if (b >= 0x20 && b != '&' && b != '<') {
+		text.append((char) b);
+		i++;
+	    } else if (b < 0) {
+		// Malformed sequences are replaced, as by the reader of the SAX parser
+		int runEnd = i + 1;
+		while (runEnd < length && bytes[runEnd] < 0) {
+		    runEnd++;
+		}
+		String run = new String(bytes, i, runEnd - i, StandardCharsets.UTF_8);
+		if (run.indexOf('\uFFFE') >= 0 || run.indexOf('\uFFFF') >= 0) {
+		    break;
+		}
+		text.append(run);
+		i = runEnd;
+	    } else if (b == '\r') {
+		if (i + 1 < length && bytes[i + 1] == '\n') {
+		    i++;
+		}
+		text.append(' ');
+		i++;
+	    } else if (b == '\n' || b == '\t') {
+		text.append(' ');
+		i++;
+	    } else if (b == '&') {
+		i = appendReference(text, i + 1, length);
+		if (i < 0) {
+		    break;
+		}
+	    } else {
+		// A control character or a '<'
+		break;
+	    }
+	}
+	if (i < length) {
+	    isValueRejected = true;
+	    return null;
+	}
+	return text.toString();
+    }
+
+    /**
+     * Append the value of an entity or a character reference of
+     * {@link #mBytes} (see {@link XmlReferences}).
+     * 
+     * @param text   Where to append the value.
+     * @param start  Start of the reference, after the '&amp;'.
+     * @param length Number of bytes in {@link #mBytes}.
+     * @return Index following the reference, -1 if it is unknown or invalid.
+     */
+    private int appendReference(StringBuilder text, int start, int length) {
+	byte[] bytes = mBytes;
+	int end = start;
+	while (end < length && bytes[end] != ';') {
+	    end++;
+	}
+	if (end == length) {
+	    return -1;
+	}
+	String reference = new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+	return XmlReferences.appendReference(text, reference) ? end + 1 : -1;
+    }
+
+    /**
+     * Spill an oversized value straight from the mapped file, as the
+     * {@link SmsBackupFileReader} would.
+     * 
+     * @param start Index of the value in the buffer.
+     * @param end   End of the value (exclusive).
+     * @return The token of the value, <code>null</code> if it is rejected
+     *         (see {@link #isValueRejected}).
+     * @throws IOException If the value can't be spilled.
+     */
+    protected String spill(int start, int end) throws IOException {
+	for (int i = start; i < end; i++) {
+	    if (mBuffer.get(i) < 0) {
+		// The reader would spill characters, not bytes
+		isValueRejected = true;
+		return null;
+	    }
+	}
+	mStore.begin();
+	mStore.write(mBuffer.duplicate().position(start).limit(end));
+	String token = mStore.end();
+	mSpilledTokens.add(token);
+	return token;
+    }
+
+    /**
+     * Forget the events of the current message, and the values it spilled.
+     * 
+     * @throws IOException If the spilled values can't be released.
+     */
+    protected void clearEvents() throws IOException {
+	mEventNames.clear();
+	mEventValues.clear();
+	isValueRejected = false;
+	Collections.reverse(mSpilledTokens);
+	for (String token : mSpilledTokens) {
+	    mStore.discard(token);
+	}
+	mSpilledTokens.clear();
+    }
+
+    /**
+     * Parse the rest of the file with SAX.
+     * 
+     * @param position Position of the first message to parse.
+     * @throws IOException                  In case of I/O error.
+     * @throws SAXException                 If the handler stops the parsing, or
+     *                                      if the file is not well-formed.
+     * @throws ParserConfigurationException If the SAX parser is not well
+     *                                      configured.
+     */
+    protected void parseRestWithSax(long position) throws IOException, SAXException, ParserConfigurationException {
+	mFallbackCount++;
+	InputStream in = Files.newInputStream(mFile);
+	in.skipNBytes(position);
+	// The end tag of the root element is still in the file
+	parseWithSax(new SequenceInputStream(new ByteArrayInputStream(ROOT_START), in), false);
+    }
+
+    /**
+     * Parse content with SAX, through a {@link SmsBackupFileReader}.
+     * 
+     * @param in       The content.
+     * @param isWrapped <code>true</code> to wrap the content in a root element.
+     * @throws IOException                  In case of I/O error.
+     * @throws SAXException                 If the handler stops the parsing, or
+     *                                      if the file is not well-formed.
+     * @throws ParserConfigurationException If the SAX parser is not well
+     *                                      configured.
+     */
+    protected void parseWithSax(InputStream in, boolean isWrapped)
+	    throws IOException, SAXException, ParserConfigurationException {
+	InputStream xml = in;
+	if (isWrapped) {
+	    xml = new SequenceInputStream(Collections.enumeration(List.of(new ByteArrayInputStream(ROOT_START), in,
+		    new ByteArrayInputStream(ROOT_END))));
+	}
+	Set<String> spilledAttributes = mStore != null ? Set.of(SmsBackupAttribute.DATA.getName()) : Set.of();
+	try (Reader reader = new SmsBackupFileReader(new InputStreamReader(xml, StandardCharsets.UTF_8),
+		spilledAttributes, mStore, mSpillThreshold)) {
+	    SmsBackupFile.newParser().parse(new InputSource(reader), mHandler);
+	}
+    }
+
+    /**
+     * Skip white spaces, up to the end of the mapped part of the file at most.
+     * 
+     * @return <code>true</code> if there was at least one.
+     */
+    protected boolean skipSpaces() {
+	int start = mIndex;
+	int limit = mBuffer.limit();
+	byte b;
+	while (mIndex < limit && ((b = mBuffer.get(mIndex)) == ' ' || b == '\n' || b == '\r' || b == '\t')) {
+	    mIndex++;
+	}
+	return mIndex > start;
+    }
+
+    /**
+     * Skip a comment or a processing instruction, if any.
+     * 
+     * @return <code>false</code> if the '&lt;' at the current index starts an
+     *         element.
+     * @throws UnexpectedContentException If it is neither a comment, nor a
+     *                                    processing instruction, nor an
+     *                                    element (DOCTYPE, CDATA...).
+     */
+    protected boolean skipMarkup() throws UnexpectedContentException {
+	byte b = mBuffer.get(mIndex + 1);
+	if (b == '?') {
+	    skipTo('?', '>', 2);
+	    return true;
+	} else if (b == '!') {
+	    if (mBuffer.get(mIndex + 2) != '-' || mBuffer.get(mIndex + 3) != '-') {
+		throw new UnexpectedContentException("Declaration");
+	    }
+	    // "->" may be part of the comment
+	    skipTo('-', '>', 4);
+	    while (mBuffer.get(mIndex - 3) != '-') {
+		skipTo('-', '>', 0);
+	    }
+	    return true;
+	}
+	return false;
+    }
+
+    /**
+     * Skip bytes up to (and including) a 2-byte delimiter.
+     * 
+     * @param first  First byte of the delimiter.
+     * @param second Second byte of the delimiter.
+     * @param offset Offset of the first byte that may be part of the delimiter.
+     */
+    private void skipTo(char first, char second, int offset) {
+	int i = mIndex + offset;
+	while (mBuffer.get(i + 1) != second || mBuffer.get(i) != first) {
+	    i++;
+	}
+	mIndex = i + 2;
+    }
+
+    /**
+     * Skip the rest of a tag, up to its '&gt;'.
+     * 
+     * @return Index of the '&gt;'.
+     */
+    protected int skipTag() {
+	byte quote = 0;
+	byte b;
+	while ((b = mBuffer.get(mIndex)) != '>' || quote != 0) {
+	    if (quote != 0) {
+		if (b == quote) {
+		    quote = 0;
+		}
+	    } else if (b == '"' || b == '\'') {
+		quote = b;
+	    }
+	    mIndex++;
+	}
+	return mIndex++;
+    }
+
+    /**
+     * @param end Index of the '&gt;' of a tag.
+     * @return <code>true</code> if it is an empty-element tag ("/&gt;").
+     */
+    private boolean isEmptyTag(int end) {
+	return mBuffer.get(end - 1) == '/';
+    }
+
+    /**
+     * Read a name, up to a white space, '=', '/' or '&gt;'.
+     * 
+     * @return Index following the name.
+     * @throws UnexpectedContentException If the name is empty.
+     */
+    protected int readName() throws UnexpectedContentException {
+	int start = mIndex;
+	byte type;
+	while ((type = NAME_CLASSES[mBuffer.get(mIndex) & 0xFF]) == 0) {
+	    mIndex++;
+	}
+	if (type == NAME_INVALID || mIndex == start) {
+	    throw new UnexpectedContentException("Name");
+	}
+	return mIndex;
+    }
+
+    /**
+     * Expect a byte.
+     * 
+     * @param expected The expected byte.
+     * @throws UnexpectedContentException If the next byte is another one.
+     */
+    private void expect(char expected) throws UnexpectedContentException {
+	if (mBuffer.get(mIndex) != expected) {
+	    throw new UnexpectedContentException("'" + expected + "' expected");
+	}
+	mIndex++;
+    }
+
+    /**
+     * @param start Index of the name of an element.
+     * @param end   End of the name (exclusive).
+     * @return The name, if it is one of {@link #ELEMENT_NAMES} (same case),
+     *         <code>null</code> otherwise.
+     */
+    private String elementName(int start, int end) {
+	for (int i = 0; i < ELEMENT_BYTES.length; i++) {
+	    byte[] name = ELEMENT_BYTES[i];
+	    if (name.length != end - start) {
+		continue;
+	    }
+	    int j = 0;
+	    while (j < name.length && mBuffer.get(start + j) == name[j]) {
+		j++;
+	    }
+	    if (j == name.length) {
+		return ELEMENT_NAMES[i];
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * @param start Index of a name.
+     * @param end   End of the name (exclusive).
+     * @return The name.
+     */
+    private String decodeName(int start, int end) {
+	byte[] name = new byte[end - start];
+	mBuffer.get(start, name);
+	return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param start1 Index of a name.
+     * @param end1   End of the name (exclusive).
+     * @param start2 Index of another name.
+     * @param end2   End of the other name (exclusive).
+     * @return <code>true</code> if the two names are the same bytes.
+     */
+    private boolean isSameName(int start1, int end1, int start2, int end2) {
+	if (end1 - start1 != end2 - start2) {
+	    return false;
+	}
+	for (int i = 0; i < end1 - start1; i++) {
+	    if (mBuffer.get(start1 + i) != mBuffer.get(start2 + i)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.smsbr.desktop.model.Contact;
+
+/**
+ * Index of a backup file : for each contact, the byte ranges of its message
+ * elements in the file, and the dates of its messages. It is built by a fast
+ * scan of the file (see {@link SmsBackupFile#buildIndex}), so that the
+ * messages of a contact can be parsed only when they are needed (see
+ * {@link SmsBackupFile#parseMessages}).
+ * 
+ * @author Alexandre DERMONT
+ */
+public class SmsBackupFileIndex {
+
+    /** Initial capacity of the entries of a contact. */
+    protected static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Entries of the messages of a contact, in the order of the file.
+     */
+    protected static class Entries {
+	/** Number of messages. */
+	protected int mSize;
+	/** Dates of the messages. */
+	protected long[] mDates = new long[INITIAL_CAPACITY];
+	/** Positions of the elements in the file. */
+	protected long[] mStarts = new long[INITIAL_CAPACITY];
+	/** Lengths of the elements, in bytes. */
+	protected int[] mLengths = new int[INITIAL_CAPACITY];
+	/** Dates sorted in ascending order, computed on demand. */
+	protected long[] mSortedDates;
+
+	/**
+	 * Add an entry.
+	 */
+	protected void add(long date, long start, int length) {
+	    if (mSize == mDates.length) {
+		int capacity = mSize + (mSize >> 1) + 1;
+		mDates = Arrays.copyOf(mDates, capacity);
+		mStarts = Arrays.copyOf(mStarts, capacity);
+		mLengths = Arrays.copyOf(mLengths, capacity);
+	    }
+	    mDates[mSize] = date;
+	    mStarts[mSize] = start;
+	    mLengths[mSize] = length;
+	    mSize++;
+	    mSortedDates = null;
+	}
+
+	/**
+	 * @return The dates, sorted in ascending order.
+	 */
+	protected long[] getSortedDates() {
+	    if (mSortedDates == null) {
+		mSortedDates = Arrays.copyOf(mDates, mSize);
+		Arrays.sort(mSortedDates);
+	    }
+	    return mSortedDates;
+	}
+    }
+
+    /** Entries, by contact. */
+    protected Map<Contact, Entries> mEntries;
+    /** Total number of messages. */
+    protected int mMessageCount;
+
+    /**
+     * Constructor.
+     */
+    public SmsBackupFileIndex() {
+	mEntries = new LinkedHashMap<>();
+    }
+
+    /**
+     * Add a message element.
+     * 
+     * @param contact Contact of the message.
+     * @param date    Date of the message.
+     * @param start   Position of the element in the file.
+     * @param length  Length of the element, in bytes.
+     */
+    public synchronized void add(Contact contact, long date, long start, int length) {
+	mEntries.computeIfAbsent(contact, c -> new Entries()).add(date, start, length);
+	mMessageCount++;
+    }
+
+    /**
+     * Forget the messages of a contact.
+     * 
+     * @param contact The contact.
+     */
+    public synchronized void remove(Contact contact) {
+	Entries entries = mEntries.remove(contact);
+	if (entries != null) {
+	    mMessageCount -= entries.mSize;
+	}
+    }
+
+    /**
+     * @return The contacts, in the order of the file.
+     */
+    public synchronized Set<Contact> getContacts() {
+	return Collections.unmodifiableSet(mEntries.keySet());
+    }
+
+    /**
+     * @param contact A contact.
+     * @return The number of messages of the contact.
+     */
+    public synchronized int size(Contact contact) {
+	Entries entries = mEntries.get(contact);
+	return entries != null ? entries.mSize : 0;
+    }
+
+    /**
+     * @return The total number of messages.
+     */
+    public synchronized int getMessageCount() {
+	return mMessageCount;
+    }
+
+    /**
+     * @param contact A contact.
+     * @param index   Index of a message, in ascending order of dates.
+     * @return The date of the message.
+     */
+    public synchronized long getDate(Contact contact, int index) {
+	Entries entries = mEntries.get(contact);
+	if (entries == null || index < 0 || index >= entries.mSize) {
+	    throw new IndexOutOfBoundsException(index);
+	}
+	return entries.getSortedDates()[index];
+    }
+
+    /**
+     * @param contact A contact.
+     * @return The positions of the elements of the contact in the file, in
+     *         ascending order.
+     */
+    public synchronized long[] getStarts(Contact contact) {
+	Entries entries = mEntries.get(contact);
+	return entries != null ? Arrays.copyOf(entries.mStarts, entries.mSize) : new long[0];
+    }
+
+    /**
+     * @param contact A contact.
+     * @return The lengths of the elements of the contact, in the same order as
+     *         {@link #getStarts(Contact)}.
+     */
+    public synchronized int[] getLengths(Contact contact) {
+	Entries entries = mEntries.get(contact);
+	return entries != null ? Arrays.copyOf(entries.mLengths, entries.mSize) : new int[0];
+    }
+}
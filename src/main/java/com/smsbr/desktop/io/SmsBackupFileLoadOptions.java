@@ -0,0 +1,173 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.smsbr.desktop.model.Contact;
+
+/**
+ * Options for loading a backup file (see {@link SmsBackupFile#parse}).
+ * Messages filtered out are skipped while parsing : no
+ * {@link com.smsbr.desktop.model.Sms} object is created for them, and their
+ * attributes are not retained.
+ * 
+ * By default, nothing is filtered out.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class SmsBackupFileLoadOptions {
+
+    /** Minimum number of digits for a phone number to be compared. */
+    protected static final int MIN_PHONE_DIGITS = 6;
+
+    /** Contacts to load (phone numbers or names), empty for all contacts. */
+    protected List<String> mContacts;
+    /** Date of the first loaded message (inclusive). */
+    protected long mFromDate;
+    /** Date of the last loaded message (inclusive). */
+    protected long mToDate;
+    /** Skip the contents of the images ? */
+    protected boolean isSkipAttachments;
+
+    /**
+     * Constructor. Nothing is filtered out.
+     */
+    public SmsBackupFileLoadOptions() {
+	mContacts = new ArrayList<>();
+	mFromDate = Long.MIN_VALUE;
+	mToDate = Long.MAX_VALUE;
+	isSkipAttachments = false;
+    }
+
+    /**
+     * @return The contacts to load (phone numbers or names), empty for all
+     *         contacts.
+     */
+    public List<String> getContacts() {
+	return Collections.unmodifiableList(mContacts);
+    }
+
+    /**
+     * Set the contacts to load. A contact is loaded if its name (ignoring case)
+     * or its phone number is in the list. Phone numbers are compared on their
+     * digits, so that "06 12 34 56 78" matches "+33612345678". Blank strings
+     * are ignored.
+     * 
+     * @param contacts Phone numbers or names, empty for all contacts.
+     */
+    public void setContacts(Collection<String> contacts) {
+	mContacts = new ArrayList<>();
+	for (String contact : contacts) {
+	    if (StringUtils.isNotBlank(contact)) {
+		mContacts.add(contact.strip());
+	    }
+	}
+    }
+
+    /**
+     * @return The date of the first loaded message (inclusive), in milliseconds.
+     */
+    public long getFromDate() {
+	return mFromDate;
+    }
+
+    /**
+     * @return The date of the last loaded message (inclusive), in milliseconds.
+     */
+    public long getToDate() {
+	return mToDate;
+    }
+
+    /**
+     * Set the dates of the loaded messages.
+     * 
+     * @param fromDate First date (inclusive), <code>Long.MIN_VALUE</code> for no
+     *                 limit.
+     * @param toDate   Last date (inclusive), <code>Long.MAX_VALUE</code> for no
+     *                 limit.
+     */
+    public void setDateRange(long fromDate, long toDate) {
+	mFromDate = fromDate;
+	mToDate = toDate;
+    }
+
+    /**
+     * @return <code>true</code> if the contents of the images are not loaded.
+     */
+    public boolean isSkipAttachments() {
+	return isSkipAttachments;
+    }
+
+    /**
+     * @param skipAttachments <code>true</code> to skip the contents of the images
+     *                        (the messages are loaded without their images).
+     */
+    public void setSkipAttachments(boolean skipAttachments) {
+	isSkipAttachments = skipAttachments;
+    }
+
+    /**
+     * @return <code>true</code> if some messages or images are filtered out.
+     */
+    public boolean isFiltering() {
+	return !mContacts.isEmpty() || mFromDate != Long.MIN_VALUE || mToDate != Long.MAX_VALUE
+		|| isSkipAttachments;
+    }
+
+    /**
+     * @param contact The contact of a message.
+     * @param date    The date of the message.
+     * @return <code>true</code> if the message must be loaded.
+     */
+    public boolean isAccepted(Contact contact, long date) {
+	if (date < mFromDate || date > mToDate) {
+	    return false;
+	}
+	if (mContacts.isEmpty()) {
+	    return true;
+	}
+	String phoneDigits = getSignificantDigits(contact.getPhoneNumber());
+	for (String accepted : mContacts) {
+	    if (accepted.equalsIgnoreCase(contact.getCompleteName())) {
+		return true;
+	    }
+	    String acceptedDigits = getSignificantDigits(accepted);
+	    // One of the numbers may have a country code and not the other
+	    if (acceptedDigits.length() >= MIN_PHONE_DIGITS && phoneDigits.length() >= MIN_PHONE_DIGITS
+		    && (phoneDigits.endsWith(acceptedDigits) || acceptedDigits.endsWith(phoneDigits))) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * @param phoneNumber A phone number (possibly <code>null</code>).
+     * @return Its digits, without the leading zeros (national prefix).
+     */
+    protected static String getSignificantDigits(String phoneNumber) {
+	if (phoneNumber == null) {
+	    return "";
+	}
+	return StringUtils.stripStart(StringUtils.getDigits(phoneNumber), "0");
+    }
+}
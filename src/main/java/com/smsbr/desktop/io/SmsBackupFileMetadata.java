@@ -16,7 +16,9 @@
 package com.smsbr.desktop.io;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.smsbr.desktop.model.Contact;
 
@@ -29,7 +31,8 @@ public class SmsBackupFileMetadata {
 
     private long mSizeInBytes;
     private int mMessageCount;
-    private List<Contact> mContacts;
+    /** Distinct contacts, in the order they were added. */
+    private Set<Contact> mContacts;
 
     /**
      * Create a new SmsBackupFileMetadata with the specified length.
@@ -40,7 +43,7 @@ public class SmsBackupFileMetadata {
 	super();
 	this.mSizeInBytes = sizeInBytes;
 	this.mMessageCount = 0;
-	this.mContacts = new ArrayList<>();
+	this.mContacts = new LinkedHashSet<>();
     }
 
     /**
@@ -55,7 +58,7 @@ public class SmsBackupFileMetadata {
 	super();
 	this.mSizeInBytes = sizeInBytes;
 	this.mMessageCount = messageCount;
-	this.mContacts = contacts;
+	this.mContacts = new LinkedHashSet<>(contacts);
     }
 
     /**
@@ -93,16 +96,18 @@ public class SmsBackupFileMetadata {
     }
 
     /**
-     * Return all the contacts found in the in the {@link SmsBackupFile}.
+     * Return all the contacts found in the in the {@link SmsBackupFile}, without
+     * duplicates (contacts are equal if they have the same phone number).
      * 
-     * @return All the contacts.
+     * @return A copy of the contacts.
      */
     public List<Contact> getContacts() {
-	return mContacts;
+	return new ArrayList<>(mContacts);
     }
 
     /**
-     * Adds a new Contact in the metadata.
+     * Adds a new Contact in the metadata, unless a contact with the same phone
+     * number has already been added.
      */
     public void addContact(Contact c) {
 	mContacts.add(c);
@@ -0,0 +1,427 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Low-level reader of the XML content of a {@link SmsBackupFile}, between the
+ * file and the SAX parser. It streams the content in bounded chunks, and :
+ * <ul>
+ * <li>replaces "&amp;#xxxxxx;" emoji codes by a custom standardized URL like
+ * "emoji://xxxxxx;", that will be more easily converted thereafter (see
+ * {@link XmlReferences}) ;</li>
+ * <li>spills the oversized values of some attributes (the base64
+ * <code>data</code> of MMS parts : videos, high resolution photos...) to a
+ * {@link SpilledAttributeStore}, in chunks : the parser only sees a short token
+ * in place of the value.</li>
+ * </ul>
+ * 
+ * So neither the file nor a huge attribute value is ever held as a single
+ * string, and the parser never reaches the JDK limits on the size of
+ * attributes. The reader only tracks tags, quotes and markup (comments,
+ * processing instructions) : everything else is left to the parser.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class SmsBackupFileReader extends FilterReader {
+
+    /** Default length from which attribute values are spilled : 4 M characters. */
+    public static final int DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
+    /** Size of the chunks read from the underlying reader. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Where the reader is in the XML content. */
+    private enum State {
+	/** Text between tags. */
+	TEXT,
+	/** Just after a '&lt;'. */
+	TAG_START,
+	/** In a tag, outside of attribute values. */
+	TAG,
+	/** In an attribute value. */
+	VALUE,
+	/** In a comment, a processing instruction or a declaration. */
+	MARKUP
+    }
+
+    /** Names of the attributes whose oversized values are spilled (lower case). */
+    protected Set<String> mSpilledAttributes;
+    /** Length from which values are spilled. */
+    protected int mSpillThreshold;
+    /** Storage of the spilled values, <code>null</code> to never spill. */
+    protected SpilledAttributeStore mStore;
+
+    /** Chunk read from the underlying reader. */
+    private char[] mInput;
+    /** Transformed content, not read yet. */
+    private StringBuilder mOutput;
+    /** Position of the next character to read in the output. */
+    private int mOutputPosition;
+    /** <code>true</code> once the underlying reader is at its end. */
+    private boolean isEof;
+
+    /** Where the reader is in the XML content. */
+    private State mState;
+    /** Name of the current attribute. */
+    private StringBuilder mName;
+    /** <code>true</code> if the name is followed by a space or '='. */
+    private boolean isNameComplete;
+    /** Quote of the current attribute value. */
+    private char mQuote;
+    /** <code>true</code> if the current value may be spilled. */
+    private boolean isSpillable;
+    /** <code>true</code> while the current value is being spilled. */
+    private boolean isSpilling;
+    /** The current value, while it may be spilled and is not yet. */
+    private StringBuilder mValue;
+    /** Beginning of an emoji code, not written yet. */
+    private StringBuilder mEmojiCode;
+
+    /**
+     * Constructor of a reader that only replaces emoji codes.
+     * 
+     * @param in The XML content.
+     */
+    public SmsBackupFileReader(Reader in) {
+	this(in, Set.of(), null, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param in                The XML content.
+     * @param spilledAttributes Names of the attributes whose oversized values are
+     *                          spilled (case is ignored).
+     * @param store             Storage of the spilled values.
+     */
+    public SmsBackupFileReader(Reader in, Set<String> spilledAttributes, SpilledAttributeStore store) {
+	this(in, spilledAttributes, store, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param in                The XML content.
+     * @param spilledAttributes Names of the attributes whose oversized values are
+     *                          spilled (case is ignored).
+     * @param store             Storage of the spilled values, <code>null</code>
+     *                          to never spill.
+     * @param spillThreshold    Length from which values are spilled, in
+     *                          characters.
+     */
+    public SmsBackupFileReader(Reader in, Set<String> spilledAttributes, SpilledAttributeStore store,
+	    int spillThreshold) {
+	super(in);
+	mSpilledAttributes = new HashSet<>();
+	for (String name : spilledAttributes) {
+	    mSpilledAttributes.add(name.toLowerCase(Locale.ROOT));
+	}
+	mStore = store;
+	mSpillThreshold = spillThreshold;
+	mInput = new char[BUFFER_SIZE];
+	mOutput = new StringBuilder(BUFFER_SIZE * 2);
+	mState = State.TEXT;
+	mName = new StringBuilder();
+	mValue = new StringBuilder();
+	mEmojiCode = new StringBuilder();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+	if (len == 0) {
+	    return 0;
+	}
+	while (mOutputPosition == mOutput.length()) {
+	    mOutput.setLength(0);
+	    mOutputPosition = 0;
+	    if (isEof) {
+		return -1;
+	    }
+	    int read = in.read(mInput, 0, mInput.length);
+	    if (read < 0) {
+		isEof = true;
+		finish();
+	    } else {
+		process(mInput, read);
+	    }
+	}
+	int n = Math.min(len, mOutput.length() - mOutputPosition);
+	mOutput.getChars(mOutputPosition, mOutputPosition + n, cbuf, off);
+	mOutputPosition += n;
+	return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+	char[] c = new char[1];
+	return read(c, 0, 1) < 0 ? -1 : c[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long skip(long n) throws IOException {
+	char[] skipped = new char[(int) Math.min(n, BUFFER_SIZE)];
+	long remaining = n;
+	while (remaining > 0) {
+	    int read = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+	    if (read < 0) {
+		break;
+	    }
+	    remaining -= read;
+	}
+	return n - remaining;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean ready() throws IOException {
+	return mOutputPosition < mOutput.length();
+    }
+
+    /**
+     * @return <code>false</code> : mark is not supported.
+     */
+    @Override
+    public boolean markSupported() {
+	return false;
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+	throw new IOException("mark() not supported");
+    }
+
+    /**
+     * Not supported.
+     */
+    @Override
+    public void reset() throws IOException {
+	throw new IOException("reset() not supported");
+    }
+
+    /**
+     * Transform a chunk of the XML content into the output.
+     * 
+     * @param chars  The chunk.
+     * @param length Its length.
+     * @throws IOException If a value can't be spilled.
+     */
+    private void process(char[] chars, int length) throws IOException {
+	int i = 0;
+	while (i < length) {
+	    char c = chars[i];
+	    switch (mState) {
+	    case TEXT:
+		emit(c);
+		if (c == '<') {
+		    mState = State.TAG_START;
+		}
+		break;
+	    case TAG_START:
+		if (c == '!' || c == '?') {
+		    emit(c);
+		    mState = State.MARKUP;
+		} else {
+		    mState = State.TAG;
+		    mName.setLength(0);
+		    isNameComplete = false;
+		    processTag(c);
+		}
+		break;
+	    case TAG:
+		processTag(c);
+		break;
+	    case MARKUP:
+		emit(c);
+		if (c == '>') {
+		    mState = State.TEXT;
+		}
+		break;
+	    case VALUE:
+		if (isSpillable) {
+		    // The whole value up to the quote (or the end of the chunk) at once
+		    int end = i;
+		    while (end < length && chars[end] != mQuote) {
+			end++;
+		    }
+		    appendValue(chars, i, end - i);
+		    if (end < length) {
+			endValue();
+		    }
+		    i = end;
+		} else {
+		    emit(c);
+		    if (c == mQuote) {
+			mState = State.TAG;
+		    }
+		}
+		break;
+	    }
+	    i++;
+	}
+    }
+
+    /**
+     * Transform a character of a tag, outside of attribute values.
+     * 
+     * @param c The character.
+     */
+    private void processTag(char c) {
+	emit(c);
+	if (c == '>') {
+	    mState = State.TEXT;
+	} else if (c == '"' || c == '\'') {
+	    mQuote = c;
+	    mState = State.VALUE;
+	    isSpillable = mStore != null && mSpilledAttributes.contains(mName.toString().toLowerCase(Locale.ROOT));
+	    mName.setLength(0);
+	    isNameComplete = false;
+	} else if (Character.isWhitespace(c) || c == '=' || c == '/') {
+	    isNameComplete = mName.length() > 0;
+	} else {
+	    if (isNameComplete) {
+		// The previous name was the element's or an attribute without value
+		mName.setLength(0);
+		isNameComplete = false;
+	    }
+	    mName.append(c);
+	}
+    }
+
+    /**
+     * Append characters to a value that may be spilled. The value is spilled
+     * as soon as it exceeds the threshold.
+     * 
+     * @param chars  The characters.
+     * @param offset Offset of the first character.
+     * @param length Number of characters.
+     * @throws IOException If the value can't be spilled.
+     */
+    private void appendValue(char[] chars, int offset, int length) throws IOException {
+	if (isSpilling) {
+	    mStore.write(chars, offset, length);
+	    return;
+	}
+	mValue.append(chars, offset, length);
+	if (mValue.length() > mSpillThreshold) {
+	    mStore.begin();
+	    mStore.write(mValue);
+	    mValue.setLength(0);
+	    mValue.trimToSize();
+	    isSpilling = true;
+	}
+    }
+
+    /**
+     * End a value that may be spilled : write it, or its token if it has been
+     * spilled, and its closing quote.
+     * 
+     * @throws IOException If the value can't be spilled.
+     */
+    private void endValue() throws IOException {
+	if (isSpilling) {
+	    emit(mStore.end());
+	    isSpilling = false;
+	} else {
+	    emit(mValue);
+	    mValue.setLength(0);
+	}
+	emit(mQuote);
+	mState = State.TAG;
+    }
+
+    /**
+     * Write the pending characters at the end of the content.
+     * 
+     * @throws IOException If a value can't be spilled.
+     */
+    private void finish() throws IOException {
+	if (mState == State.VALUE && isSpillable) {
+	    // Unterminated value : the parser will report the error
+	    if (isSpilling) {
+		emit(mStore.end());
+		isSpilling = false;
+	    } else {
+		emit(mValue);
+		mValue.setLength(0);
+	    }
+	}
+	mOutput.append(mEmojiCode);
+	mEmojiCode.setLength(0);
+    }
+
+    /**
+     * Write characters in the output, replacing emoji codes.
+     * 
+     * @param chars The characters.
+     */
+    private void emit(CharSequence chars) {
+	for (int i = 0; i < chars.length(); i++) {
+	    emit(chars.charAt(i));
+	}
+    }
+
+    /**
+     * Write a character in the output, replacing emoji codes : the beginning of
+     * a code is kept until it is complete, or until it turns out not to be a
+     * code.
+     * 
+     * @param c The character.
+     */
+    private void emit(char c) {
+	if (mEmojiCode.length() > 0) {
+	    if (mEmojiCode.length() == 1 && c == '#') {
+		mEmojiCode.append(c);
+		return;
+	    } else if (mEmojiCode.length() > 1 && c >= '0' && c <= '9') {
+		mEmojiCode.append(c);
+		return;
+	    } else if (c == ';' && mEmojiCode.length() >= XmlReferences.EMOJI_MIN_DIGITS + 2) {
+		XmlReferences.appendEmojiCode(mOutput, mEmojiCode, 2, mEmojiCode.length());
+		mEmojiCode.setLength(0);
+		return;
+	    }
+	    // Not an emoji code
+	    mOutput.append(mEmojiCode);
+	    mEmojiCode.setLength(0);
+	}
+	if (c == '&') {
+	    mEmojiCode.append(c);
+	} else {
+	    mOutput.append(c);
+	}
+    }
+}
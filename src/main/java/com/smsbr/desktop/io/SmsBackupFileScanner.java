@@ -0,0 +1,470 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Fast byte-level scanner of a backup file : it finds the byte ranges of the
+ * message elements ("&lt;sms&gt;" and "&lt;mms&gt;") and reads the attributes
+ * of their start tags, without parsing their content (parts of MMS, images...).
+ * It is several times faster than a SAX parser, and doesn't create any object
+ * for the content it skips.
+ * 
+ * The file is expected to be UTF-8 encoded XML, as written by SMS Backup &amp;
+ * Restore. Comments, processing instructions and CDATA sections are skipped,
+ * and quoted attribute values may contain any character.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class SmsBackupFileScanner {
+
+    /** Size of the read buffer. */
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Handler of the elements found by the scanner.
+     */
+    public interface IElementHandler {
+
+	/**
+	 * Called for each message element.
+	 * 
+	 * @param name       Name of the element.
+	 * @param attributes Attributes of its start tag.
+	 * @param start      Position of the element in the file (its '&lt;').
+	 * @param end        Position following the element (after its end tag).
+	 */
+	void onElement(String name, Attributes attributes, long start, long end);
+    }
+
+    /** Names of the scanned elements, in lower case. */
+    protected Set<String> mElementNames;
+    /** Names of the attributes to read (ASCII), <code>null</code> for all. */
+    protected byte[][] mAttributeNames;
+
+    /** The read buffer. */
+    protected byte[] mBuffer;
+    /** Number of bytes in the buffer. */
+    protected int mLimit;
+    /** Index of the next byte in the buffer. */
+    protected int mIndex;
+    /** Position of the first byte of the buffer in the file. */
+    protected long mBufferPosition;
+    /** The scanned file. */
+    protected InputStream mIn;
+
+    /** Bytes of the current tag, after its name. */
+    protected byte[] mTag;
+    /** Number of bytes in {@link #mTag}. */
+    protected int mTagLength;
+
+    /**
+     * Constructor.
+     * 
+     * @param elementNames Names of the scanned elements, in lower case. Nested
+     *                     elements are not scanned.
+     */
+    public SmsBackupFileScanner(Set<String> elementNames) {
+	this(elementNames, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param elementNames   Names of the scanned elements, in lower case. Nested
+     *                       elements are not scanned.
+     * @param attributeNames Names of the attributes to read (compared ignoring
+     *                       case), or <code>null</code> to read all of them.
+     *                       Skipping the others (e.g. the body of the messages)
+     *                       makes the scan faster.
+     */
+    public SmsBackupFileScanner(Set<String> elementNames, Set<String> attributeNames) {
+	mElementNames = elementNames;
+	if (attributeNames != null) {
+	    mAttributeNames = attributeNames.stream().map(name -> name.toLowerCase().getBytes(StandardCharsets.US_ASCII))
+		    .toArray(byte[][]::new);
+	}
+	mBuffer = new byte[BUFFER_SIZE];
+	mTag = new byte[1024];
+    }
+
+    /**
+     * Scan a file.
+     * 
+     * @param file        The file.
+     * @param handler     Handler of the scanned elements.
+     * @param isCancelled Tells whether the scan must be stopped.
+     * @param progress    Notified of the number of bytes read (at each buffer).
+     *                    Can be <code>null</code>.
+     * @return <code>false</code> if the scan has been cancelled.
+     * @throws IOException In case of I/O error, or if the file is truncated.
+     */
+    public boolean scan(Path file, IElementHandler handler, BooleanSupplier isCancelled,
+	    LongConsumer progress) throws IOException {
+	try (InputStream in = Files.newInputStream(file)) {
+	    mIn = in;
+	    mLimit = 0;
+	    mIndex = 0;
+	    mBufferPosition = 0;
+
+	    String element = null;
+	    Attributes attributes = null;
+	    long elementStart = 0;
+	    int b;
+	    while ((b = read()) >= 0) {
+		if (mIndex == mLimit) {
+		    // End of a buffer
+		    if (isCancelled.getAsBoolean()) {
+			return false;
+		    }
+		    if (progress != null) {
+			progress.accept(getPosition());
+		    }
+		}
+		if (b != '<') {
+		    continue;
+		}
+		long tagStart = getPosition() - 1;
+		int c = readRequired();
+		if (c == '!') {
+		    skipDeclaration();
+		} else if (c == '?') {
+		    skipTo("?>");
+		} else if (c == '/') {
+		    String name = readName(readRequired());
+		    skipTo(">");
+		    if (element != null && element.equalsIgnoreCase(name)) {
+			handler.onElement(element, attributes, elementStart, getPosition());
+			element = null;
+		    }
+		} else {
+		    String name = readName(c);
+		    boolean isElement = element == null && mElementNames.contains(name.toLowerCase());
+		    boolean isEmpty = readTag(isElement);
+		    if (isElement) {
+			attributes = parseAttributes();
+			if (isEmpty) {
+			    handler.onElement(name, attributes, tagStart, getPosition());
+			} else {
+			    element = name;
+			    elementStart = tagStart;
+			}
+		    }
+		}
+	    }
+	    if (element != null) {
+		throw new IOException("Unexpected end of file in element '" + element + "'");
+	    }
+	    return true;
+	} finally {
+	    mIn = null;
+	}
+    }
+
+    /**
+     * @return The position of the next byte in the file.
+     */
+    protected long getPosition() {
+	return mBufferPosition + mIndex;
+    }
+
+    /**
+     * @return The next byte, or -1 at the end of the file.
+     * @throws IOException In case of I/O error.
+     */
+    protected int read() throws IOException {
+	if (mIndex == mLimit) {
+	    mBufferPosition += mLimit;
+	    mIndex = 0;
+	    mLimit = mIn.readNBytes(mBuffer, 0, mBuffer.length);
+	    if (mLimit <= 0) {
+		mLimit = 0;
+		return -1;
+	    }
+	}
+	return mBuffer[mIndex++] & 0xFF;
+    }
+
+    /**
+     * @return The next byte.
+     * @throws IOException At the end of the file.
+     */
+    protected int readRequired() throws IOException {
+	int b = read();
+	if (b < 0) {
+	    throw new IOException("Unexpected end of file at " + getPosition());
+	}
+	return b;
+    }
+
+    /**
+     * Read the name of a tag.
+     * 
+     * @param first First byte of the name.
+     * @return The name.
+     * @throws IOException In case of I/O error.
+     */
+    protected String readName(int first) throws IOException {
+	StringBuilder name = new StringBuilder();
+	int b = first;
+	while (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != '/' && b != '>') {
+	    name.append((char) b);
+	    b = readRequired();
+	}
+	// The delimiter is part of the rest of the tag
+	mIndex--;
+	return name.toString();
+    }
+
+    /**
+     * Read the rest of a start tag, up to its '&gt;'. '&gt;' characters in
+     * quoted values are ignored.
+     * 
+     * @param isKept <code>true</code> to keep the bytes of the tag in
+     *               {@link #mTag}.
+     * @return <code>true</code> if it is an empty-element tag ("/&gt;").
+     * @throws IOException In case of I/O error.
+     */
+    protected boolean readTag(boolean isKept) throws IOException {
+	mTagLength = 0;
+	int quote = 0;
+	int previous = 0;
+	int b;
+	while ((b = readRequired()) != '>' || quote != 0) {
+	    if (quote != 0) {
+		if (b == quote) {
+		    quote = 0;
+		}
+	    } else if (b == '"' || b == '\'') {
+		quote = b;
+	    }
+	    if (isKept) {
+		if (mTagLength == mTag.length) {
+		    mTag = Arrays.copyOf(mTag, mTag.length * 2);
+		}
+		mTag[mTagLength++] = (byte) b;
+	    }
+	    previous = b;
+	}
+	return previous == '/';
+    }
+
+    /**
+     * Skip bytes up to (and including) a delimiter.
+     * 
+     * @param delimiter The delimiter (ASCII).
+     * @throws IOException In case of I/O error.
+     */
+    protected void skipTo(String delimiter) throws IOException {
+	int n = delimiter.length();
+	int[] last = new int[n];
+	for (int count = 1;; count++) {
+	    System.arraycopy(last, 1, last, 0, n - 1);
+	    last[n - 1] = readRequired();
+	    if (count >= n && last[n - 1] == delimiter.charAt(n - 1) && endsWith(last, delimiter)) {
+		return;
+	    }
+	}
+    }
+
+    /**
+     * @param last      The last bytes read.
+     * @param delimiter A delimiter, as long as <code>last</code>.
+     * @return <code>true</code> if the bytes are the delimiter.
+     */
+    private static boolean endsWith(int[] last, String delimiter) {
+	for (int i = 0; i < last.length; i++) {
+	    if (last[i] != delimiter.charAt(i)) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Skip a comment, a CDATA section or a DOCTYPE declaration ("&lt;!" has been
+     * read).
+     * 
+     * @throws IOException In case of I/O error.
+     */
+    protected void skipDeclaration() throws IOException {
+	int b = readRequired();
+	if (b == '-') {
+	    readRequired();
+	    skipTo("-->");
+	} else if (b == '[') {
+	    skipTo("]]>");
+	} else {
+	    skipTo(">");
+	}
+    }
+
+    /**
+     * Parse the attributes kept in {@link #mTag}.
+     * 
+     * @return The attributes, with their entities resolved.
+     */
+    protected Attributes parseAttributes() {
+	AttributesImpl attributes = new AttributesImpl();
+	int i = 0;
+	while (i < mTagLength) {
+	    // Name
+	    while (i < mTagLength && isSpace(mTag[i])) {
+		i++;
+	    }
+	    int nameStart = i;
+	    while (i < mTagLength && mTag[i] != '=' && !isSpace(mTag[i]) && mTag[i] != '/') {
+		i++;
+	    }
+	    if (i == nameStart) {
+		i++;
+		continue;
+	    }
+	    int nameEnd = i;
+	    // Quoted value
+	    while (i < mTagLength && mTag[i] != '"' && mTag[i] != '\'') {
+		i++;
+	    }
+	    if (i == mTagLength) {
+		break;
+	    }
+	    byte quote = mTag[i++];
+	    int valueStart = i;
+	    while (i < mTagLength && mTag[i] != quote) {
+		i++;
+	    }
+	    if (isRead(nameStart, nameEnd)) {
+		String name = new String(mTag, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+		String value = unescape(new String(mTag, valueStart, i - valueStart, StandardCharsets.UTF_8));
+		attributes.addAttribute("", name, name, "CDATA", value);
+	    }
+	    i++;
+	}
+	return attributes;
+    }
+
+    /**
+     * @param nameStart Start of the name of an attribute in {@link #mTag}.
+     * @param nameEnd   End of the name (exclusive).
+     * @return <code>true</code> if the attribute must be read.
+     */
+    protected boolean isRead(int nameStart, int nameEnd) {
+	if (mAttributeNames == null) {
+	    return true;
+	}
+	for (byte[] name : mAttributeNames) {
+	    if (name.length == nameEnd - nameStart) {
+		int j = 0;
+		while (j < name.length && equalsIgnoreCase(mTag[nameStart + j], name[j])) {
+		    j++;
+		}
+		if (j == name.length) {
+		    return true;
+		}
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * @param b     A byte.
+     * @param lower A lower case ASCII byte.
+     * @return <code>true</code> if the byte is the same, ignoring the case of
+     *         letters ('_' must not match DEL).
+     */
+    static boolean equalsIgnoreCase(byte b, byte lower) {
+	return b == lower || (lower >= 'a' && lower <= 'z' && (b | 0x20) == lower);
+    }
+
+    /**
+     * @param b A byte.
+     * @return <code>true</code> if it is a XML white space.
+     */
+    private static boolean isSpace(byte b) {
+	return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Decode an attribute value like a SAX parser reading it through a
+     * {@link SmsBackupFileReader}, so that the values match those of a full
+     * load : white spaces are normalized, and the entities and character
+     * references are decoded (see {@link XmlReferences}).
+     * 
+     * @param value The raw value.
+     * @return The value.
+     */
+    public static String unescape(String value) {
+	int length = value.length();
+	int i = 0;
+	while (i < length && !isEscaped(value.charAt(i))) {
+	    i++;
+	}
+	if (i == length) {
+	    return value;
+	}
+	StringBuilder sb = new StringBuilder(length);
+	sb.append(value, 0, i);
+	while (i < length) {
+	    char c = value.charAt(i);
+	    if (c == '\r') {
+		if (i + 1 < length && value.charAt(i + 1) == '\n') {
+		    i++;
+		}
+		sb.append(' ');
+		i++;
+	    } else if (c == '\n' || c == '\t') {
+		sb.append(' ');
+		i++;
+	    } else if (c == '&') {
+		int semicolon = value.indexOf(';', i);
+		if (semicolon < 0) {
+		    break;
+		}
+		String reference = value.substring(i + 1, semicolon);
+		if (!XmlReferences.appendReference(sb, reference)) {
+		    // Not a valid reference : kept as is
+		    sb.append('&').append(reference).append(';');
+		}
+		i = semicolon + 1;
+	    } else {
+		sb.append(c);
+		i++;
+	    }
+	}
+	sb.append(value, i, length);
+	return sb.toString();
+    }
+
+    /**
+     * @param c A character of an attribute value.
+     * @return <code>true</code> if it is changed by {@link #unescape(String)}.
+     */
+    private static boolean isEscaped(char c) {
+	return c == '&' || c == '\r' || c == '\n' || c == '\t';
+    }
+}
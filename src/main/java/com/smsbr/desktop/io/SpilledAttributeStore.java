@@ -0,0 +1,247 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+import com.smsbr.desktop.model.FileTextArena;
+import com.smsbr.desktop.model.ImagePayload;
+
+/**
+ * Storage of the attribute values spilled by {@link SmsBackupFileReader} : each
+ * value is streamed to a temporary file (see {@link FileTextArena}) and hashed
+ * on the fly, and the parser only sees a short token in place of the value. The
+ * token gives back the content as an {@link ImagePayload} (see
+ * {@link #take(String)}), which reads it from the file when it's needed.
+ * 
+ * Identical values are stored once. The temporary file is created with the
+ * first spilled value, and deleted by {@link #dispose()}.
+ * 
+ * Spilled values are expected to be base64 contents (ASCII only).
+ * 
+ * @author Alexandre DERMONT
+ */
+public class SpilledAttributeStore {
+
+    /** Prefix of the tokens replacing the spilled values. */
+    public static final String TOKEN_PREFIX = "spilled://";
+
+    /** Size of the buffer used to encode the values. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Directory of the temporary file. */
+    protected File mDirectory;
+    /** The temporary file, <code>null</code> until a value is spilled. */
+    protected FileTextArena mArena;
+    /** <code>true</code> if spilled values are dropped instead of stored. */
+    protected boolean isDiscarding;
+    /** Hashes the value being spilled. */
+    protected MessageDigest mDigest;
+    /** Encodes the value being spilled. */
+    protected byte[] mBuffer;
+    /** Address of the value being spilled. */
+    protected long mAddress;
+    /** Number of values spilled so far, for the tokens. */
+    protected int mTokenCount;
+    /** Token of the last value that has been written in the file. */
+    protected String mLastToken;
+    /** Address of the last value that has been written in the file. */
+    protected long mLastAddress;
+    /** Spilled values not taken yet, by token. */
+    protected Map<String, ImagePayload> mPayloadsByToken;
+    /** Spilled values, by content hash. */
+    protected Map<String, ImagePayload> mPayloadsByHash;
+
+    /**
+     * Constructor.
+     * 
+     * @param directory Directory of the temporary file.
+     */
+    public SpilledAttributeStore(File directory) {
+	mDirectory = directory;
+	mBuffer = new byte[BUFFER_SIZE];
+	mPayloadsByToken = new HashMap<>();
+	mPayloadsByHash = new HashMap<>();
+	try {
+	    mDigest = MessageDigest.getInstance("SHA-256");
+	} catch (NoSuchAlgorithmException e) {
+	    // SHA-256 is supported by every Java platform
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    /**
+     * @param discarding <code>true</code> to drop the spilled values (e.g. when
+     *                   only the metadata of a file are read, or when the images
+     *                   are skipped) : nothing is written.
+     */
+    public void setDiscarding(boolean discarding) {
+	isDiscarding = discarding;
+    }
+
+    /**
+     * Start spilling a value.
+     * 
+     * @throws IOException If the temporary file can't be created.
+     */
+    public void begin() throws IOException {
+	if (isDiscarding) {
+	    return;
+	}
+	if (mArena == null) {
+	    mArena = new FileTextArena(mDirectory);
+	}
+	mAddress = mArena.getSize();
+	mDigest.reset();
+    }
+
+    /**
+     * Spill a chunk of the current value.
+     * 
+     * @param chars  The characters of the chunk.
+     * @param offset Offset of the first character.
+     * @param length Number of characters.
+     * @throws IOException If the chunk can't be written.
+     */
+    public void write(char[] chars, int offset, int length) throws IOException {
+	if (isDiscarding) {
+	    return;
+	}
+	for (int done = 0; done < length;) {
+	    int n = Math.min(length - done, mBuffer.length);
+	    for (int i = 0; i < n; i++) {
+		char c = chars[offset + done + i];
+		// Base64 is plain ASCII
+		mBuffer[i] = (byte) (c < 0x80 ? c : '?');
+	    }
+	    mDigest.update(mBuffer, 0, n);
+	    mArena.write(mBuffer, 0, n);
+	    done += n;
+	}
+    }
+
+    /**
+     * Spill a chunk of the current value, already encoded (e.g. read from a
+     * mapped file).
+     * 
+     * @param bytes The ASCII bytes of the chunk, from the position to the limit
+     *              of the buffer. The buffer is left unchanged.
+     * @throws IOException If the chunk can't be written.
+     */
+    public void write(ByteBuffer bytes) throws IOException {
+	if (isDiscarding) {
+	    return;
+	}
+	mDigest.update(bytes.duplicate());
+	mArena.write(bytes.duplicate());
+    }
+
+    /**
+     * Spill a chunk of the current value.
+     * 
+     * @param chars The characters of the chunk.
+     * @throws IOException If the chunk can't be written.
+     */
+    public void write(CharSequence chars) throws IOException {
+	char[] array = new char[chars.length()];
+	chars.toString().getChars(0, array.length, array, 0);
+	write(array, 0, array.length);
+    }
+
+    /**
+     * End the current value. If the same value has already been spilled, it is
+     * removed from the file and the token refers to the first copy.
+     * 
+     * @return The token replacing the value, or an empty string if values are
+     *         discarded.
+     * @throws IOException If the value can't be stored.
+     */
+    public String end() throws IOException {
+	if (isDiscarding) {
+	    return "";
+	}
+	long length = mArena.getSize() - mAddress;
+	if (length > Integer.MAX_VALUE) {
+	    throw new IOException("Attribute value too large : " + length + " bytes");
+	}
+	String hash = HexFormat.of().formatHex(mDigest.digest());
+	String token = TOKEN_PREFIX + mTokenCount++;
+	ImagePayload payload = mPayloadsByHash.get(hash);
+	if (payload != null) {
+	    mArena.truncate(mAddress);
+	} else {
+	    payload = new ImagePayload(mArena, mAddress, (int) length, hash);
+	    mPayloadsByHash.put(hash, payload);
+	    mLastToken = token;
+	    mLastAddress = mAddress;
+	}
+	mPayloadsByToken.put(token, payload);
+	return token;
+    }
+
+    /**
+     * @param value An attribute value.
+     * @return <code>true</code> if the value is the token of a spilled value.
+     */
+    public static boolean isToken(String value) {
+	return value != null && value.startsWith(TOKEN_PREFIX);
+    }
+
+    /**
+     * Get a spilled value. A token can be taken only once.
+     * 
+     * @param token The token that replaced the value.
+     * @return The spilled value, <code>null</code> if it is unknown.
+     */
+    public ImagePayload take(String token) {
+	return mPayloadsByToken.remove(token);
+    }
+
+    /**
+     * Forget a spilled value that is not needed (e.g. the data of a video). Its
+     * space in the file is released if it is the last value written.
+     * 
+     * @param token The token that replaced the value.
+     * @throws IOException If the file can't be truncated.
+     */
+    public void discard(String token) throws IOException {
+	ImagePayload payload = mPayloadsByToken.remove(token);
+	if (payload != null && token.equals(mLastToken)) {
+	    mPayloadsByHash.remove(payload.getContentHash());
+	    mArena.truncate(mLastAddress);
+	    mLastToken = null;
+	}
+    }
+
+    /**
+     * Delete the temporary file. The spilled values can't be read anymore.
+     */
+    public void dispose() {
+	if (mArena != null) {
+	    mArena.dispose();
+	    mArena = null;
+	}
+	mPayloadsByToken.clear();
+	mPayloadsByHash.clear();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+/**
+ * Decoding of the entities and character references of a backup file, shared
+ * by the {@link SmsBackupFileReader}, the {@link SmsBackupFileScanner} and the
+ * {@link SmsBackupFileFastParser} : the values they read must be exactly the
+ * same.
+ * 
+ * Decimal references of {@value #EMOJI_MIN_DIGITS} digits or more are emoji
+ * codes : they are not resolved, but replaced by a custom standardized URL like
+ * "emoji://xxxxxx;", that will be more easily converted thereafter.
+ * 
+ * @author Alexandre DERMONT
+ */
+final class XmlReferences {
+
+    /** Prefix of the emoji codes, once replaced. */
+    static final String EMOJI_PREFIX = "emoji://";
+    /** Minimum number of digits of an emoji code. */
+    static final int EMOJI_MIN_DIGITS = 3;
+
+    private XmlReferences() {
+    }
+
+    /**
+     * Append the replacement of an emoji code.
+     * 
+     * @param text   Where to append the replacement.
+     * @param digits Characters containing the digits of the code.
+     * @param start  Index of the first digit.
+     * @param end    End of the digits (exclusive).
+     */
+    static void appendEmojiCode(StringBuilder text, CharSequence digits, int start, int end) {
+	text.append(EMOJI_PREFIX).append(digits, start, end).append(';');
+    }
+
+    /**
+     * Append the value of an entity or a character reference, or the
+     * replacement of an emoji code.
+     * 
+     * @param text      Where to append the value.
+     * @param reference The reference, without its '&amp;' and ';'.
+     * @return <code>false</code> if the reference is unknown or invalid (nothing
+     *         is appended).
+     */
+    static boolean appendReference(StringBuilder text, CharSequence reference) {
+	int length = reference.length();
+	if (length == 0) {
+	    return false;
+	}
+	if (reference.charAt(0) != '#') {
+	    char c = switch (reference.toString()) {
+	    case "amp" -> '&';
+	    case "lt" -> '<';
+	    case "gt" -> '>';
+	    case "quot" -> '"';
+	    case "apos" -> '\'';
+	    default -> 0;
+	    };
+	    if (c == 0) {
+		return false;
+	    }
+	    text.append(c);
+	    return true;
+	}
+	boolean isHex = length > 1 && reference.charAt(1) == 'x';
+	int radix = isHex ? 16 : 10;
+	int digits = isHex ? 2 : 1;
+	if (digits == length) {
+	    return false;
+	}
+	long codePoint = 0;
+	for (int i = digits; i < length; i++) {
+	    int digit = digit(reference.charAt(i), radix);
+	    if (digit < 0) {
+		return false;
+	    }
+	    codePoint = Math.min(codePoint * radix + digit, Integer.MAX_VALUE);
+	}
+	if (!isHex && length - digits >= EMOJI_MIN_DIGITS) {
+	    appendEmojiCode(text, reference, digits, length);
+	} else if (isXmlChar((int) codePoint)) {
+	    text.appendCodePoint((int) codePoint);
+	} else {
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * @param c     A character.
+     * @param radix 10 or 16.
+     * @return The value of the digit, -1 if it is not an ASCII digit.
+     */
+    private static int digit(char c, int radix) {
+	if (c >= '0' && c <= '9') {
+	    return c - '0';
+	} else if (radix == 16 && ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+	    return (c | 0x20) - 'a' + 10;
+	}
+	return -1;
+    }
+
+    /**
+     * @param codePoint A code point.
+     * @return <code>true</code> if it is allowed in a XML 1.0 document.
+     */
+    private static boolean isXmlChar(int codePoint) {
+	return codePoint == 0x9 || codePoint == 0xA || codePoint == 0xD || (codePoint >= 0x20 && codePoint <= 0xD7FF)
+		|| (codePoint >= 0xE000 && codePoint <= 0xFFFD) || (codePoint >= 0x10000 && codePoint <= 0x10FFFF);
+    }
+}
@@ -0,0 +1,396 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact message store for very large backups. Instead of one {@link Sms}
+ * object per message, the messages of each contact are stored in columns :
+ * dates in a <code>long[]</code>, flags packed in a <code>byte[]</code>, and
+ * bodies in a shared {@link ITextArena}. Images and recipients, which most
+ * messages don't have, are kept in sparse side tables.
+ * 
+ * {@link Sms} objects returned by this store are views materialized on demand
+ * : modifying them does not modify the store, and two calls return different
+ * instances for the same message. Images are not copied, so that they keep
+ * their identity.
+ * 
+ * Messages may be added in any order : they are sorted by {@link #seal()},
+ * which must be called before the store is read. Reads never modify the store,
+ * so that it can be read by several threads at the same time.
+ * 
+ * The space of the bodies of removed conversations is not reclaimed.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class ColumnarMessageStore implements IMessageStore {
+
+    /** Flag of the messages sent by 'me'. */
+    protected static final byte FLAG_ME = 0x01;
+    /** Flag of the draft messages. */
+    protected static final byte FLAG_DRAFT = 0x02;
+    /** Flag of the messages without body (<code>null</code>). */
+    protected static final byte FLAG_NULL_BODY = 0x04;
+
+    /** Initial capacity of the columns. */
+    protected static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Columns of the messages of a contact. Messages are appended, and sorted
+     * by date once they have all been added (see {@link #ensureSorted()}).
+     */
+    protected static class Columns {
+	/** Number of messages. */
+	protected int mSize;
+	/** Dates of the messages. */
+	protected long[] mDates = new long[INITIAL_CAPACITY];
+	/** Flags of the messages. */
+	protected byte[] mFlags = new byte[INITIAL_CAPACITY];
+	/** Addresses of the bodies in the arena. */
+	protected long[] mBodyAddresses = new long[INITIAL_CAPACITY];
+	/** Lengths of the bodies, in bytes. */
+	protected int[] mBodyLengths = new int[INITIAL_CAPACITY];
+	/** Identifiers of the messages in the side tables. */
+	protected int[] mIds = new int[INITIAL_CAPACITY];
+
+	/** <code>false</code> if messages have been added out of order. */
+	protected boolean mIsSorted = true;
+
+	/**
+	 * Make room for a new message at the end of the columns.
+	 * 
+	 * @param date Date of the new message.
+	 * @return Index of the new message.
+	 */
+	protected int append(long date) {
+	    if (mSize == mDates.length) {
+		int capacity = mSize + (mSize >> 1) + 1;
+		mDates = Arrays.copyOf(mDates, capacity);
+		mFlags = Arrays.copyOf(mFlags, capacity);
+		mBodyAddresses = Arrays.copyOf(mBodyAddresses, capacity);
+		mBodyLengths = Arrays.copyOf(mBodyLengths, capacity);
+		mIds = Arrays.copyOf(mIds, capacity);
+	    }
+	    if (mSize > 0 && date < mDates[mSize - 1]) {
+		mIsSorted = false;
+	    }
+	    mDates[mSize] = date;
+	    return mSize++;
+	}
+
+	/**
+	 * Sort the messages by date, if they have been added out of order. The sort
+	 * is stable : messages with the same date keep the order they were added in.
+	 */
+	protected void ensureSorted() {
+	    if (mIsSorted) {
+		return;
+	    }
+	    int[] order = new int[mSize];
+	    for (int i = 0; i < mSize; i++) {
+		order[i] = i;
+	    }
+	    mergeSort(order, new int[mSize], 0, mSize);
+
+	    long[] dates = new long[mDates.length];
+	    byte[] flags = new byte[mFlags.length];
+	    long[] bodyAddresses = new long[mBodyAddresses.length];
+	    int[] bodyLengths = new int[mBodyLengths.length];
+	    int[] ids = new int[mIds.length];
+	    for (int i = 0; i < mSize; i++) {
+		int from = order[i];
+		dates[i] = mDates[from];
+		flags[i] = mFlags[from];
+		bodyAddresses[i] = mBodyAddresses[from];
+		bodyLengths[i] = mBodyLengths[from];
+		ids[i] = mIds[from];
+	    }
+	    mDates = dates;
+	    mFlags = flags;
+	    mBodyAddresses = bodyAddresses;
+	    mBodyLengths = bodyLengths;
+	    mIds = ids;
+	    mIsSorted = true;
+	}
+
+	/**
+	 * Stable sort of message indexes by date.
+	 * 
+	 * @param order Indexes to sort.
+	 * @param tmp   Work array, as long as <code>order</code>.
+	 * @param from  First index (inclusive).
+	 * @param to    Last index (exclusive).
+	 */
+	private void mergeSort(int[] order, int[] tmp, int from, int to) {
+	    if (to - from < 2) {
+		return;
+	    }
+	    int middle = (from + to) >>> 1;
+	    mergeSort(order, tmp, from, middle);
+	    mergeSort(order, tmp, middle, to);
+	    if (mDates[order[middle - 1]] <= mDates[order[middle]]) {
+		// Already in order
+		return;
+	    }
+	    System.arraycopy(order, from, tmp, from, to - from);
+	    int left = from;
+	    int right = middle;
+	    for (int i = from; i < to; i++) {
+		if (right >= to || (left < middle && mDates[tmp[left]] <= mDates[tmp[right]])) {
+		    order[i] = tmp[left++];
+		} else {
+		    order[i] = tmp[right++];
+		}
+	    }
+	}
+    }
+
+    /** Columns, by contact. */
+    protected Map<Contact, Columns> mColumns;
+    /** Bodies of the messages. */
+    protected ITextArena mBodies;
+    /**
+     * Storage of the contents of the images, or <code>null</code> to keep them in
+     * the Java heap.
+     */
+    protected ITextArena mImagePayloads;
+    /** Images, by message id (only for messages having images). */
+    protected Map<Integer, List<ImagePart>> mImages;
+    /** Recipients, by message id (only for messages having recipients). */
+    protected Map<Integer, List<String>> mRecipients;
+    /** Next message id. */
+    protected int mNextId;
+
+    /**
+     * Constructor. Bodies are stored in the Java heap.
+     */
+    public ColumnarMessageStore() {
+	this(new TextArena());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param bodies Storage of the bodies (e.g. a {@link DirectTextArena} to
+     *               keep them out of the Java heap).
+     */
+    public ColumnarMessageStore(ITextArena bodies) {
+	this(bodies, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param bodies        Storage of the bodies.
+     * @param imagePayloads Storage where the contents of the images are spilled
+     *                      (see {@link ImagePayload#spill(ITextArena)}), or
+     *                      <code>null</code> to keep them in the Java heap. May
+     *                      be the same arena as the bodies.
+     */
+    public ColumnarMessageStore(ITextArena bodies, ITextArena imagePayloads) {
+	mColumns = new HashMap<>();
+	mBodies = bodies;
+	mImagePayloads = imagePayloads;
+	mImages = new HashMap<>();
+	mRecipients = new HashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(Sms message) {
+	Columns columns = mColumns.computeIfAbsent(message.getContact(), c -> new Columns());
+	// Messages added out of order are sorted by seal()
+	int index = columns.append(message.getDate());
+
+	int id = mNextId++;
+	byte flags = 0;
+	if (message.isMe()) {
+	    flags |= FLAG_ME;
+	}
+	if (message.isDraft()) {
+	    flags |= FLAG_DRAFT;
+	}
+	if (message.getBody() != null) {
+	    byte[] body = message.getBody().getBytes(StandardCharsets.UTF_8);
+	    columns.mBodyAddresses[index] = mBodies.append(body);
+	    columns.mBodyLengths[index] = body.length;
+	} else {
+	    flags |= FLAG_NULL_BODY;
+	}
+	columns.mFlags[index] = flags;
+	columns.mIds[index] = id;
+
+	if (!message.getImages().isEmpty()) {
+	    if (mImagePayloads != null) {
+		for (ImagePart image : message.getImages()) {
+		    image.getPayload().spill(mImagePayloads);
+		}
+	    }
+	    mImages.put(id, new ArrayList<>(message.getImages()));
+	}
+	if (!message.getRecipients().isEmpty()) {
+	    mRecipients.put(id, new ArrayList<>(message.getRecipients()));
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(Contact contact) {
+	Columns columns = mColumns.remove(contact);
+	if (columns != null) {
+	    for (int i = 0; i < columns.mSize; i++) {
+		mImages.remove(columns.mIds[i]);
+		mRecipients.remove(columns.mIds[i]);
+	    }
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts() {
+	return mColumns.keySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(Contact contact) {
+	Columns columns = mColumns.get(contact);
+	return columns != null ? columns.mSize : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDate(Contact contact, int index) {
+	Columns columns = getSortedColumns(contact);
+	if (index < 0 || index >= columns.mSize) {
+	    throw new IndexOutOfBoundsException(index);
+	}
+	return columns.mDates[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Sms> getMessages(Contact contact, int from, int to) {
+	Columns columns = getSortedColumns(contact);
+	int size = columns != null ? columns.mSize : 0;
+	if (from < 0 || to > size || from > to) {
+	    throw new IndexOutOfBoundsException(from);
+	}
+	List<Sms> messages = new ArrayList<>(to - from);
+	for (int i = from; i < to; i++) {
+	    messages.add(materialize(contact, columns, i));
+	}
+	return messages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Sms> getMessagesWithImages(Contact contact) {
+	Columns columns = getSortedColumns(contact);
+	List<Sms> messages = new ArrayList<>();
+	if (columns != null) {
+	    for (int i = 0; i < columns.mSize; i++) {
+		if (mImages.containsKey(columns.mIds[i])) {
+		    messages.add(materialize(contact, columns, i));
+		}
+	    }
+	}
+	return messages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seal() {
+	mColumns.values().forEach(Columns::ensureSorted);
+    }
+
+    /**
+     * @param contact A contact.
+     * @return The columns of the contact, sorted by date, or <code>null</code>
+     *         if the contact is unknown.
+     * @throws IllegalStateException If messages have been added out of order
+     *                               since the store has been sealed.
+     */
+    protected Columns getSortedColumns(Contact contact) {
+	Columns columns = mColumns.get(contact);
+	if (columns != null && !columns.mIsSorted) {
+	    throw new IllegalStateException("The store must be sealed before it is read");
+	}
+	return columns;
+    }
+
+    /**
+     * Create a view of a message.
+     * 
+     * @param contact The contact of the message.
+     * @param columns The columns of the contact.
+     * @param index   Index of the message.
+     * @return The message.
+     */
+    protected Sms materialize(Contact contact, Columns columns, int index) {
+	byte flags = columns.mFlags[index];
+	String body = (flags & FLAG_NULL_BODY) != 0 ? null
+		: mBodies.get(columns.mBodyAddresses[index], columns.mBodyLengths[index]);
+	Sms sms = new Sms(columns.mDates[index], (flags & FLAG_ME) != 0, (flags & FLAG_DRAFT) != 0, body, contact);
+
+	List<ImagePart> images = mImages.get(columns.mIds[index]);
+	if (images != null) {
+	    images.forEach(sms::add);
+	}
+	List<String> recipients = mRecipients.get(columns.mIds[index]);
+	if (recipients != null) {
+	    sms.mRecipients = new ArrayList<>(recipients);
+	}
+	return sms;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dispose() {
+	mColumns.clear();
+	mImages.clear();
+	mRecipients.clear();
+	mBodies.dispose();
+	if (mImagePayloads != null && mImagePayloads != mBodies) {
+	    mImagePayloads.dispose();
+	}
+    }
+}
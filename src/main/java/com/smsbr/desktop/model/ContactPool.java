@@ -0,0 +1,75 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Pool of the contacts read from a backup file : each distinct phone number is
+ * represented by a single {@link Contact} instance, shared by all its messages.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class ContactPool {
+
+    /** Contacts, by (normalized) phone number. */
+    protected Map<String, Contact> mContacts;
+
+    /**
+     * Constructor.
+     */
+    public ContactPool() {
+	mContacts = new HashMap<>();
+    }
+
+    /**
+     * Get the shared contact of a phone number. If the contact already exists
+     * without a name, it is given <code>completeName</code>.
+     * 
+     * @param phoneNumber  The normalized phone number.
+     * @param completeName The contact's complete name.
+     * @return The shared contact.
+     */
+    public Contact intern(String phoneNumber, String completeName) {
+	Contact contact = mContacts.get(phoneNumber);
+	if (contact == null) {
+	    contact = new Contact(phoneNumber, completeName);
+	    mContacts.put(phoneNumber, contact);
+	} else if (StringUtils.isBlank(contact.getCompleteName()) && StringUtils.isNotBlank(completeName)) {
+	    contact.setCompleteName(completeName);
+	}
+	return contact;
+    }
+
+    /**
+     * @return The number of distinct contacts.
+     */
+    public int size() {
+	return mContacts.size();
+    }
+
+    /**
+     * @return A copy of the contacts.
+     */
+    public List<Contact> getContacts() {
+	return new ArrayList<>(mContacts.values());
+    }
+}
@@ -15,11 +15,13 @@
  */
 package com.smsbr.desktop.model;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.lang3.StringUtils;
@@ -27,12 +29,30 @@ import org.apache.commons.lang3.StringUtils;
 /**
  * Container for all conversations.
  *
+ * Messages are kept in a {@link IMessageStore} : a list of {@link Sms} objects
+ * by default, or a compact columnar store for very large backups, optionally
+ * keeping the bodies of the messages out of the Java heap (see
+ * {@link #newInstance(int, boolean)}), or spilled to a temporary file for
+ * backups bigger than the heap (see {@link #newDiskInstance(File)}).
+ *
  * @author Alexandre DERMONT
  */
 public class Conversations {
 
-    /** Map of messages by contact. */
-    protected Map<Contact, List<Sms>> mMessages;
+    /**
+     * Number of messages from which the compact columnar store is used (see
+     * {@link #newInstance(int, boolean)}).
+     */
+    public static final int COLUMNAR_STORE_THRESHOLD = 250_000;
+
+    /**
+     * Ratio of the maximum heap size from which a backup file is considered too
+     * large to be loaded in memory (see {@link #isTooLargeForHeap(long)}).
+     */
+    public static final double DISK_STORE_HEAP_RATIO = 0.5;
+
+    /** Messages by contact. */
+    protected IMessageStore mStore;
 
     /** Total number of messages. */
     protected int mMessageCount;
@@ -40,13 +60,136 @@ public class Conversations {
     /** Listeners. */
     protected CopyOnWriteArrayList<IConversationsListener> mListeners;
 
+    /** Actions run when the conversations are disposed. */
+    protected List<Runnable> mDisposeActions;
+    /** Number of background tasks using the conversations (see {@link #retain()}). */
+    protected int mUseCount;
+    /** <code>true</code> if {@link #dispose()} waits for {@link #release()}. */
+    protected boolean isDisposePending;
+
     /**
      * Builds an empty Conversations object.
      */
     public Conversations() {
+	this(new ListMessageStore());
+    }
+
+    /**
+     * Builds a Conversations object.
+     *
+     * @param store Storage of the messages (usually empty).
+     */
+    public Conversations(IMessageStore store) {
 	super();
-	mMessages = new HashMap<>();
+	mStore = store;
+	mMessageCount = store.getContacts().stream().mapToInt(store::size).sum();
 	mListeners = new CopyOnWriteArrayList<>();
+	mDisposeActions = new ArrayList<>();
+    }
+
+    /**
+     * Builds an empty Conversations object, with the message store best suited
+     * to the expected number of messages.
+     *
+     * @param expectedMessageCount Expected number of messages.
+     * @param isOffHeap            <code>true</code> to store the bodies of the
+     *                             messages out of the Java heap, whatever their
+     *                             number.
+     * @return The new Conversations object.
+     */
+    public static Conversations newInstance(int expectedMessageCount, boolean isOffHeap) {
+	if (isOffHeap) {
+	    return new Conversations(new ColumnarMessageStore(new DirectTextArena()));
+	}
+	return new Conversations(expectedMessageCount >= COLUMNAR_STORE_THRESHOLD ? new ColumnarMessageStore()
+		: new ListMessageStore());
+    }
+
+    /**
+     * Builds an empty Conversations object whose messages and images are spilled
+     * to a memory-mapped temporary file : only the indexes of the messages are
+     * kept in the Java heap. It must be disposed (see {@link #dispose()}) to
+     * delete the file.
+     *
+     * @param dir Directory of the temporary file.
+     * @return The new Conversations object.
+     * @throws IOException If the temporary file can't be created.
+     */
+    public static Conversations newDiskInstance(File dir) throws IOException {
+	MappedTextArena arena = new MappedTextArena(dir);
+	return new Conversations(new ColumnarMessageStore(arena, arena));
+    }
+
+    /**
+     * @param sizeInBytes Size of a backup file.
+     * @return <code>true</code> if the backup file is too large to be loaded in
+     *         the Java heap (see {@link #DISK_STORE_HEAP_RATIO}).
+     */
+    public static boolean isTooLargeForHeap(long sizeInBytes) {
+	return sizeInBytes > Runtime.getRuntime().maxMemory() * DISK_STORE_HEAP_RATIO;
+    }
+
+    /**
+     * Called once all the messages have been added, before the conversations
+     * are used (see {@link IMessageStore#seal()}).
+     */
+    public void seal() {
+	mStore.seal();
+    }
+
+    /**
+     * Tell that a background task uses the conversations : they are not
+     * disposed before the task calls {@link #release()}, even if
+     * {@link #dispose()} is called in the meantime.
+     */
+    public synchronized void retain() {
+	mUseCount++;
+    }
+
+    /**
+     * Tell that a background task doesn't use the conversations anymore (see
+     * {@link #retain()}). If they have been disposed in the meantime, they are
+     * disposed now, by the last task.
+     */
+    public synchronized void release() {
+	mUseCount--;
+	if (mUseCount == 0 && isDisposePending) {
+	    isDisposePending = false;
+	    disposeNow();
+	}
+    }
+
+    /**
+     * Release the resources of the conversations (memory, temporary files...).
+     * They must not be used anymore. If background tasks still use them (see
+     * {@link #retain()}), they are released when the last task ends.
+     */
+    public synchronized void dispose() {
+	if (mUseCount > 0) {
+	    isDisposePending = true;
+	} else {
+	    disposeNow();
+	}
+    }
+
+    /**
+     * Release the resources of the conversations now.
+     */
+    protected void disposeNow() {
+	mStore.dispose();
+	mDisposeActions.forEach(Runnable::run);
+	mDisposeActions.clear();
+	mMessageCount = 0;
+    }
+
+    /**
+     * Register an action run by {@link #dispose()}, e.g. to delete temporary
+     * files holding data of the messages.
+     * 
+     * @param action The action.
+     */
+    public void addDisposeAction(Runnable action) {
+	mDisposeActions.add(action);
     }
 
     /**
@@ -83,16 +226,9 @@ public class Conversations {
      * @param message The message to add.
      */
     public void add(Sms message) {
-	List<Sms> list = mMessages.get(message.getContact());
-	if (list == null) {
-	    list = new ArrayList<>();
-	    mMessages.put(message.getContact(), list);
-	}
-	list.add(message);
+	mStore.add(message);
 	mMessageCount++;
 
-	Collections.sort(list, (Sms o1, Sms o2) -> (int) Math.signum((double) o1.getDate() - o2.getDate()));
-
 	fireSmsAdded(message);
     }
 
@@ -103,7 +239,7 @@ public class Conversations {
      */
     public void removeAllConversations(List<Contact> contacts) {
 	contacts.forEach(c -> {
-	    mMessages.remove(c);
+	    mStore.remove(c);
 	    fireContactRemoved(c);
 	});
     }
@@ -115,13 +251,9 @@ public class Conversations {
      * @return All contacts ordered by date.
      */
     public List<Contact> getContactNamesSortedByDate(Order order) {
-	List<Contact> contacts = new ArrayList<>(mMessages.keySet());
-	Collections.sort(contacts, (Contact o1, Contact o2) -> {
-	    List<Sms> sms1 = mMessages.get(o1);
-	    List<Sms> sms2 = mMessages.get(o2);
-	    return (int) Math.signum((double) sms1.get(sms1.size() - 1).getDate() - sms2.get(sms2.size() - 1).getDate())
-		    * (order == Order.ASC ? -1 : 1);
-	});
+	List<Contact> contacts = new ArrayList<>(mStore.getContacts());
+	Collections.sort(contacts, (Contact o1, Contact o2) -> (int) Math
+		.signum((double) getLastMessageDate(o1) - getLastMessageDate(o2)) * (order == Order.ASC ? -1 : 1));
 	return contacts;
     }
 
@@ -133,7 +265,7 @@ public class Conversations {
      * @return All contacts ordered by contact name.
      */
     public List<Contact> getContactNamesSortedByLexicographicOrder(Order order) {
-	List<Contact> contacts = new ArrayList<>(mMessages.keySet());
+	List<Contact> contacts = new ArrayList<>(mStore.getContacts());
 	Collections.sort(contacts,
 		(Contact o1, Contact o2) -> order == Order.ASC
 			? StringUtils.compareIgnoreCase(o1.toString(), o2.toString())
@@ -149,19 +281,83 @@ public class Conversations {
      * @return Messages of the conversation as an ordered list.
      */
     public List<Sms> getConversation(Contact contact, Order order) {
-	List<Sms> messages = new ArrayList<>();
-	messages.addAll(mMessages.get(contact));
-	Collections.sort(messages, (Sms o1, Sms o2) -> (int) Math.signum((double) o1.getDate() - o2.getDate())
-		* (order == Order.ASC ? 1 : -1));
+	List<Sms> messages = new ArrayList<>(mStore.getMessages(contact, 0, mStore.size(contact)));
+	if (order != Order.ASC) {
+	    Collections.reverse(messages);
+	}
 	return messages;
     }
 
+    /**
+     * Get a single conversation page by page, without copying nor sorting the
+     * whole conversation. Pages are views of the conversation (in ASC order) or
+     * small copies (in DESC order) ; the conversation must not be modified while
+     * it is iterated.
+     *
+     * @param contact  The source or destination of the conversation.
+     * @param order    Sort order.
+     * @param pageSize Maximum number of messages in a page.
+     * @return The pages of the conversation, as ordered lists.
+     */
+    public Iterable<List<Sms>> getConversationPages(Contact contact, Order order, int pageSize) {
+	int size = mStore.size(contact);
+	return () -> new Iterator<List<Sms>>() {
+	    private int mDone = 0;
+
+	    @Override
+	    public boolean hasNext() {
+		return mDone < size;
+	    }
+
+	    @Override
+	    public List<Sms> next() {
+		if (!hasNext()) {
+		    throw new NoSuchElementException();
+		}
+		int count = Math.min(pageSize, size - mDone);
+		List<Sms> page;
+		if (order == Order.ASC) {
+		    page = mStore.getMessages(contact, mDone, mDone + count);
+		} else {
+		    page = new ArrayList<>(mStore.getMessages(contact, size - mDone - count, size - mDone));
+		    Collections.reverse(page);
+		}
+		mDone += count;
+		return page;
+	    }
+	};
+    }
+
+    /**
+     * Get the date of the oldest message of a conversation, without copying it.
+     *
+     * @param contact The source or destination of the conversation.
+     * @return The date of the oldest message.
+     */
+    public long getFirstMessageDate(Contact contact) {
+	return mStore.getDate(contact, 0);
+    }
+
+    /**
+     * Get the date of the most recent message of a conversation, without copying
+     * it.
+     *
+     * @param contact The source or destination of the conversation.
+     * @return The date of the most recent message.
+     */
+    public long getLastMessageDate(Contact contact) {
+	return mStore.getDate(contact, mStore.size(contact) - 1);
+    }
+
     /**
      * @return All messages with one or more images.
      */
     public List<Sms> getAllMessagesWithImages() {
-	return mMessages.values().parallelStream()
-		.flatMap(k -> k.parallelStream().filter(sms -> !sms.getImages().isEmpty())).toList();
+	List<Sms> messages = new ArrayList<>();
+	for (Contact contact : mStore.getContacts()) {
+	    messages.addAll(mStore.getMessagesWithImages(contact));
+	}
+	return messages;
     }
 
     /**
@@ -169,9 +365,7 @@ public class Conversations {
      * @return All messages from or to this contact with one or more images.
      */
     public List<Sms> getAllMessagesWithImages(Contact contact) {
-	return mMessages.values().parallelStream().flatMap(
-		k -> k.parallelStream().filter(sms -> contact.equals(sms.getContact()) && !sms.getImages().isEmpty()))
-		.toList();
+	return mStore.getMessagesWithImages(contact);
     }
 
     /**
@@ -191,9 +385,9 @@ public class Conversations {
 	StringBuilder sb = new StringBuilder();
 	final String LS = System.lineSeparator();
 
-	for (Map.Entry<Contact, List<Sms>> entry : mMessages.entrySet()) {
-	    sb.append(entry.getKey()).append(" :").append(LS).append("-------------------").append(LS);
-	    for (Sms sms : entry.getValue()) {
+	for (Contact contact : mStore.getContacts()) {
+	    sb.append(contact).append(" :").append(LS).append("-------------------").append(LS);
+	    for (Sms sms : mStore.getMessages(contact, 0, mStore.size(contact))) {
 		sb.append(sms).append(LS);
 	    }
 	}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only storage of texts, encoded in UTF-8 into direct (off-heap) byte
+ * buffers. The texts don't take any space in the Java heap : the garbage
+ * collector only sees the few buffer objects, whatever the number of texts.
+ * 
+ * Memory is released when the arena is no longer referenced (and its buffers
+ * are collected). Its maximum size is limited by the
+ * <code>-XX:MaxDirectMemorySize</code> option of the JVM.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class DirectTextArena implements ITextArena {
+
+    /** Default size of a chunk : 4 MB. */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /** The chunks. Texts never overlap two chunks. */
+    protected List<ByteBuffer> mChunks;
+    /** Size of the chunks. */
+    protected int mChunkSize;
+
+    /**
+     * Constructor.
+     */
+    public DirectTextArena() {
+	this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param chunkSize Size of the chunks (bigger texts get their own chunk).
+     */
+    public DirectTextArena(int chunkSize) {
+	mChunks = new ArrayList<>();
+	mChunkSize = chunkSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long append(byte[] text) {
+	if (mChunks.isEmpty() || mChunks.get(mChunks.size() - 1).remaining() < text.length) {
+	    mChunks.add(ByteBuffer.allocateDirect(Math.max(mChunkSize, text.length)));
+	}
+	int chunkIndex = mChunks.size() - 1;
+	ByteBuffer chunk = mChunks.get(chunkIndex);
+	long address = ((long) chunkIndex << 32) | chunk.position();
+	chunk.put(text);
+	return address;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(long address, int length) {
+	byte[] bytes = new byte[length];
+	mChunks.get((int) (address >>> 32)).get((int) address, bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCapacity() {
+	return mChunks.stream().mapToLong(ByteBuffer::capacity).sum();
+    }
+}
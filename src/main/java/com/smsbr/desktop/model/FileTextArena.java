@@ -0,0 +1,180 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only storage of texts in a temporary file, written and read with
+ * plain positional I/O. Unlike the other arenas, a text can be written in
+ * several chunks (see {@link #write(byte[], int, int)}) : it never has to be
+ * entirely in memory, whatever its size. The address of a text is its position
+ * in the file.
+ * 
+ * The file is deleted by {@link #dispose()}, or when the JVM exits.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class FileTextArena implements ITextArena {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(FileTextArena.class.getName());
+
+    /** The file. */
+    protected Path mFile;
+    /** Channel of the file. */
+    protected FileChannel mChannel;
+    /** Size of the file. */
+    protected long mSize;
+
+    /**
+     * Constructor. Creates the temporary file.
+     * 
+     * @param dir Directory of the temporary file.
+     * @throws IOException If the file can't be created.
+     */
+    public FileTextArena(File dir) throws IOException {
+	Files.createDirectories(dir.toPath());
+	mFile = Files.createTempFile(dir.toPath(), "smsbr-", ".arena");
+	mFile.toFile().deleteOnExit();
+	mChannel = FileChannel.open(mFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long append(byte[] text) {
+	long address = mSize;
+	try {
+	    write(text, 0, text.length);
+	} catch (IOException e) {
+	    throw new UncheckedIOException(e);
+	}
+	return address;
+    }
+
+    /**
+     * Append bytes at the end of the file. A text written in several chunks
+     * starts at the size of the file before its first chunk (see
+     * {@link #getSize()}).
+     * 
+     * @param bytes  The bytes.
+     * @param offset Offset of the first byte to write.
+     * @param length Number of bytes to write.
+     * @throws IOException If the bytes can't be written.
+     */
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+	write(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Append the remaining bytes of a buffer at the end of the file (see
+     * {@link #write(byte[], int, int)}).
+     * 
+     * @param buffer The buffer, whose position is moved to its limit.
+     * @throws IOException If the bytes can't be written.
+     */
+    public synchronized void write(ByteBuffer buffer) throws IOException {
+	checkNotDisposed();
+	while (buffer.hasRemaining()) {
+	    mSize += mChannel.write(buffer, mSize);
+	}
+    }
+
+    /**
+     * Forget the end of the file (e.g. a text that is not needed anymore).
+     * 
+     * @param size The new size of the file.
+     * @throws IOException If the file can't be truncated.
+     */
+    public synchronized void truncate(long size) throws IOException {
+	if (size < mSize) {
+	    mChannel.truncate(size);
+	    mSize = size;
+	}
+    }
+
+    /**
+     * @return The size of the file, i.e. the address of the next text.
+     */
+    public synchronized long getSize() {
+	return mSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String get(long address, int length) {
+	checkNotDisposed();
+	ByteBuffer buffer = ByteBuffer.allocate(length);
+	try {
+	    long position = address;
+	    while (buffer.hasRemaining()) {
+		int read = mChannel.read(buffer, position);
+		if (read < 0) {
+		    throw new EOFException(mFile.toString());
+		}
+		position += read;
+	    }
+	} catch (IOException e) {
+	    throw new UncheckedIOException(e);
+	}
+	return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getCapacity() {
+	return mSize;
+    }
+
+    /**
+     * @throws IllegalStateException If the arena has been disposed.
+     */
+    protected void checkNotDisposed() {
+	if (!mChannel.isOpen()) {
+	    throw new IllegalStateException("The arena has been disposed : " + mFile);
+	}
+    }
+
+    /**
+     * Close and delete the file. The arena must not be used anymore.
+     */
+    @Override
+    public synchronized void dispose() {
+	try {
+	    mChannel.close();
+	    Files.deleteIfExists(mFile);
+	} catch (IOException e) {
+	    logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+	}
+    }
+}
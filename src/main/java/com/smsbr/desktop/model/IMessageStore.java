@@ -0,0 +1,102 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage of the messages of {@link Conversations}, by contact. The messages of
+ * a contact are kept sorted by date (ascending order), and accessed by index.
+ * 
+ * @author Alexandre DERMONT
+ */
+public interface IMessageStore {
+
+    /**
+     * Adds a message, at its place in the conversation of its contact. A message
+     * with the same date as other messages is added after them.
+     * 
+     * @param message The message to add.
+     */
+    void add(Sms message);
+
+    /**
+     * Remove all the messages of a contact.
+     * 
+     * @param contact The contact.
+     */
+    void remove(Contact contact);
+
+    /**
+     * @return The contacts having messages (the set must not be modified).
+     */
+    Set<Contact> getContacts();
+
+    /**
+     * @param contact A contact.
+     * @return The number of messages of the contact (0 if the contact is
+     *         unknown).
+     */
+    int size(Contact contact);
+
+    /**
+     * Get the date of a message, without materializing it.
+     * 
+     * @param contact The contact.
+     * @param index   Index of the message in the conversation, in ascending
+     *                order of dates.
+     * @return The date of the message.
+     */
+    long getDate(Contact contact, int index);
+
+    /**
+     * Get messages of a conversation.
+     * 
+     * @param contact The contact.
+     * @param from    Index of the first message (inclusive).
+     * @param to      Index of the last message (exclusive).
+     * @return The messages, in ascending order of dates. The list may be a view
+     *         of the store : the conversation must not be modified while it is
+     *         used.
+     */
+    List<Sms> getMessages(Contact contact, int from, int to);
+
+    /**
+     * @param contact The contact.
+     * @return The messages of the contact with one or more images, in ascending
+     *         order of dates.
+     */
+    List<Sms> getMessagesWithImages(Contact contact);
+
+    /**
+     * Called once all the messages have been added, before the store is read
+     * (possibly by several threads) : the store finishes organizing its content,
+     * e.g. sorts it, so that reads never modify it. Messages must not be added
+     * anymore.
+     */
+    default void seal() {
+	// Nothing to finish by default : messages are kept in order when added
+    }
+
+    /**
+     * Release the resources of this store (memory, files...). The store must not
+     * be used anymore.
+     */
+    default void dispose() {
+	// Nothing to release by default : the memory is garbage collected
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+/**
+ * Append-only storage of texts encoded in UTF-8 (see {@link TextArena} and
+ * {@link DirectTextArena}).
+ * 
+ * A text is identified by the address returned by {@link #append(byte[])} and
+ * by its length in bytes.
+ * 
+ * @author Alexandre DERMONT
+ */
+public interface ITextArena {
+
+    /**
+     * Store a text.
+     * 
+     * @param text The text, encoded in UTF-8.
+     * @return The address of the text.
+     */
+    long append(byte[] text);
+
+    /**
+     * Read a text.
+     * 
+     * @param address The address of the text.
+     * @param length  Its length in bytes.
+     * @return The text.
+     */
+    String get(long address, int length);
+
+    /**
+     * @return The size of the allocated memory, in bytes.
+     */
+    long getCapacity();
+
+    /**
+     * Release the resources of this arena (memory, files...). The arena must not
+     * be used anymore.
+     */
+    default void dispose() {
+	// Nothing to release by default : the memory is garbage collected
+    }
+}
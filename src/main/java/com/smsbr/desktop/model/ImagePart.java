@@ -15,6 +15,8 @@
  */
 package com.smsbr.desktop.model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Represents an image attachment to a SMS/MMS.
  * 
@@ -22,9 +24,15 @@ package com.smsbr.desktop.model;
  */
 public class ImagePart {
 
+    /** Next identifier of an image part. */
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    /** Identifier of this part (see {@link #getUniqueId()}). */
+    protected final long mId = NEXT_ID.incrementAndGet();
     protected String mMimeType;
     protected String mFilename;
-    protected String mBase64;
+    /** Content of the image, possibly shared with other parts. */
+    protected ImagePayload mPayload;
     protected int mWidth;
     protected int mHeight;
 
@@ -38,10 +46,24 @@ public class ImagePart {
      * @param height
      */
     public ImagePart(String mime, String filename, String base64, int width, int height) {
+	this(mime, filename, new ImagePayload(base64), width, height);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param mime
+     * @param filename
+     * @param payload  Content of the image, possibly shared with other parts (see
+     *                 {@link ImagePayloadStore}).
+     * @param width
+     * @param height
+     */
+    public ImagePart(String mime, String filename, ImagePayload payload, int width, int height) {
 	super();
 	this.mMimeType = mime;
 	this.mFilename = filename;
-	this.mBase64 = base64;
+	this.mPayload = payload;
 	this.mWidth = width;
 	this.mHeight = height;
     }
@@ -50,7 +72,24 @@ public class ImagePart {
      * @return a unique identifier (scope = runtime only) for this image.
      */
     public String getUniqueId() {
-	return String.valueOf(System.identityHashCode(this));
+	return String.valueOf(mId);
+    }
+
+    /**
+     * Get a hash of the image content. Unlike {@link #getUniqueId()}, two images
+     * with the same bytes have the same hash, even across sessions.
+     * 
+     * @return the SHA-256 hash of the base64 content, as an hexadecimal string.
+     */
+    public String getContentHash() {
+	return mPayload.getContentHash();
+    }
+
+    /**
+     * @return the content of the image.
+     */
+    public ImagePayload getPayload() {
+	return mPayload;
     }
 
     /**
@@ -85,14 +124,14 @@ public class ImagePart {
      * @return the base64
      */
     public String getBase64() {
-	return mBase64;
+	return mPayload.getBase64();
     }
 
     /**
      * @param base64 the base64 to set
      */
     public void setBase64(String base64) {
-	this.mBase64 = base64;
+	this.mPayload = new ImagePayload(base64);
     }
 
     /**
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The content of an image (base64 encoded), which can be shared by several
+ * {@link ImagePart} instances when the same image is attached to several
+ * messages (see {@link ImagePayloadStore}).
+ * 
+ * @author Alexandre DERMONT
+ */
+public class ImagePayload {
+
+    /** Base64 content of the image. */
+    protected String mBase64;
+    /** Hash of the content, computed on demand. */
+    protected String mContentHash;
+    /** Storage of the content once spilled, <code>null</code> before. */
+    protected ITextArena mArena;
+    /** Address of the spilled content in its arena. */
+    protected long mAddress;
+    /** Length of the spilled content, in bytes. */
+    protected int mLength;
+
+    /**
+     * Constructor. The hash of the content will be computed on demand.
+     * 
+     * @param base64 Base64 content of the image.
+     */
+    public ImagePayload(String base64) {
+	this(base64, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param base64      Base64 content of the image.
+     * @param contentHash Hash of the content (see {@link #computeHash(String)}).
+     */
+    public ImagePayload(String base64, String contentHash) {
+	mBase64 = base64;
+	mContentHash = contentHash;
+    }
+
+    /**
+     * Constructor of a payload already stored in an arena (e.g. spilled to a
+     * file while parsing, see {@link FileTextArena}).
+     * 
+     * @param arena       The arena.
+     * @param address     Address of the base64 content in the arena.
+     * @param length      Length of the content, in bytes.
+     * @param contentHash Hash of the content (see {@link #computeHash(String)}).
+     */
+    public ImagePayload(ITextArena arena, long address, int length, String contentHash) {
+	mArena = arena;
+	mAddress = address;
+	mLength = length;
+	mContentHash = contentHash;
+    }
+
+    /**
+     * @return the base64 content (read from the arena if it has been spilled).
+     */
+    public synchronized String getBase64() {
+	if (mBase64 == null && mArena != null) {
+	    return mArena.get(mAddress, mLength);
+	}
+	return mBase64;
+    }
+
+    /**
+     * Move the content into an arena, so that it doesn't take space in the Java
+     * heap anymore. The hash of the content is computed beforehand. Spilling an
+     * already spilled payload does nothing.
+     * 
+     * @param arena The arena.
+     */
+    public synchronized void spill(ITextArena arena) {
+	if (mArena != null || mBase64 == null) {
+	    return;
+	}
+	getContentHash();
+	// Base64 is plain ASCII
+	byte[] bytes = mBase64.getBytes(StandardCharsets.ISO_8859_1);
+	mAddress = arena.append(bytes);
+	mLength = bytes.length;
+	mArena = arena;
+	mBase64 = null;
+    }
+
+    /**
+     * @return <code>true</code> if the content has been moved into an arena.
+     */
+    public synchronized boolean isSpilled() {
+	return mArena != null;
+    }
+
+    /**
+     * Get a hash of the image content : two images with the same bytes have the
+     * same hash, even across sessions.
+     * 
+     * @return the SHA-256 hash of the base64 content, as an hexadecimal string.
+     */
+    public synchronized String getContentHash() {
+	if (mContentHash == null && mBase64 != null) {
+	    mContentHash = computeHash(mBase64);
+	}
+	return mContentHash;
+    }
+
+    /**
+     * Compute the hash of a base64 content.
+     * 
+     * @param base64 The base64 content.
+     * @return the SHA-256 hash of the base64 content, as an hexadecimal string.
+     */
+    public static String computeHash(String base64) {
+	try {
+	    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+	    return HexFormat.of().formatHex(digest.digest(base64.getBytes(StandardCharsets.ISO_8859_1)));
+	} catch (NoSuchAlgorithmException e) {
+	    // SHA-256 is supported by every Java platform
+	    throw new IllegalStateException(e);
+	}
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Content-addressed store of image payloads : identical images (e.g. a photo
+ * forwarded to several contacts) share a single {@link ImagePayload}, so that
+ * their base64 content is kept only once in memory.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class ImagePayloadStore {
+
+    /** Payloads, by content hash. */
+    protected Map<String, ImagePayload> mPayloads;
+    /** Number of payloads that were already in the store. */
+    protected AtomicInteger mDuplicateCount;
+
+    /**
+     * Constructor.
+     */
+    public ImagePayloadStore() {
+	mPayloads = new ConcurrentHashMap<>();
+	mDuplicateCount = new AtomicInteger();
+    }
+
+    /**
+     * Get the shared payload of an image content.
+     * 
+     * @param base64 The base64 content of the image.
+     * @return The payload already in the store for the same content, or a new
+     *         payload.
+     */
+    public ImagePayload intern(String base64) {
+	return intern(new ImagePayload(base64, ImagePayload.computeHash(base64)));
+    }
+
+    /**
+     * Get the shared payload of an image whose content has already been hashed
+     * (e.g. spilled to a file while parsing).
+     * 
+     * @param payload The payload of the image.
+     * @return The payload already in the store for the same content, or the
+     *         given payload.
+     */
+    public ImagePayload intern(ImagePayload payload) {
+	ImagePayload existing = mPayloads.putIfAbsent(payload.getContentHash(), payload);
+	if (existing != null) {
+	    mDuplicateCount.incrementAndGet();
+	    return existing;
+	}
+	return payload;
+    }
+
+    /**
+     * @return The number of distinct payloads.
+     */
+    public int size() {
+	return mPayloads.size();
+    }
+
+    /**
+     * @return The number of images whose payload was already in the store.
+     */
+    public int getDuplicateCount() {
+	return mDuplicateCount.get();
+    }
+}
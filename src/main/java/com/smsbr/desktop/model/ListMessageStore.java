@@ -0,0 +1,112 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Default message store : the messages of each contact are kept as
+ * {@link Sms} objects in a sorted list.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class ListMessageStore implements IMessageStore {
+
+    /** Map of messages by contact. */
+    protected Map<Contact, List<Sms>> mMessages;
+
+    /**
+     * Constructor.
+     */
+    public ListMessageStore() {
+	mMessages = new HashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(Sms message) {
+	List<Sms> list = mMessages.computeIfAbsent(message.getContact(), c -> new ArrayList<>());
+	// Insert after the messages with the same date (instead of sorting the whole
+	// list again)
+	int low = 0;
+	int high = list.size();
+	while (low < high) {
+	    int middle = (low + high) >>> 1;
+	    if (list.get(middle).getDate() <= message.getDate()) {
+		low = middle + 1;
+	    } else {
+		high = middle;
+	    }
+	}
+	list.add(low, message);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(Contact contact) {
+	mMessages.remove(contact);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts() {
+	return mMessages.keySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size(Contact contact) {
+	List<Sms> list = mMessages.get(contact);
+	return list != null ? list.size() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDate(Contact contact, int index) {
+	return mMessages.get(contact).get(index).getDate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Sms> getMessages(Contact contact, int from, int to) {
+	return mMessages.getOrDefault(contact, List.of()).subList(from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Sms> getMessagesWithImages(Contact contact) {
+	List<Sms> list = mMessages.getOrDefault(contact, List.of());
+	return list.stream().filter(sms -> !sms.getImages().isEmpty()).toList();
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only storage of texts in a temporary file, for data bigger than the
+ * Java heap. The file is written and read through memory-mapped segments :
+ * only the segment being written and the most recently read segments are
+ * mapped (LRU), and the operating system decides which pages actually stay in
+ * memory.
+ * 
+ * The file is deleted by {@link #dispose()}, or when the JVM exits.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class MappedTextArena implements ITextArena {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(MappedTextArena.class.getName());
+
+    /** Default size of a segment : 64 MB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /** Default number of segments mapped for reading. */
+    public static final int DEFAULT_MAPPED_SEGMENTS = 8;
+
+    /** The file. */
+    protected Path mFile;
+    /** Channel of the file. */
+    protected FileChannel mChannel;
+    /** Size of the segments. */
+    protected int mSegmentSize;
+    /** Positions of the segments in the file. */
+    protected List<Long> mSegmentOffsets;
+    /** Sizes of the segments (bigger texts get their own segment). */
+    protected List<Integer> mSegmentSizes;
+    /** The segment being written (the last one). */
+    protected MappedByteBuffer mCurrentSegment;
+    /** Segments mapped for reading, by index, least recently used first. */
+    protected Map<Integer, MappedByteBuffer> mMappedSegments;
+    /** Size of the file. */
+    protected long mFileSize;
+
+    /**
+     * Constructor. Creates the temporary file.
+     * 
+     * @param dir Directory of the temporary file.
+     * @throws IOException If the file can't be created.
+     */
+    public MappedTextArena(File dir) throws IOException {
+	this(dir, DEFAULT_SEGMENT_SIZE, DEFAULT_MAPPED_SEGMENTS);
+    }
+
+    /**
+     * Constructor. Creates the temporary file.
+     * 
+     * @param dir            Directory of the temporary file.
+     * @param segmentSize    Size of the segments.
+     * @param mappedSegments Maximum number of segments mapped for reading.
+     * @throws IOException If the file can't be created.
+     */
+    public MappedTextArena(File dir, int segmentSize, int mappedSegments) throws IOException {
+	Files.createDirectories(dir.toPath());
+	mFile = Files.createTempFile(dir.toPath(), "smsbr-", ".arena");
+	mFile.toFile().deleteOnExit();
+	mChannel = FileChannel.open(mFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	mSegmentSize = segmentSize;
+	mSegmentOffsets = new ArrayList<>();
+	mSegmentSizes = new ArrayList<>();
+	mMappedSegments = new LinkedHashMap<>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<Integer, MappedByteBuffer> eldest) {
+		// The buffer is unmapped when it is garbage collected
+		return size() > mappedSegments;
+	    }
+	};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long append(byte[] text) {
+	checkNotDisposed();
+	if (mCurrentSegment == null || mCurrentSegment.remaining() < text.length) {
+	    int size = Math.max(mSegmentSize, text.length);
+	    try {
+		mCurrentSegment = mChannel.map(MapMode.READ_WRITE, mFileSize, size);
+	    } catch (IOException e) {
+		throw new UncheckedIOException(e);
+	    }
+	    mSegmentOffsets.add(mFileSize);
+	    mSegmentSizes.add(size);
+	    mFileSize += size;
+	}
+	long address = ((long) (mSegmentOffsets.size() - 1) << 32) | mCurrentSegment.position();
+	mCurrentSegment.put(text);
+	return address;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String get(long address, int length) {
+	checkNotDisposed();
+	byte[] bytes = new byte[length];
+	getSegment((int) (address >>> 32)).get((int) address, bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get a mapped segment.
+     * 
+     * @param index Index of the segment.
+     * @return The segment.
+     */
+    protected MappedByteBuffer getSegment(int index) {
+	if (index == mSegmentOffsets.size() - 1) {
+	    return mCurrentSegment;
+	}
+	return mMappedSegments.computeIfAbsent(index, i -> {
+	    try {
+		return mChannel.map(MapMode.READ_ONLY, mSegmentOffsets.get(i), mSegmentSizes.get(i));
+	    } catch (IOException e) {
+		throw new UncheckedIOException(e);
+	    }
+	});
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getCapacity() {
+	return mFileSize;
+    }
+
+    /**
+     * @throws IllegalStateException If the arena has been disposed.
+     */
+    protected void checkNotDisposed() {
+	if (!mChannel.isOpen()) {
+	    throw new IllegalStateException("The arena has been disposed : " + mFile);
+	}
+    }
+
+    /**
+     * Close and delete the file. The arena must not be used anymore.
+     */
+    @Override
+    public synchronized void dispose() {
+	mCurrentSegment = null;
+	mMappedSegments.clear();
+	try {
+	    mChannel.close();
+	    // May fail on Windows while segments are still mapped : the file will
+	    // then be deleted when the JVM exits
+	    Files.deleteIfExists(mFile);
+	} catch (IOException e) {
+	    logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+	}
+    }
+}
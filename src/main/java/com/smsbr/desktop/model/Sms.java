@@ -16,6 +16,7 @@
 package com.smsbr.desktop.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -36,9 +37,9 @@ public class Sms {
     protected String mBody;
     /** The contact(s) the message is incoming from/outgoing to. */
     protected Contact mContact;
-    /** List of attachments. */
+    /** List of attachments (allocated when the first one is added). */
     protected List<ImagePart> mImages;
-    /** Recipients. */
+    /** Recipients (allocated when the first one is added). */
     protected List<String> mRecipients;
 
     /**
@@ -57,8 +58,8 @@ public class Sms {
 	this.mIsDraft = isDraft;
 	this.mBody = body;
 	this.mContact = contact;
-	this.mImages = new ArrayList<>();
-	this.mRecipients = new ArrayList<>();
+	this.mImages = Collections.emptyList();
+	this.mRecipients = Collections.emptyList();
     }
 
     /**
@@ -68,6 +69,9 @@ public class Sms {
      */
     public void add(ImagePart image) {
 	if (image != null) {
+	    if (!(mImages instanceof ArrayList)) {
+		mImages = new ArrayList<>(mImages);
+	    }
 	    mImages.add(image);
 	}
     }
@@ -164,7 +168,19 @@ public class Sms {
      */
     public void addRecipient(String phoneNumber, int type) {
 	if (type != 137) {
+	    if (!(mRecipients instanceof ArrayList)) {
+		mRecipients = new ArrayList<>(mRecipients);
+	    }
 	    mRecipients.add(phoneNumber);
 	}
     }
+
+    /**
+     * Get the recipients of this message.
+     * 
+     * @return the phone numbers of the recipients.
+     */
+    public List<String> getRecipients() {
+	return mRecipients;
+    }
 }
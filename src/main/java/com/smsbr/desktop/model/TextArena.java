@@ -0,0 +1,94 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only storage of texts, encoded in UTF-8 into large byte chunks. Storing
+ * millions of short texts this way avoids the overhead of one {@link String}
+ * (and one array) per text.
+ * 
+ * A text is identified by the address returned by {@link #append(byte[])} and
+ * by its length in bytes.
+ * 
+ * @author Alexandre DERMONT
+ */
+public class TextArena implements ITextArena {
+
+    /** Default size of a chunk : 1 MB. */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /** The chunks. Texts never overlap two chunks. */
+    protected List<byte[]> mChunks;
+    /** Used bytes of the last chunk. */
+    protected int mPosition;
+    /** Size of the chunks. */
+    protected int mChunkSize;
+
+    /**
+     * Constructor.
+     */
+    public TextArena() {
+	this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param chunkSize Size of the chunks (bigger texts get their own chunk).
+     */
+    public TextArena(int chunkSize) {
+	mChunks = new ArrayList<>();
+	mChunkSize = chunkSize;
+	mPosition = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long append(byte[] text) {
+	if (mChunks.isEmpty() || mPosition + text.length > mChunks.get(mChunks.size() - 1).length) {
+	    mChunks.add(new byte[Math.max(mChunkSize, text.length)]);
+	    mPosition = 0;
+	}
+	int chunkIndex = mChunks.size() - 1;
+	System.arraycopy(text, 0, mChunks.get(chunkIndex), mPosition, text.length);
+	long address = ((long) chunkIndex << 32) | mPosition;
+	mPosition += text.length;
+	return address;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(long address, int length) {
+	byte[] chunk = mChunks.get((int) (address >>> 32));
+	return new String(chunk, (int) address, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCapacity() {
+	return mChunks.stream().mapToLong(chunk -> chunk.length).sum();
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.smsbr.desktop.model.Contact;
+import com.smsbr.desktop.model.Conversations;
+import com.smsbr.desktop.model.Order;
+import com.smsbr.desktop.model.Sms;
+import com.smsbr.desktop.util.ExportAssetResolver;
+import com.smsbr.desktop.util.ExportManifest;
+import com.smsbr.desktop.util.Htmlizer;
+import com.smsbr.desktop.util.IAssetResolver;
+
+import javafx.concurrent.Task;
+
+/**
+ * This task exports conversations as HTML files in background. Conversations
+ * are exported in parallel by a pool of worker threads (one per processor).
+ *
+ * Errors don't stop the export : they are collected by file (see
+ * {@link #getErrors()}). Cancelling the task stops all the workers.
+ *
+ * A manifest of the exported conversations is kept in the destination
+ * directory (see {@link ExportManifest}) : conversations that have not changed
+ * since the previous export are not exported again.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ConversationsExportTask extends Task<List<File>> {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(ConversationsExportTask.class.getName());
+
+    /** Number of messages read at once when a conversation is exported. */
+    public static final int EXPORT_PAGE_SIZE = 100;
+
+    /** The exported conversations. */
+    protected Conversations mModel;
+    /** Converts conversations into HTML. */
+    protected Htmlizer mHtmlizer;
+    /** Number of the color palette. */
+    protected int mNumPalette;
+    /** Order of the messages. */
+    protected Order mOrder;
+    /** Contacts whose conversations are exported. */
+    protected List<Contact> mContacts;
+    /** Destination directory. */
+    protected File mToDir;
+    /** Tells whether existing files are overwritten. */
+    protected boolean mIsOverwrite;
+    /** Resolves images and emojis (in-lined if <code>null</code>). */
+    protected IAssetResolver mAssets;
+    /** Errors, by file. */
+    protected Map<File, Exception> mErrors;
+    /** Hashes of the previously exported conversations. */
+    protected ExportManifest mManifest;
+    /** Rendering options, included in the hashes of the conversations. */
+    protected String mRenderKey;
+    /** Number of conversations that were already up to date. */
+    protected AtomicInteger mUpToDateCount;
+
+    /**
+     * Constructor.
+     *
+     * @param model       The exported conversations.
+     * @param htmlizer    Converts conversations into HTML.
+     * @param numPalette  Number of the color palette.
+     * @param order       Order of the messages.
+     * @param contacts    Contacts whose conversations are exported.
+     * @param toDir       Destination directory.
+     * @param isOverwrite <code>true</code> to overwrite existing files.
+     * @param isExportAssets <code>true</code> to write images and emojis in a
+     *                    shared assets directory, <code>false</code> to in-line
+     *                    them in the pages.
+     */
+    public ConversationsExportTask(Conversations model, Htmlizer htmlizer, int numPalette, Order order,
+	    List<Contact> contacts, File toDir, boolean isOverwrite, boolean isExportAssets) {
+	mModel = model;
+	mHtmlizer = htmlizer;
+	mNumPalette = numPalette;
+	mOrder = order;
+	mContacts = new ArrayList<>(contacts);
+	mToDir = toDir;
+	mIsOverwrite = isOverwrite;
+	mAssets = isExportAssets ? new ExportAssetResolver(toDir) : null;
+	mErrors = Collections.synchronizedMap(new LinkedHashMap<>());
+	mUpToDateCount = new AtomicInteger();
+    }
+
+    /**
+     * Get the HTML file of a conversation.
+     *
+     * @param contact The contact of the conversation.
+     * @param toDir   Destination directory.
+     * @return The HTML file.
+     */
+    public static File getExportFile(Contact contact, File toDir) {
+	return new File(toDir, FilenameUtils.normalize(getExportName(contact) + ".html"));
+    }
+
+    /**
+     * Get the HTML files of several conversations, unique in the destination
+     * directory : contacts with the same name (case is ignored) are told apart by
+     * their number.
+     *
+     * @param contacts The contacts of the conversations.
+     * @param toDir    Destination directory.
+     * @return The HTML files, by contact, in the order of the contacts.
+     */
+    public static Map<Contact, File> getExportFiles(List<Contact> contacts, File toDir) {
+	Set<Contact> uniqueContacts = new LinkedHashSet<>(contacts);
+	Map<String, Integer> nameCounts = new HashMap<>();
+	for (Contact contact : uniqueContacts) {
+	    nameCounts.merge(getExportName(contact).toLowerCase(), 1, Integer::sum);
+	}
+
+	Map<Contact, File> files = new LinkedHashMap<>();
+	Set<String> fileNames = new HashSet<>();
+	for (Contact contact : uniqueContacts) {
+	    String name = getExportName(contact);
+	    if (nameCounts.get(name.toLowerCase()) > 1) {
+		name += " (" + contact.getPhoneNumber() + ")";
+	    }
+	    String fileName = name;
+	    for (int i = 2; !fileNames.add(fileName.toLowerCase()); i++) {
+		fileName = name + " (" + i + ")";
+	    }
+	    files.put(contact, new File(toDir, FilenameUtils.normalize(fileName + ".html")));
+	}
+	return files;
+    }
+
+    /**
+     * @param contact A contact.
+     * @return The name of the HTML file of its conversation, without extension.
+     */
+    protected static String getExportName(Contact contact) {
+	String name = contact.getCompleteName();
+	if (Contact.UNKNOWN_CONTACT.equals(name)) {
+	    name = contact.getPhoneNumber();
+	}
+	return name;
+    }
+
+    /**
+     * Task processing. Returns the exported files, in the order of the contacts.
+     */
+    @Override
+    protected List<File> call() throws Exception {
+	// Each conversation has its own file : workers never write the same file
+	Map<Contact, File> files = getExportFiles(mContacts, mToDir);
+	int total = files.size();
+	mManifest = new ExportManifest(mToDir);
+	mRenderKey = mHtmlizer.getRenderKey(mNumPalette, mOrder) + "|assets=" + (mAssets != null);
+	AtomicInteger done = new AtomicInteger();
+	AtomicInteger threadCount = new AtomicInteger();
+	ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+	    Thread thread = new Thread(r, "export-" + threadCount.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	});
+
+	List<File> exportedFiles = new ArrayList<>();
+	try {
+	    List<Future<File>> futures = new ArrayList<>(total);
+	    for (Map.Entry<Contact, File> entry : files.entrySet()) {
+		futures.add(executor.submit(() -> {
+		    try {
+			return exportConversation(entry.getKey(), entry.getValue());
+		    } finally {
+			updateProgress(done.incrementAndGet(), total);
+		    }
+		}));
+	    }
+	    executor.shutdown();
+
+	    for (Future<File> future : futures) {
+		File file = future.get();
+		if (file != null) {
+		    exportedFiles.add(file);
+		}
+	    }
+	} catch (InterruptedException e) {
+	    // The task has been cancelled
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    logger.log(Level.ERROR, "", e.getCause());
+	} finally {
+	    stopWorkers(executor);
+	    try {
+		mManifest.save();
+	    } catch (IOException e) {
+		logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+	    }
+	}
+	return exportedFiles;
+    }
+
+    /**
+     * Stop the workers of a task and wait until they have ended, so that the
+     * conversations are not read anymore once the task has ended (even if it has
+     * been cancelled).
+     *
+     * @param executor The workers.
+     */
+    static void stopWorkers(ExecutorService executor) {
+	executor.shutdownNow();
+	// The thread of a cancelled task is interrupted : wait anyway
+	boolean isInterrupted = Thread.interrupted();
+	while (true) {
+	    try {
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		break;
+	    } catch (InterruptedException e) {
+		isInterrupted = true;
+	    }
+	}
+	if (isInterrupted) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     * Export a single conversation, unless its file is up to date. Errors are
+     * collected, and an incomplete file is deleted.
+     *
+     * @param contact The contact of the conversation.
+     * @param toFile  The HTML file of the conversation.
+     * @return The exported (or already up to date) file, or <code>null</code> if
+     *         the conversation has not been exported.
+     */
+    protected File exportConversation(Contact contact, File toFile) {
+	if (isCancelled()) {
+	    return null;
+	}
+	Iterable<List<Sms>> pages = mModel.getConversationPages(contact, mOrder, EXPORT_PAGE_SIZE);
+	String hash = ExportManifest.computeHash(mRenderKey + "|" + contact, pages);
+	if (mManifest.isUpToDate(toFile, hash)) {
+	    mUpToDateCount.incrementAndGet();
+	    return toFile;
+	}
+	if (toFile.exists() && !mIsOverwrite) {
+	    return null;
+	}
+
+	mManifest.remove(toFile);
+	try (Writer writer = Files.newBufferedWriter(toFile.toPath(), StandardCharsets.UTF_8)) {
+	    if (mAssets != null) {
+		mHtmlizer.writeHtmlConversation(writer, mNumPalette, contact.toString(), pages, mAssets);
+	    } else {
+		mHtmlizer.writeHtmlConversation(writer, mNumPalette, contact.toString(), pages);
+	    }
+	} catch (IOException | RuntimeException e) {
+	    handleExportError(toFile, e);
+	    return null;
+	}
+	mManifest.put(toFile, hash);
+	return toFile;
+    }
+
+    /**
+     * Collect an export error and delete the incomplete file.
+     *
+     * @param toFile The file that could not be exported.
+     * @param e      The error.
+     */
+    protected void handleExportError(File toFile, Exception e) {
+	if (!isCancelled()) {
+	    logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+	    mErrors.put(toFile, e);
+	}
+	try {
+	    Files.deleteIfExists(toFile.toPath());
+	} catch (IOException ex) {
+	    logger.log(Level.WARNING, ex.getLocalizedMessage(), ex);
+	}
+    }
+
+    /**
+     * @return The number of conversations that were not exported again because
+     *         they had not changed since the previous export.
+     */
+    public int getUpToDateCount() {
+	return mUpToDateCount.get();
+    }
+
+    /**
+     * @return The errors that occurred, by file.
+     */
+    public Map<File, Exception> getErrors() {
+	synchronized (mErrors) {
+	    return new LinkedHashMap<>(mErrors);
+	}
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.services;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.smsbr.desktop.model.Contact;
+import com.smsbr.desktop.model.Conversations;
+import com.smsbr.desktop.model.Order;
+import com.smsbr.desktop.util.Htmlizer;
+import com.smsbr.desktop.util.ZipAssetResolver;
+
+import javafx.concurrent.Task;
+
+/**
+ * This task exports conversations in a single ZIP archive, in background. Each
+ * conversation is rendered directly into its entry of the archive (no
+ * temporary file), and images and emojis are stored once in the "assets"
+ * directory of the archive (see {@link ZipAssetResolver}).
+ *
+ * The archive is written sequentially, which is much faster than creating
+ * thousands of small files (especially on network shares). If the export
+ * fails or is cancelled, the incomplete archive is deleted.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ConversationsZipExportTask extends Task<File> {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(ConversationsZipExportTask.class.getName());
+
+    /** Size of the output buffer of the archive. */
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** The exported conversations. */
+    protected Conversations mModel;
+    /** Converts conversations into HTML. */
+    protected Htmlizer mHtmlizer;
+    /** Number of the color palette. */
+    protected int mNumPalette;
+    /** Order of the messages. */
+    protected Order mOrder;
+    /** Contacts whose conversations are exported. */
+    protected List<Contact> mContacts;
+    /** Destination archive. */
+    protected File mZipFile;
+
+    /**
+     * Constructor.
+     *
+     * @param model      The exported conversations.
+     * @param htmlizer   Converts conversations into HTML.
+     * @param numPalette Number of the color palette.
+     * @param order      Order of the messages.
+     * @param contacts   Contacts whose conversations are exported.
+     * @param zipFile    Destination archive (overwritten if it exists).
+     */
+    public ConversationsZipExportTask(Conversations model, Htmlizer htmlizer, int numPalette, Order order,
+	    List<Contact> contacts, File zipFile) {
+	mModel = model;
+	mHtmlizer = htmlizer;
+	mNumPalette = numPalette;
+	mOrder = order;
+	mContacts = new ArrayList<>(contacts);
+	mZipFile = zipFile;
+    }
+
+    /**
+     * Task processing. Returns the archive.
+     */
+    @Override
+    protected File call() throws Exception {
+	int total = mContacts.size();
+	int done = 0;
+	Set<String> entryNames = new HashSet<>();
+	boolean isComplete = false;
+
+	try (ZipOutputStream zip = new ZipOutputStream(
+		new BufferedOutputStream(Files.newOutputStream(mZipFile.toPath()), BUFFER_SIZE),
+		StandardCharsets.UTF_8)) {
+	    ZipAssetResolver assets = new ZipAssetResolver(zip);
+	    for (Contact contact : mContacts) {
+		if (isCancelled()) {
+		    return null;
+		}
+		zip.putNextEntry(new ZipEntry(getEntryName(contact, entryNames)));
+		// Don't close the writer : it would close the archive
+		Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+		mHtmlizer.writeHtmlConversation(writer, mNumPalette, contact.toString(),
+			mModel.getConversationPages(contact, mOrder, ConversationsExportTask.EXPORT_PAGE_SIZE), assets);
+		writer.flush();
+		zip.closeEntry();
+		assets.writePendingAssets();
+		updateProgress(++done, total);
+	    }
+	    isComplete = true;
+	} finally {
+	    if (!isComplete) {
+		try {
+		    Files.deleteIfExists(mZipFile.toPath());
+		} catch (IOException e) {
+		    logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+		}
+	    }
+	}
+	return mZipFile;
+    }
+
+    /**
+     * Get the name of the entry of a conversation, unique in the archive.
+     *
+     * @param contact    The contact of the conversation.
+     * @param entryNames Names of the entries already in the archive.
+     * @return The entry name.
+     */
+    protected String getEntryName(Contact contact, Set<String> entryNames) {
+	String name = ConversationsExportTask.getExportFile(contact, mZipFile.getParentFile()).getName();
+	String entryName = name;
+	for (int i = 2; !entryNames.add(entryName); i++) {
+	    entryName = FilenameUtils.getBaseName(name) + " (" + i + ")." + FilenameUtils.getExtension(name);
+	}
+	return entryName;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.smsbr.desktop.model.ImagePart;
+import com.smsbr.desktop.model.Sms;
+import com.smsbr.desktop.util.ImageUtil;
+
+import javafx.concurrent.Task;
+
+/**
+ * This task extracts the images of messages into a directory, in background.
+ * Images are decoded in parallel by a pool of worker threads (one per
+ * processor), each image being streamed from its base64 content to its file.
+ *
+ * Files are named after the contact and the date of the message. Existing
+ * files are never overwritten : when a name is already used (e.g. several
+ * images in the same message), a number is appended to it. An image whose
+ * content has already been extracted (e.g. a photo forwarded to several
+ * contacts) is skipped, and counted (see {@link #getDuplicateCount()}).
+ *
+ * Errors don't stop the extraction : they are collected by file (see
+ * {@link #getErrors()}). Cancelling the task stops all the workers.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ImagesExtractionTask extends Task<Integer> {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(ImagesExtractionTask.class.getName());
+
+    /** Messages whose images are extracted. */
+    protected List<Sms> mMessages;
+    /** Destination directory. */
+    protected File mToDir;
+    /** Formats the dates in the file names. */
+    protected DateTimeFormatter mDateFormatter;
+    /** Errors, by file. */
+    protected Map<File, Exception> mErrors;
+    /** Content hashes of the images already extracted (or being extracted). */
+    protected Set<String> mExtractedHashes;
+    /** Number of images skipped because their content was already extracted. */
+    protected AtomicInteger mDuplicateCount;
+
+    /**
+     * Constructor.
+     *
+     * @param messages    Messages whose images are extracted.
+     * @param toDir       Destination directory.
+     * @param datePattern Pattern of the dates in the file names.
+     */
+    public ImagesExtractionTask(List<Sms> messages, File toDir, String datePattern) {
+	mMessages = new ArrayList<>(messages);
+	mToDir = toDir;
+	mDateFormatter = DateTimeFormatter.ofPattern(datePattern).withZone(ZoneId.systemDefault());
+	mErrors = Collections.synchronizedMap(new LinkedHashMap<>());
+	mExtractedHashes = ConcurrentHashMap.newKeySet();
+	mDuplicateCount = new AtomicInteger();
+    }
+
+    /**
+     * Task processing. Returns the number of extracted images.
+     */
+    @Override
+    protected Integer call() throws Exception {
+	int total = mMessages.stream().mapToInt(sms -> sms.getImages().size()).sum();
+	AtomicInteger done = new AtomicInteger();
+	AtomicInteger extracted = new AtomicInteger();
+	AtomicInteger threadCount = new AtomicInteger();
+	ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+	    Thread thread = new Thread(r, "extract-" + threadCount.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	});
+
+	try {
+	    List<Future<?>> futures = new ArrayList<>(total);
+	    for (Sms sms : mMessages) {
+		for (ImagePart image : sms.getImages()) {
+		    futures.add(executor.submit(() -> {
+			try {
+			    if (extractImage(sms, image)) {
+				extracted.incrementAndGet();
+			    }
+			} finally {
+			    updateProgress(done.incrementAndGet(), total);
+			}
+		    }));
+		}
+	    }
+	    executor.shutdown();
+
+	    for (Future<?> future : futures) {
+		future.get();
+	    }
+	} catch (InterruptedException e) {
+	    // The task has been cancelled
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    logger.log(Level.ERROR, "", e.getCause());
+	} finally {
+	    ConversationsExportTask.stopWorkers(executor);
+	}
+	logger.log(Level.INFO, "{0} image(s) extracted, {1} duplicate(s) skipped", extracted.get(),
+		mDuplicateCount.get());
+	return extracted.get();
+    }
+
+    /**
+     * Extract a single image. Errors are collected, and an incomplete file is
+     * deleted : its content is no longer considered as extracted, so that a
+     * later copy of the same image is extracted instead.
+     *
+     * @param sms   The message of the image.
+     * @param image The image.
+     * @return <code>true</code> if the image has been extracted,
+     *         <code>false</code> if it could not be extracted or if it is a
+     *         duplicate.
+     */
+    protected boolean extractImage(Sms sms, ImagePart image) {
+	if (isCancelled()) {
+	    return false;
+	}
+	String hash = image.getContentHash();
+	if (!mExtractedHashes.add(hash)) {
+	    mDuplicateCount.incrementAndGet();
+	    return false;
+	}
+	String ext = image.getMimeType().substring(image.getMimeType().indexOf('/') + 1);
+	String baseName = sms.getContact().getCompleteName() + "_"
+		+ mDateFormatter.format(Instant.ofEpochMilli(sms.getDate()));
+
+	Path file = null;
+	try {
+	    for (int i = 1;; i++) {
+		file = new File(mToDir, baseName + (i > 1 ? "_" + i : "") + "." + ext).toPath();
+		try {
+		    logger.log(Level.TRACE, "Exporting ''{0}''", file);
+		    // CREATE_NEW : an existing file (or a file being written by another
+		    // worker) is never overwritten
+		    ImageUtil.streamBase64ToFile(image.getBase64(), file, StandardOpenOption.CREATE_NEW,
+			    StandardOpenOption.WRITE);
+		    return true;
+		} catch (FileAlreadyExistsException e) {
+		    // Not written by this worker : try the next name
+		    file = null;
+		}
+	    }
+	} catch (IOException | RuntimeException e) {
+	    mExtractedHashes.remove(hash);
+	    if (!isCancelled()) {
+		logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+		mErrors.put(new File(mToDir, baseName + "." + ext), e);
+	    }
+	    if (file != null) {
+		try {
+		    Files.deleteIfExists(file);
+		} catch (IOException ex) {
+		    logger.log(Level.WARNING, ex.getLocalizedMessage(), ex);
+		}
+	    }
+	    return false;
+	}
+    }
+
+    /**
+     * @return The number of images skipped because their content had already
+     *         been extracted.
+     */
+    public int getDuplicateCount() {
+	return mDuplicateCount.get();
+    }
+
+    /**
+     * @return The errors that occurred, by file.
+     */
+    public Map<File, Exception> getErrors() {
+	synchronized (mErrors) {
+	    return new LinkedHashMap<>(mErrors);
+	}
+    }
+}
@@ -18,6 +18,8 @@ package com.smsbr.desktop.services;
 import java.io.File;
 import java.util.function.Supplier;
 
+import com.smsbr.desktop.app.Preferences;
+import com.smsbr.desktop.io.SmsBackupFileLoadOptions;
 import com.smsbr.desktop.model.Conversations;
 
 import javafx.concurrent.Service;
@@ -32,13 +34,45 @@ public class SmsBackupFileLoadingService extends Service<Conversations> {
 
     private Supplier<File> mCurrentFile;
 
+    private Preferences mPreferences;
+
+    private SmsBackupFileLoadOptions mLoadOptions = new SmsBackupFileLoadOptions();
+
     /**
      * Constructor.
      *
      * @param supplier File supplier.
      */
     public SmsBackupFileLoadingService(Supplier<File> supplier) {
+	this(supplier, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param supplier    File supplier.
+     * @param preferences The user's preferences, for the loading options (off-heap
+     *                    storage, loading on demand). Can be <code>null</code>.
+     */
+    public SmsBackupFileLoadingService(Supplier<File> supplier, Preferences preferences) {
 	mCurrentFile = supplier;
+	mPreferences = preferences;
+    }
+
+    /**
+     * @return The filters of the loaded messages.
+     */
+    public SmsBackupFileLoadOptions getLoadOptions() {
+	return mLoadOptions;
+    }
+
+    /**
+     * Set the filters of the messages loaded by the next tasks.
+     * 
+     * @param options The filters.
+     */
+    public void setLoadOptions(SmsBackupFileLoadOptions options) {
+	mLoadOptions = options;
     }
 
     /**
@@ -48,6 +82,15 @@ public class SmsBackupFileLoadingService extends Service<Conversations> {
      */
     @Override
     protected Task<Conversations> createTask() {
-	return new SmsBackupFileLoadingTask(mCurrentFile.get().getAbsolutePath());
+	SmsBackupFileLoadingTask task;
+	if (mPreferences == null) {
+	    task = new SmsBackupFileLoadingTask(mCurrentFile.get().getAbsolutePath());
+	} else {
+	    task = new SmsBackupFileLoadingTask(mCurrentFile.get().getAbsolutePath(), mPreferences.isOffHeapStorage(),
+		    mPreferences.isLoadOnDemand());
+	    task.setFastParsing(mPreferences.isFastParser());
+	}
+	task.setLoadOptions(mLoadOptions);
+	return task;
     }
 }
@@ -15,8 +15,17 @@
  */
 package com.smsbr.desktop.services;
 
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+
+import com.smsbr.desktop.app.Preferences;
+import com.smsbr.desktop.io.IndexedMessageStore;
 import com.smsbr.desktop.io.SmsBackupFile;
+import com.smsbr.desktop.io.SmsBackupFileIndex;
+import com.smsbr.desktop.io.SmsBackupFileLoadOptions;
 import com.smsbr.desktop.io.SmsBackupFileMetadata;
+import com.smsbr.desktop.io.SpilledAttributeStore;
 import com.smsbr.desktop.model.Conversations;
 import com.smsbr.desktop.model.Sms;
 
@@ -31,6 +40,9 @@ import javafx.concurrent.Task;
  */
 public class SmsBackupFileLoadingTask extends Task<Conversations> implements SmsBackupFileLoadingTaskHandler {
 
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(SmsBackupFileLoadingTask.class.getName());
+
     /** The source file to be loaded. */
     private StringProperty mSourceFile;
 
@@ -40,13 +52,68 @@ public class SmsBackupFileLoadingTask extends Task<Conversations> implements Sms
     /** Data of the loaded file. */
     private Conversations mConversations;
 
+    /** <code>true</code> to store the bodies of the messages off-heap. */
+    private boolean isOffHeap;
+
+    /** <code>true</code> to parse conversations only when they are displayed. */
+    private boolean isLoadOnDemand;
+
+    /** Filters of the loaded messages. */
+    private SmsBackupFileLoadOptions mLoadOptions;
+
+    /** <code>true</code> to parse the file with the byte-level parser. */
+    private boolean isFastParsing;
+
     /**
      * Constructs a new task.
      * 
      * @param sourceFilePath The file to be loaded.
      */
     public SmsBackupFileLoadingTask(String sourceFilePath) {
+	this(sourceFilePath, false, false);
+    }
+
+    /**
+     * Constructs a new task.
+     * 
+     * @param sourceFilePath The file to be loaded.
+     * @param isOffHeap      <code>true</code> to store the bodies of the
+     *                       messages out of the Java heap (see
+     *                       {@link Conversations#newInstance(int, boolean)}).
+     * @param isLoadOnDemand <code>true</code> to only index the file, and parse
+     *                       conversations when they are displayed (see
+     *                       {@link IndexedMessageStore}).
+     */
+    public SmsBackupFileLoadingTask(String sourceFilePath, boolean isOffHeap, boolean isLoadOnDemand) {
 	mSourceFile = new SimpleStringProperty(sourceFilePath);
+	this.isOffHeap = isOffHeap;
+	this.isLoadOnDemand = isLoadOnDemand;
+	mLoadOptions = new SmsBackupFileLoadOptions();
+    }
+
+    /**
+     * @return The filters of the loaded messages.
+     */
+    public SmsBackupFileLoadOptions getLoadOptions() {
+	return mLoadOptions;
+    }
+
+    /**
+     * Set the filters of the loaded messages.
+     * 
+     * @param options The filters.
+     */
+    public void setLoadOptions(SmsBackupFileLoadOptions options) {
+	mLoadOptions = options;
+    }
+
+    /**
+     * @param fastParsing <code>true</code> to parse the file with the
+     *                    byte-level parser (see
+     *                    {@link SmsBackupFile#setFastParsing(boolean)}).
+     */
+    public void setFastParsing(boolean fastParsing) {
+	isFastParsing = fastParsing;
     }
 
     /**
@@ -84,23 +151,80 @@ public class SmsBackupFileLoadingTask extends Task<Conversations> implements Sms
 	mMetadata = null;
 	mConversations = new Conversations();
 
+	if (isLoadOnDemand) {
+	    // Only index the sourceFile : conversations are parsed when displayed
+	    SmsBackupFile file = new SmsBackupFile(mSourceFile.get());
+	    file.setSpillDirectory(Preferences.getCacheDirectory());
+	    SmsBackupFileIndex index = file.buildIndex(this, this, mLoadOptions);
+	    if (index == null || isCancelled()) {
+		mConversations = null;
+		return null;
+	    }
+	    mConversations = new Conversations(new IndexedMessageStore(file, index));
+	    return mConversations;
+	}
+
 	// Parse the sourceFile
-	new SmsBackupFile(mSourceFile.get()).parse(this, this);
+	SmsBackupFile file = new SmsBackupFile(mSourceFile.get());
+	file.setSpillDirectory(Preferences.getCacheDirectory());
+	file.setFastParsing(isFastParsing);
+	try {
+	    file.parse(this, this, mLoadOptions);
+	} catch (Exception e) {
+	    // Delete the temporary files, if any
+	    mConversations.dispose();
+	    disposeSpilledAttributes(file);
+	    throw e;
+	}
 
 	if (isCancelled()) {
+	    mConversations.dispose();
+	    disposeSpilledAttributes(file);
 	    mMetadata = null;
 	    mConversations = null;
 	    return null;
 	}
+	// Oversized attachments are read from their file as long as the messages
+	// are used
+	SpilledAttributeStore spilled = file.detachSpilledAttributes();
+	if (spilled != null) {
+	    mConversations.addDisposeAction(spilled::dispose);
+	}
+	// Sorted once for all, before being read by several threads
+	mConversations.seal();
 	return mConversations;
     }
 
+    /**
+     * Delete the oversized attachments spilled while parsing a file, if any.
+     * 
+     * @param file The file.
+     */
+    private static void disposeSpilledAttributes(SmsBackupFile file) {
+	SpilledAttributeStore spilled = file.detachSpilledAttributes();
+	if (spilled != null) {
+	    spilled.dispose();
+	}
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void onMetadataLoaded(SmsBackupFileMetadata metadata) {
 	mMetadata = metadata;
+	if (Conversations.isTooLargeForHeap(metadata.getSizeInBytes())) {
+	    // Backups that don't fit in the heap are spilled to disk
+	    try {
+		mConversations = Conversations.newDiskInstance(Preferences.getCacheDirectory());
+		logger.log(Level.INFO, "Backup of {0} bytes : messages are stored on disk", metadata.getSizeInBytes());
+		return;
+	    } catch (IOException e) {
+		logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+	    }
+	}
+	// Very large backups are stored in a compact form
+	mConversations = Conversations.newInstance(metadata.getMessageCount(), isOffHeap);
     }
 
     /**
@@ -113,4 +237,13 @@ public class SmsBackupFileLoadingTask extends Task<Conversations> implements Sms
 	updateMessage(
 		String.format("Loading message %d/%d", mConversations.getMessageCount(), mMetadata.getMessageCount()));
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onBytesScanned(long position, long size) {
+	updateProgress(position, size);
+	updateMessage(String.format("Indexing file %d/%d MB", position >> 20, size >> 20));
+    }
+}
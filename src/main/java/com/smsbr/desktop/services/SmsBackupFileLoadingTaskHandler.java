@@ -38,4 +38,14 @@ public interface SmsBackupFileLoadingTaskHandler {
      * @param message The read message with optional attachments.
      */
     void onMessageLoaded(Sms message);
+
+    /**
+     * Called regularly while the file is scanned to build its index.
+     * 
+     * @param position Number of bytes already scanned.
+     * @param size     Size of the file, in bytes.
+     */
+    default void onBytesScanned(long position, long size) {
+	// Progress is optional
+    }
 }
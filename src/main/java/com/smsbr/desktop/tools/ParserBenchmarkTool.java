@@ -0,0 +1,122 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.tools;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Objects;
+
+import com.smsbr.desktop.io.SmsBackupFile;
+import com.smsbr.desktop.io.SmsBackupFileMetadata;
+import com.smsbr.desktop.io.SpilledAttributeStore;
+import com.smsbr.desktop.model.Sms;
+import com.smsbr.desktop.services.SmsBackupFileLoadingTaskHandler;
+
+/**
+ * This tool parses a backup file several times with the SAX parser and with
+ * the byte-level parser (see
+ * {@link SmsBackupFile#setFastParsing(boolean)}), checks that both read the
+ * same messages and prints their throughput.
+ * 
+ * Usage : <code>ParserBenchmarkTool &lt;backup file&gt; [runs]</code>
+ * 
+ * @author Alexandre DERMONT
+ */
+public class ParserBenchmarkTool {
+
+    /** Default number of runs of each parser (the first ones warm the JVM up). */
+    static final int DEFAULT_RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+	if (args.length == 0) {
+	    System.err.println("Usage : ParserBenchmarkTool <backup file> [runs]");
+	    System.exit(1);
+	}
+	File file = new File(args[0]);
+	int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+	File spillDirectory = Files.createTempDirectory("smsbr-benchmark").toFile();
+	spillDirectory.deleteOnExit();
+
+	long[] best = { Long.MAX_VALUE, Long.MAX_VALUE };
+	Result[] results = new Result[2];
+	for (int run = 0; run < runs; run++) {
+	    // Alternate the parsers, so that both run in the same conditions
+	    for (int mode = 0; mode < 2; mode++) {
+		boolean isFast = mode == 1;
+		long start = System.nanoTime();
+		results[mode] = parse(file, spillDirectory, isFast);
+		long time = (System.nanoTime() - start) / 1_000_000;
+		best[mode] = Math.min(best[mode], time);
+		System.out.println(String.format("Run %d, %s parser : %d ms, %d message(s)", run + 1,
+			isFast ? "fast" : "SAX", time, results[mode].count()));
+	    }
+	}
+
+	double megabytes = file.length() / (1024.0 * 1024.0);
+	System.out.println(String.format("SAX parser  : %d ms (%.1f MB/s)", best[0], megabytes * 1000 / best[0]));
+	System.out.println(String.format("Fast parser : %d ms (%.1f MB/s)", best[1], megabytes * 1000 / best[1]));
+	System.out.println(String.format("Speedup     : x%.2f", (double) best[0] / best[1]));
+	if (!results[0].equals(results[1])) {
+	    System.err.println("The parsers didn't read the same messages : " + results[0] + " / " + results[1]);
+	    System.exit(2);
+	}
+    }
+
+    /**
+     * Parse the content of a file.
+     * 
+     * @param file           The file.
+     * @param spillDirectory Directory of the spilled attachments.
+     * @param isFast         <code>true</code> to use the byte-level parser.
+     * @return The number of messages read, and a checksum of their content.
+     * @throws Exception If the file can't be parsed.
+     */
+    static Result parse(File file, File spillDirectory, boolean isFast) throws Exception {
+	SmsBackupFile backup = new SmsBackupFile(file.getAbsolutePath());
+	backup.setSpillDirectory(spillDirectory);
+	backup.setFastParsing(isFast);
+	long[] result = new long[2];
+	backup.parseContent(null, new SmsBackupFileLoadingTaskHandler() {
+
+	    @Override
+	    public void onMetadataLoaded(SmsBackupFileMetadata metadata) {
+		// Not called
+	    }
+
+	    @Override
+	    public void onMessageLoaded(Sms message) {
+		result[0]++;
+		result[1] = 31 * result[1] + Objects.hash(message.getDate(), message.isMe(), message.isDraft(),
+			message.getBody(), message.getContact().getPhoneNumber(), message.getRecipients(),
+			message.getImages().size());
+	    }
+	});
+	SpilledAttributeStore spilled = backup.detachSpilledAttributes();
+	if (spilled != null) {
+	    spilled.dispose();
+	}
+	return new Result(result[0], result[1]);
+    }
+
+    /**
+     * Messages read by a parser.
+     * 
+     * @param count    Number of messages.
+     * @param checksum Checksum of their content.
+     */
+    record Result(long count, long checksum) {
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.ui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.smsbr.desktop.model.Contact;
+
+import javafx.scene.web.WebView;
+
+/**
+ * Pool of the WebViews used to display conversations.
+ *
+ * WebViews in which a conversation has been completely rendered are retained,
+ * keyed by contact : displaying such a WebView again is instant and keeps its
+ * scroll position. The number of retained WebViews is limited ; the least
+ * recently used one is evicted first.
+ *
+ * Evicted (or released) WebViews are unloaded and kept as spare instances, so
+ * that the next conversation can be rendered into an already initialized
+ * WebView. A few spare instances are created in advance.
+ *
+ * All the methods of this class must be called from the JavaFX thread.
+ *
+ * @author Alexandre DERMONT
+ */
+public class JfxConversationViewPool {
+
+    /** Default number of retained WebViews. */
+    public static final int DEFAULT_CAPACITY = 5;
+    /** Default number of spare WebViews. */
+    public static final int DEFAULT_SPARE_COUNT = 2;
+
+    /** Rendered WebViews, from the least recently used to the most recent. */
+    protected Map<Contact, WebView> mViews;
+    /** Unloaded WebViews, ready to be used. */
+    protected Deque<WebView> mSpareViews;
+    /** Maximum number of retained WebViews. */
+    protected int mCapacity;
+    /** Maximum number of spare WebViews. */
+    protected int mSpareCount;
+    /** Creates new WebViews. */
+    protected Supplier<WebView> mFactory;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity   Maximum number of retained WebViews.
+     * @param spareCount Maximum number of spare WebViews.
+     * @param factory    Creates new WebViews.
+     */
+    public JfxConversationViewPool(int capacity, int spareCount, Supplier<WebView> factory) {
+	mCapacity = capacity;
+	mSpareCount = spareCount;
+	mFactory = factory;
+	mViews = new LinkedHashMap<>(16, 0.75f, true);
+	mSpareViews = new ArrayDeque<>();
+    }
+
+    /**
+     * Create the spare WebViews in advance, so that the first conversations are
+     * rendered into already initialized WebViews.
+     */
+    public void prewarm() {
+	while (mSpareViews.size() < mSpareCount) {
+	    WebView view = mFactory.get();
+	    // Initialize the WebKit engine
+	    view.getEngine().loadContent("");
+	    mSpareViews.push(view);
+	}
+    }
+
+    /**
+     * Get a WebView to render a new conversation into, from the spare instances
+     * if possible.
+     *
+     * @return An empty WebView.
+     */
+    public WebView acquire() {
+	WebView view = mSpareViews.poll();
+	return view != null ? view : mFactory.get();
+    }
+
+    /**
+     * Give back a WebView that is not displayed anymore and that is not in the
+     * cache. Its document is unloaded, and it is kept as a spare instance if
+     * there are not enough of them.
+     *
+     * @param view The WebView.
+     */
+    public void release(WebView view) {
+	if (view.getParent() != null || mViews.containsValue(view) || mSpareViews.contains(view)) {
+	    // Still displayed or used
+	    return;
+	}
+	view.getEngine().load(null);
+	if (mSpareViews.size() < mSpareCount) {
+	    mSpareViews.push(view);
+	}
+    }
+
+    /**
+     * Get the WebView in which the conversation of a contact is rendered, and mark
+     * it as the most recently used one.
+     *
+     * @param contact The contact.
+     * @return The WebView, or <code>null</code> if the conversation is not in the
+     *         cache.
+     */
+    public WebView get(Contact contact) {
+	return contact != null ? mViews.get(contact) : null;
+    }
+
+    /**
+     * Store the WebView in which the conversation of a contact has been rendered.
+     * The least recently used WebViews are evicted if the cache is full.
+     *
+     * @param contact The contact.
+     * @param view    The WebView.
+     */
+    public void put(Contact contact, WebView view) {
+	WebView previous = mViews.put(contact, view);
+	if (previous != null && previous != view) {
+	    release(previous);
+	}
+	Iterator<WebView> it = mViews.values().iterator();
+	while (mViews.size() > mCapacity && it.hasNext()) {
+	    WebView eldest = it.next();
+	    it.remove();
+	    release(eldest);
+	}
+    }
+
+    /**
+     * @param contact A contact.
+     * @return <code>true</code> if the conversation of this contact is in the
+     *         cache.
+     */
+    public boolean contains(Contact contact) {
+	return mViews.containsKey(contact);
+    }
+
+    /**
+     * @param view A WebView.
+     * @return <code>true</code> if this WebView is in the cache.
+     */
+    public boolean containsView(WebView view) {
+	return mViews.containsValue(view);
+    }
+
+    /**
+     * Remove the conversation of a contact from the cache (e.g. after new messages
+     * have been added to it).
+     *
+     * @param contact The contact.
+     */
+    public void remove(Contact contact) {
+	WebView view = mViews.remove(contact);
+	if (view != null) {
+	    release(view);
+	}
+    }
+
+    /**
+     * Remove a WebView from the cache (e.g. after it has navigated away from its
+     * conversation).
+     *
+     * @param view The WebView.
+     */
+    public void removeView(WebView view) {
+	if (mViews.values().remove(view)) {
+	    release(view);
+	}
+    }
+
+    /**
+     * Remove all the WebViews from the cache.
+     */
+    public void clear() {
+	List<WebView> views = getViews();
+	mViews.clear();
+	views.forEach(this::release);
+    }
+
+    /**
+     * @return A copy of the cached WebViews.
+     */
+    public List<WebView> getViews() {
+	return new ArrayList<>(mViews.values());
+    }
+}
@@ -28,26 +28,35 @@ import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.Timer;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Element;
 
 import com.smsbr.desktop.app.Bundle;
 import com.smsbr.desktop.app.Preferences;
+import com.smsbr.desktop.io.SmsBackupFileLoadOptions;
 import com.smsbr.desktop.model.Contact;
 import com.smsbr.desktop.model.Conversations;
 import com.smsbr.desktop.model.IConversationsListener;
@@ -55,16 +64,26 @@ import com.smsbr.desktop.model.ImagePart;
 import com.smsbr.desktop.model.Order;
 import com.smsbr.desktop.model.OrderBy;
 import com.smsbr.desktop.model.Sms;
+import com.smsbr.desktop.services.ConversationsExportTask;
+import com.smsbr.desktop.services.ConversationsZipExportTask;
+import com.smsbr.desktop.services.ImagesExtractionTask;
 import com.smsbr.desktop.services.SmsBackupFileLoadingService;
 import com.smsbr.desktop.util.FxUtil;
 import com.smsbr.desktop.util.Htmlizer;
+import com.smsbr.desktop.util.ImageCache;
 import com.smsbr.desktop.util.ImageUtil;
+import com.smsbr.desktop.util.ListUtil;
+import com.smsbr.desktop.util.ThumbnailCache;
 
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
+import javafx.concurrent.Worker.State;
 import javafx.event.ActionEvent;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
@@ -131,6 +150,8 @@ import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
+import javafx.util.Duration;
+import netscape.javascript.JSObject;
 
 /**
  * Main panel of the application.
@@ -144,6 +165,18 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 
     /** Size of icons for menus and buttons. */
     private static final int ICONS_SIZE = 16;
+    /** Size of thumbnails in the images overview tab. */
+    private static final int THUMBNAILS_SIZE = 100;
+    /** Name of the thumbnails cache directory. */
+    private static final String THUMBNAILS_CACHE_DIR = "thumbnails";
+    /** Delay before rendering a newly selected conversation (milliseconds). */
+    private static final int CONVERSATION_RENDER_DELAY = 150;
+    /** Number of messages pushed at once into the conversation WebView. */
+    private static final int CONVERSATION_RENDER_CHUNK_SIZE = 100;
+    /** Maximum number of rendered chunks waiting for the JavaFX thread. */
+    private static final int CONVERSATION_RENDER_PENDING_CHUNKS = 4;
+    /** Property of the WebViews rendered in advance, until they are displayed. */
+    private static final String PRERENDERED_VIEW_PROPERTY = "prerendered";
 
     protected static final String PREFIX = JfxDesktopAppMainPane.class.getName();
     protected static final String WEB_VIEW_WELCOME_MESSAGE = PREFIX + ".webView.welcomeMessage";
@@ -155,10 +188,14 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     protected static final String MENU_FILE_ACTION_EXPORT = PREFIX + ".menuFile.actionExport";
     protected static final String MENU_FILE_ACTION_RELOAD = PREFIX + ".menuFile.actionReload";
     protected static final String MENU_FILE_ACTION_OPEN = PREFIX + ".menuFile.actionOpen";
+    protected static final String MENU_FILE_ACTION_OPEN_WITH_FILTERS = PREFIX + ".menuFile.actionOpenWithFilters";
     protected static final String MENU_FILE_ACTION_REFRESH = PREFIX + ".menuFile.actionRefresh";
     protected static final String MENU_FILE_ACTION_OPEN_ERROR = PREFIX + ".menuFile.actionOpen.error";
     protected static final String MENU_FILE_ACTION_EXPORT_FILE_DESCRIPTION = PREFIX
 	    + ".menuFile.actionExport.fileDescription";
+    protected static final String MENU_FILE_ACTION_EXPORT_ZIP = PREFIX + ".menuFile.actionExportZip";
+    protected static final String MENU_FILE_ACTION_EXPORT_ZIP_FILE_DESCRIPTION = PREFIX
+	    + ".menuFile.actionExportZip.fileDescription";
     protected static final String MENU_FILE_ACTION_OPEN_FILE_DESCRIPTION = PREFIX
 	    + ".menuFile.actionOpen.fileDescription";
 
@@ -178,6 +215,8 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     protected static final String CONTEXT_MENU_SAVE_ALL_IMAGES = PREFIX + ".contextMenuSaveAllImages";
     protected static final String ALERT_TEXT_NO_IMAGE_TO_EXPORT = PREFIX + ".exportAllImages.noimage.alert";
     protected static final String ASK_OVERWRITE_MESSAGE = PREFIX + ".overwriteDestinationFiles.alert";
+    protected static final String EXPORT_ERRORS_MESSAGE = PREFIX + ".exportErrors.alert";
+    protected static final String EXTRACT_IMAGES_ERRORS_MESSAGE = PREFIX + ".exportAllImages.errors.alert";
 
     protected static final String EXPORT_IMAGES_DATE_FORMAT = "yyyyMMdd_HHmmss";
 
@@ -207,10 +246,14 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     protected Menu mMenuHelp;
     /** The 'File > Open' menu item. */
     protected MenuItem mMenuItemFileOpen;
+    /** The 'File > Open with filters' menu item. */
+    protected MenuItem mMenuItemFileOpenWithFilters;
     /** The 'File > Reload' menu item. */
     protected MenuItem mMenuItemFileReload;
     /** The 'File > Export to HTML' menu item. */
     protected MenuItem mMenuItemFileExportToHtml;
+    /** The 'File > Export to ZIP' menu item. */
+    protected MenuItem mMenuItemFileExportToZip;
     /** The 'File > Print' menu item. */
     protected MenuItem mMenuItemFilePrint;
     /** The 'File > Quit' menu item. */
@@ -241,8 +284,10 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 
     /** Root panel of the middle part of the {@link #mMainSplitPane} panel. */
     protected StackPane mConversationStackPane;
-    /** WebView for displaying conversations. */
+    /** WebView displaying the current conversation. */
     protected WebView mConversationWebView;
+    /** Pool of WebViews, with the recently viewed conversations. */
+    protected JfxConversationViewPool mConversationViewPool;
     /** Layer that is displayed over the WebView when user clicks on an image. */
     protected HBox mImagePreviewLayer;
 
@@ -255,6 +300,10 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 
     /** Sorted list of all the contacts found in the XML backup file. */
     protected ListView<Contact> mContactListView;
+    /** Display models of the contacts list cells, by contact. */
+    protected Map<Contact, ContactCellModel> mContactCellModels;
+    /** Formatter of the dates displayed in the contacts list. */
+    protected DateTimeFormatter mContactDateFormatter;
 
     /** ComboBox for choosing colors of the current conversation in the WebView. */
     protected JfxPaletteComboBox mPalettesComboBox;
@@ -270,14 +319,28 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     /** SmsbrDesktopApp's model */
     protected Conversations mModel;
 
-    /** A cache used to quickly export HTML from the WebView to an HTML file. */
-    protected String mModelAsHtml;
-
     /** Current color palette. */
     protected int mNumPalette;
 
     /** Service used for launching background loading tasks. */
-    protected Service<Conversations> mFileLoadingService;
+    protected SmsBackupFileLoadingService mFileLoadingService;
+
+    /** Service that renders the selected conversation in background. */
+    protected Service<Void> mConversationRenderService;
+    /** Delay used to debounce rapid changes of the selected conversation. */
+    protected PauseTransition mConversationRenderDelay;
+    /** The contact whose conversation is (or will be) rendered. */
+    protected Contact mRenderedContact;
+    /** Service that renders conversations in hidden WebViews, in advance. */
+    protected Service<Void> mConversationPrerenderService;
+    /** Contacts whose conversations will be rendered in advance. */
+    protected Deque<Contact> mPrerenderQueue;
+    /**
+     * Executor of the background tasks reading the model : the model is not
+     * disposed before they end, even if they are cancelled (see
+     * {@link Conversations#retain()}).
+     */
+    protected Executor mModelTasksExecutor;
 
     /**
      * Buffer that stores keyboards characters pressed when
@@ -291,6 +354,12 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     /** Util for regular text to HTML conversions. */
     protected Htmlizer mHtmlizer;
 
+    /** Disk cache for thumbnails of the images overview tab. */
+    protected ThumbnailCache mThumbnailCache;
+
+    /** Memory cache for decoded images. */
+    protected ImageCache mImageCache;
+
     // ---------------------------------------------------------------------
 
     /**
@@ -310,6 +379,9 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	mTimerForKeyEventsAccumulation = new Timer(1200, e -> resetKeyEventBuffer());
 
 	mHtmlizer = new Htmlizer(bundle, preferences);
+	mThumbnailCache = new ThumbnailCache(new File(Preferences.getCacheDirectory(), THUMBNAILS_CACHE_DIR),
+		THUMBNAILS_SIZE, ThumbnailCache.DEFAULT_MAX_SIZE_IN_BYTES);
+	mImageCache = ImageCache.getInstance();
 
 	initServices();
 	initComponents();
@@ -334,8 +406,30 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
      */
     private void initServices() {
 
+	// Tasks retain the model that is current when they start
+	ExecutorService threads = Executors.newCachedThreadPool(r -> {
+	    Thread thread = new Thread(r);
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	mModelTasksExecutor = runnable -> {
+	    Conversations model = mModel;
+	    if (model != null) {
+		model.retain();
+	    }
+	    threads.execute(() -> {
+		try {
+		    runnable.run();
+		} finally {
+		    if (model != null) {
+			model.release();
+		    }
+		}
+	    });
+	};
+
 	// Build the file loading service
-	mFileLoadingService = new SmsBackupFileLoadingService(() -> mCurrentFile);
+	mFileLoadingService = new SmsBackupFileLoadingService(() -> mCurrentFile, mPreferences);
 
 	// Initialize the loading service behaviors
 	mFileLoadingService.setOnRunning(e -> showBusyOverlay(true));
@@ -357,6 +451,46 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	    showBusyOverlay(false);
 	    mFileLoadingService.reset();
 	});
+
+	// Build the conversation rendering service : restarting it cancels the
+	// render of the previously selected conversation
+	mConversationRenderService = new Service<>() {
+	    @Override
+	    protected Task<Void> createTask() {
+		return createConversationRenderTask(mRenderedContact, mConversationWebView, true);
+	    }
+	};
+	mConversationRenderService.setExecutor(mModelTasksExecutor);
+	mConversationRenderService
+		.setOnRunning(e -> showBusyOverlay(!mConversationViewPool.containsView(mConversationWebView)));
+	mConversationRenderService.setOnCancelled(e -> showBusyOverlay(false));
+	mConversationRenderService.setOnFailed(e -> {
+	    logger.log(Level.ERROR, "", e.getSource().getException());
+	    showBusyOverlay(false);
+	});
+	mConversationRenderService.setOnSucceeded(e -> {
+	    showBusyOverlay(false);
+	    prerenderNeighbourConversations();
+	});
+
+	// Build the service that renders the conversations next to the selected one,
+	// so that paging through conversations is instant
+	mPrerenderQueue = new ArrayDeque<>();
+	mConversationPrerenderService = new Service<>() {
+	    @Override
+	    protected Task<Void> createTask() {
+		return createConversationRenderTask(mPrerenderQueue.poll(), mConversationViewPool.acquire(), false);
+	    }
+	};
+	mConversationPrerenderService.setExecutor(mModelTasksExecutor);
+	mConversationPrerenderService.setOnSucceeded(e -> prerenderNextConversation());
+	mConversationPrerenderService.setOnFailed(e -> {
+	    logger.log(Level.WARNING, "", e.getSource().getException());
+	    prerenderNextConversation();
+	});
+
+	mConversationRenderDelay = new PauseTransition(Duration.millis(CONVERSATION_RENDER_DELAY));
+	mConversationRenderDelay.setOnFinished(e -> startConversationRender());
     }
 
     /**
@@ -365,14 +499,18 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     private void initComponents() {
 	mActionCancelTask = new JfxButtonAction("glasspane-button-cancel", mBundle.getString(BUTTON_CANCEL_LABEL));
 
+	mContactCellModels = new HashMap<>();
+	mContactDateFormatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM);
 	mContactListView = new ListView<>();
 	mContactListView.setCellFactory((ListView<Contact> view) -> new ContactCell());
 
 	mPalettesComboBox = new JfxPaletteComboBox(mBundle);
 	mLanguageComboBox = new JfxLanguageComboBox();
 
-	mConversationWebView = new WebView();
-	mConversationWebView.getEngine().setJavaScriptEnabled(true);
+	mConversationViewPool = new JfxConversationViewPool(JfxConversationViewPool.DEFAULT_CAPACITY,
+		JfxConversationViewPool.DEFAULT_SPARE_COUNT, this::createConversationWebView);
+	mConversationViewPool.prewarm();
+	mConversationWebView = mConversationViewPool.acquire();
 
 	mImagePreviewLayer = new HBox();
 	mImagePreviewLayer.setAlignment(Pos.TOP_CENTER);
@@ -414,10 +552,13 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 
 	mMenuItemFileOpen = new MenuItem(mBundle.getString(MENU_FILE_ACTION_OPEN),
 		Resources.getIcon(Resources.ICON_OPEN_URL, ICONS_SIZE));
+	mMenuItemFileOpenWithFilters = new MenuItem(mBundle.getString(MENU_FILE_ACTION_OPEN_WITH_FILTERS));
 	mMenuItemFileReload = new MenuItem(mBundle.getString(MENU_FILE_ACTION_RELOAD),
 		Resources.getIcon(Resources.ICON_REFRESH_URL, ICONS_SIZE));
 	mMenuItemFileExportToHtml = new MenuItem(mBundle.getString(MENU_FILE_ACTION_EXPORT),
 		Resources.getIcon(Resources.ICON_EXPORT_URL, ICONS_SIZE));
+	mMenuItemFileExportToZip = new MenuItem(mBundle.getString(MENU_FILE_ACTION_EXPORT_ZIP),
+		Resources.getIcon(Resources.ICON_EXPORT_URL, ICONS_SIZE));
 	mMenuItemFilePrint = new MenuItem(mBundle.getString(MENU_FILE_ACTION_PRINT),
 		Resources.getIcon(Resources.ICON_PRINT_URL, ICONS_SIZE));
 	mMenuItemFileQuit = new MenuItem(mBundle.getString(MENU_FILE_ACTION_QUIT),
@@ -429,8 +570,9 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	mMenuItemHelpAbout = new MenuItem(mBundle.getString(MENU_HELP_ACTION_ABOUT),
 		Resources.getIcon(Resources.ICON_ABOUT_URL, ICONS_SIZE));
 
-	mMenuFile.getItems().addAll(mMenuItemFileOpen, mMenuItemFileReload, mMenuItemFileExportToHtml,
-		new SeparatorMenuItem(), mMenuItemFilePrint, new SeparatorMenuItem(), mMenuItemFileQuit);
+	mMenuFile.getItems().addAll(mMenuItemFileOpen, mMenuItemFileOpenWithFilters, mMenuItemFileReload,
+		mMenuItemFileExportToHtml, mMenuItemFileExportToZip, new SeparatorMenuItem(), mMenuItemFilePrint,
+		new SeparatorMenuItem(), mMenuItemFileQuit);
 	mMenuEdit.getItems().addAll(mMenuItemEditPreferences);
 	mMenuTools.getItems().addAll(mMenuItemToolsExtractImages);
 	mMenuHelp.getItems().add(mMenuItemHelpAbout);
@@ -445,8 +587,10 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	mMenuTools.setId("menu-tools");
 	mMenuHelp.setId("menu-help");
 	mMenuItemFileOpen.setId("menu-file-open");
+	mMenuItemFileOpenWithFilters.setId("menu-file-openwithfilters");
 	mMenuItemFileReload.setId("menu-file-reload");
 	mMenuItemFileExportToHtml.setId("menu-file-exporttohtml");
+	mMenuItemFileExportToZip.setId("menu-file-exporttozip");
 	mMenuItemFilePrint.setId("menu-file-print");
 	mMenuItemFileQuit.setId("menu-file-quit");
 	mMenuItemEditPreferences.setId("menu-edit-preferences");
@@ -455,30 +599,51 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     }
 
     /**
-     * Initialize the JavaFX component's behavior.
+     * Create a new WebView for displaying conversations, with all its behaviors.
+     * 
+     * @return The new WebView.
      */
-    private void initBehaviors() {
+    protected WebView createConversationWebView() {
+	WebView view = new WebView();
+	view.getEngine().setJavaScriptEnabled(true);
 
-	mButtonRefreshConversation.setOnAction(event -> refreshConversationView());
-	mButtonOpenFile.setOnAction(this::onOpenFileAction);
-
-	mConversationWebView.getEngine().setOnAlert(this::onWebViewAlertEvent);
-	mConversationWebView.setOnMouseClicked(event -> {
+	view.getEngine().setOnAlert(this::onWebViewAlertEvent);
+	view.setOnMouseClicked(event -> {
 	    if (event.getButton() == MouseButton.BACK) {
 		goBackward();
 	    } else if (event.getButton() == MouseButton.FORWARD) {
 		goForward();
 	    }
 	});
-	mConversationWebView.getEngine().setCreatePopupHandler(this::onWebViewPopupEvent);
+	view.getEngine().setCreatePopupHandler(this::onWebViewPopupEvent);
 
 	// Disallow 'prompt' javascript calls in the WebView.
-	mConversationWebView.getEngine().setPromptHandler(param -> null);
+	view.getEngine().setPromptHandler(param -> null);
+
+	// A view that navigates away from its conversation can't be reused
+	view.getEngine().locationProperty()
+		.addListener((observable, oldValue, newValue) -> mConversationViewPool.removeView(view));
+	return view;
+    }
+
+    /**
+     * Initialize the JavaFX component's behavior.
+     */
+    private void initBehaviors() {
+
+	mButtonRefreshConversation.setOnAction(event -> {
+	    // Explicit refresh : render the conversation again
+	    mConversationViewPool.remove(mContactListView.getSelectionModel().getSelectedItem());
+	    refreshConversationView();
+	});
+	mButtonOpenFile.setOnAction(this::onOpenFileAction);
 
 	// File menu
 	mMenuItemFileOpen.setOnAction(this::onOpenFileAction);
+	mMenuItemFileOpenWithFilters.setOnAction(this::onOpenFileWithFiltersAction);
 	mMenuItemFileReload.setOnAction(this::onReloadFileAction);
 	mMenuItemFileExportToHtml.setOnAction(me -> onExportToHtmlAction(mContactListView.getItems()));
+	mMenuItemFileExportToZip.setOnAction(me -> onExportToZipAction());
 	mMenuItemFilePrint.setOnAction(e -> onPrintAction());
 	mMenuItemFileQuit.setOnAction(e -> getScene().getWindow()
 		.fireEvent(new WindowEvent(getScene().getWindow(), WindowEvent.WINDOW_CLOSE_REQUEST)));
@@ -617,14 +782,26 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     }
 
     /**
-     * Load a new file in a background task.
+     * Load a new file in a background task, with all its messages.
      * 
      * @param file The file to be loaded.
      */
     public void loadFile(File file) {
+	loadFile(file, new SmsBackupFileLoadOptions());
+    }
+
+    /**
+     * Load a new file in a background task, keeping only the messages accepted
+     * by some options.
+     * 
+     * @param file    The file to be loaded.
+     * @param options Filters of the loaded messages.
+     */
+    public void loadFile(File file, SmsBackupFileLoadOptions options) {
 	mCurrentFile = file;
 	mPreferences.setLastFile(file.getAbsolutePath());
 
+	mFileLoadingService.setLoadOptions(options);
 	mActionCancelTask.setOnAction(e -> mFileLoadingService.cancel());
 	mProgressIndicator.progressProperty().bind(mFileLoadingService.progressProperty());
 	mFileLoadingService.restart();
@@ -643,8 +820,10 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	mButtonRefreshConversation.setText(mBundle.getString(MENU_FILE_ACTION_REFRESH));
 
 	mMenuItemFileOpen.setText(mBundle.getString(MENU_FILE_ACTION_OPEN));
+	mMenuItemFileOpenWithFilters.setText(mBundle.getString(MENU_FILE_ACTION_OPEN_WITH_FILTERS));
 	mMenuItemFileReload.setText(mBundle.getString(MENU_FILE_ACTION_RELOAD));
 	mMenuItemFileExportToHtml.setText(mBundle.getString(MENU_FILE_ACTION_EXPORT));
+	mMenuItemFileExportToZip.setText(mBundle.getString(MENU_FILE_ACTION_EXPORT_ZIP));
 	mMenuItemFilePrint.setText(mBundle.getString(MENU_FILE_ACTION_PRINT));
 	mMenuItemFileQuit.setText(mBundle.getString(MENU_FILE_ACTION_QUIT));
 	mMenuItemEditPreferences.setText(mBundle.getString(MENU_EDIT_ACTION_PREFERENCES));
@@ -653,6 +832,9 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 
 	mActionCancelTask.setText(mBundle.getString(BUTTON_CANCEL_LABEL));
 	mTabImagesOverview.setText(mBundle.getString(TABS_IMAGES));
+
+	// Dates and draft labels of the contacts list are localized
+	invalidateContactCellModels();
     }
 
     /**
@@ -663,20 +845,23 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 
 	mPreferences.addPropertyChangeListener((PropertyChangeEvent evt) -> {
 	    if (evt.getPropertyName().equals(Preferences.P_MESSAGE_WIDTH)
-		    || evt.getPropertyName().equals(Preferences.P_MESSAGE_ORDER)
-		    || evt.getPropertyName().equals(Preferences.P_EMOJI_SIZE)) {
-		refreshConversationView();
-	    } else if (evt.getPropertyName().equals(Preferences.P_ORDER_BY)
-		    || evt.getPropertyName().equals(Preferences.P_CONTACT_ORDER)) {
+		    || evt.getPropertyName().equals(Preferences.P_EMOJI_SIZE)
+		    || evt.getPropertyName().equals(Preferences.P_IMAGE_HEIGHT)) {
+		applyStylesToConversationView();
+	    } else if (evt.getPropertyName().equals(Preferences.P_MESSAGE_ORDER)) {
+		applyMessageOrderToConversationView();
+	    } else if (evt.getPropertyName().equals(Preferences.P_ORDER_BY)) {
+		refreshContactsList();
+	    } else if (evt.getPropertyName().equals(Preferences.P_CONTACT_ORDER)) {
+		// The date displayed for each contact depends on the contact order
+		invalidateContactCellModels();
 		refreshContactsList();
-	    } else if (evt.getPropertyName().equals(Preferences.P_IMAGE_HEIGHT)) {
-		refreshConversationView();
 	    } else if (evt.getPropertyName().equals(Preferences.P_LOCALE)) {
 		mLanguageComboBox.getSelectionModel().select(mPreferences.getPreferredLocale().getLanguage());
 		reloadLabelsFromBundle();
 	    } else if (evt.getPropertyName().equals(Preferences.P_PALETTE)) {
 		mNumPalette = mPreferences.getPreferredPalette();
-		refreshConversationView();
+		applyStylesToConversationView();
 	    }
 	});
 
@@ -692,6 +877,7 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
      * @param onSuccess runnable to run after the task succeeds, or
      *                  <code>null</code>. Note that '<code>onSuccess</code>' will
      *                  be executed in a daemon thread, not in the JavaFX thread.
+     *                  The model is not disposed before the task ends.
      */
     protected <T> void doInBackground(Task<T> task, Runnable... onSuccess) {
 	Service<T> service = new Service<>() {
@@ -699,6 +885,7 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 		return task;
 	    }
 	};
+	service.setExecutor(mModelTasksExecutor);
 	showBusyOverlay(true);
 	mProgressIndicator.progressProperty().bind(service.progressProperty());
 	mActionCancelTask.setOnAction(ae -> service.cancel());
@@ -740,7 +927,19 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
      * @param conversations The new model.
      */
     public void setModel(Conversations conversations) {
+	if (mModel != null && mModel != conversations) {
+	    mModel.removeListener(this);
+	    // Renders of the previous conversations are useless
+	    mPrerenderQueue.clear();
+	    mConversationPrerenderService.cancel();
+	    mConversationRenderService.cancel();
+	    // Deletes the temporary files of the previous backup, if any, once the
+	    // background tasks reading it have ended
+	    mModel.dispose();
+	}
 	mModel = conversations;
+	mConversationViewPool.clear();
+	mContactCellModels.clear();
 	refreshContactsList();
 	mContactListView.getSelectionModel().clearAndSelect(0);
 	mModel.addListener(this);
@@ -751,6 +950,8 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
      */
     @Override
     public void onSmsAdded(Sms message) {
+	mConversationViewPool.remove(message.getContact());
+	mContactCellModels.remove(message.getContact());
 	if (mContactListView.getItems().filtered(e -> message.getContact().equals(e)).isEmpty()) {
 	    refreshContactsList();
 	}
@@ -763,6 +964,8 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
      */
     @Override
     public void onContactRemoved(Contact contact) {
+	mConversationViewPool.remove(contact);
+	mContactCellModels.remove(contact);
 	mContactListView.getItems().remove(contact);
     }
 
@@ -843,7 +1046,62 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     protected void onSelectedPaletteChanged() {
 	String selectedItem = mPalettesComboBox.getSelectionModel().getSelectedItem();
 	mNumPalette = Integer.parseInt(selectedItem);
-	refreshConversationView();
+	applyStylesToConversationView();
+    }
+
+    /**
+     * Reverse the order of the messages of the displayed conversation in place.
+     * If the conversation is still being rendered, it is rendered again.
+     */
+    protected void applyMessageOrderToConversationView() {
+	String order = mPreferences.getPreferredMessageOrder().toString();
+	mConversationViewPool.getViews().stream().filter(view -> view != mConversationWebView)
+		.forEach(view -> callScript(view.getEngine(), Htmlizer.JS_SET_MESSAGE_ORDER, order));
+
+	if (mConversationRenderService.isRunning() || mConversationRenderDelay.getStatus() == Animation.Status.RUNNING
+		|| !callScript(mConversationWebView.getEngine(), Htmlizer.JS_SET_MESSAGE_ORDER, order)) {
+	    refreshConversationView();
+	}
+    }
+
+    /**
+     * Apply the current palette and the display preferences (messages width,
+     * images height, emojis size) to the displayed conversation, without
+     * rendering it again.
+     */
+    protected void applyStylesToConversationView() {
+	applyStyles(mConversationWebView.getEngine());
+	mConversationViewPool.getViews().stream().filter(view -> view != mConversationWebView)
+		.forEach(view -> applyStyles(view.getEngine()));
+    }
+
+    /**
+     * Apply the current palette and the display preferences to a conversation
+     * document. Documents without conversation are left unchanged.
+     * 
+     * @param engine The engine of the WebView displaying the conversation.
+     */
+    protected void applyStyles(WebEngine engine) {
+	callScript(engine, Htmlizer.JS_APPLY_STYLES, mHtmlizer.getStylesheetContent(mNumPalette),
+		mHtmlizer.getStyleVariables());
+    }
+
+    /**
+     * Call a javascript function of the document loaded in a WebEngine, if this
+     * function exists.
+     * 
+     * @param engine   The WebEngine.
+     * @param function Name of the function.
+     * @param args     Arguments of the function.
+     * @return <code>true</code> if the function exists and has been called.
+     */
+    protected boolean callScript(WebEngine engine, String function, Object... args) {
+	if (Boolean.TRUE.equals(engine.executeScript("typeof " + function + " === 'function'"))) {
+	    JSObject window = (JSObject) engine.executeScript("window");
+	    window.call(function, args);
+	    return true;
+	}
+	return false;
     }
 
     /**
@@ -863,7 +1121,32 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
      * @param event The underlying triggered event.
      */
     protected void onOpenFileAction(ActionEvent event) {
+	File file = chooseFileToOpen();
+	if (file != null) {
+	    loadFile(file);
+	}
+    }
+
+    /**
+     * Action handler when clicking in the 'Open with filters' menu : the user
+     * chooses the file, then the messages to load.
+     * 
+     * @param event The underlying triggered event.
+     */
+    protected void onOpenFileWithFiltersAction(ActionEvent event) {
+	File file = chooseFileToOpen();
+	if (file != null) {
+	    new JfxLoadOptionsDialog(getScene().getWindow(), mFileLoadingService.getLoadOptions(), mBundle)
+		    .showAndWait().ifPresent(options -> loadFile(file, options));
+	}
+    }
 
+    /**
+     * Shows a file chooser for the backup file to open.
+     * 
+     * @return The chosen file, or <code>null</code> if the user cancelled.
+     */
+    protected File chooseFileToOpen() {
 	FileChooser fc = new FileChooser();
 	if (mCurrentDir != null) {
 	    fc.setInitialDirectory(mCurrentDir);
@@ -877,9 +1160,10 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	if (result != null) {
 	    mCurrentDir = result.getParentFile();
 	    if (result.exists() && result.isFile()) {
-		loadFile(result);
+		return result;
 	    }
 	}
+	return null;
     }
 
     /**
@@ -889,7 +1173,8 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
      */
     protected void onReloadFileAction(ActionEvent event) {
 	if (mCurrentFile != null) {
-	    loadFile(mCurrentFile);
+	    // Same filters as the previous loading
+	    loadFile(mCurrentFile, mFileLoadingService.getLoadOptions());
 	}
     }
 
@@ -940,6 +1225,28 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	}
     }
 
+    /**
+     * Action handler when clicking on the 'Export to ZIP' menu : all the
+     * conversations are exported in a single archive.
+     */
+    protected void onExportToZipAction() {
+	FileChooser fc = new FileChooser();
+	if (mCurrentDir != null) {
+	    fc.setInitialDirectory(mCurrentDir);
+	}
+	fc.getExtensionFilters()
+		.add(new ExtensionFilter(mBundle.getString(MENU_FILE_ACTION_EXPORT_ZIP_FILE_DESCRIPTION), "*.zip"));
+	fc.setInitialFileName("conversations.zip");
+
+	File zipFile = fc.showSaveDialog(getScene().getWindow());
+	if (zipFile != null) {
+	    mCurrentDir = zipFile.getParentFile();
+	    ConversationsZipExportTask task = new ConversationsZipExportTask(mModel, mHtmlizer, mNumPalette,
+		    mPreferences.getPreferredMessageOrder(), mModel.getContactNamesSortedByDate(Order.DESC), zipFile);
+	    doInBackground(task, () -> openExportedFiles(List.of(zipFile), zipFile.getParentFile()));
+	}
+    }
+
     /**
      * Add a listener on the language ComboBox.
      * 
@@ -1037,26 +1344,14 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	}
 	mCurrentDir = saveDir;
 
-	SimpleDateFormat df = new SimpleDateFormat(EXPORT_IMAGES_DATE_FORMAT);
-
-	for (Sms sms : messagesWithImages) {
-	    Contact contact = sms.getContact();
-
-	    List<ImagePart> images = sms.getImages();
-	    for (ImagePart image : images) {
-		String ext = image.getMimeType().substring("image/".length());
-		String filename = contact.getCompleteName() + "_" + df.format(sms.getDate()) + "." + ext;
-		try {
-		    File file = new File(saveDir.getAbsolutePath(), filename);
-
-		    logger.log(Level.TRACE, "Exporting ''{0}''", file.getAbsolutePath());
-		    ImageUtil.exportBase64ToFile(image.getBase64(), file);
-
-		} catch (IOException | IllegalArgumentException e) {
-		    logger.log(Level.WARNING, "", e);
-		}
+	ImagesExtractionTask task = new ImagesExtractionTask(messagesWithImages, saveDir, EXPORT_IMAGES_DATE_FORMAT);
+	doInBackground(task, () -> {
+	    Map<File, Exception> errors = task.getErrors();
+	    if (!errors.isEmpty()) {
+		showExportErrors(mBundle.getString(MENU_TOOLS_ACTION_EXTRACT_IMAGES),
+			mBundle.getString(EXTRACT_IMAGES_ERRORS_MESSAGE), errors);
 	    }
-	}
+	});
     }
 
     /**
@@ -1118,49 +1413,63 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	    return;
 	}
 
-	doInBackground(new Task<Void>() {
-	    @Override
-	    protected Void call() {
-		int progress = 0;
-		int countExportedFiles = 0;
-		File lastExportedFile = null;
-
-		for (Contact contact : conversationsToExport) {
-		    if (isCancelled()) {
-			return null;
-		    }
-		    try {
-			String name = contact.getCompleteName();
-			if (Contact.UNKNOWN_CONTACT.equals(name)) {
-			    name = contact.getPhoneNumber();
-			}
-			File toFile = new File(toDir, FilenameUtils.normalize(name + ".html"));
-			if (!toFile.exists() || (overwrite.isPresent() && overwrite.get() == ButtonType.YES)) {
-			    String conversationHtml = loadConversationNotInterruptible(contact);
-			    Files.writeString(toFile.toPath(), conversationHtml, StandardCharsets.UTF_8);
-			    countExportedFiles++;
-			    lastExportedFile = toFile;
-			}
+	ConversationsExportTask task = new ConversationsExportTask(mModel, mHtmlizer, mNumPalette,
+		mPreferences.getPreferredMessageOrder(), conversationsToExport, toDir,
+		overwrite.get() == ButtonType.YES, mPreferences.isExportAssets());
+	doInBackground(task, () -> {
+	    logger.log(Level.INFO, "{0} conversation(s) already up to date in {1}", task.getUpToDateCount(), toDir);
+	    Map<File, Exception> errors = task.getErrors();
+	    if (!errors.isEmpty()) {
+		showExportErrors(mBundle.getString(MENU_FILE_ACTION_EXPORT), mBundle.getString(EXPORT_ERRORS_MESSAGE),
+			errors);
+	    }
+	    openExportedFiles(task.getValue(), toDir);
+	});
+    }
 
-		    } catch (IOException e) {
-			Platform.runLater(() -> logAndDisplayError(e));
-		    }
-		    updateProgress(progress, conversationsToExport.size());
-		}
-		try {
-		    if (Desktop.getDesktop().isSupported(Action.OPEN)) {
-			if (countExportedFiles == 1) {
-			    Desktop.getDesktop().open(lastExportedFile);
-			} else if (countExportedFiles > 1) {
-			    Desktop.getDesktop().open(toDir);
-			}
-		    }
-		} catch (IOException e) {
-		    logger.log(Level.WARNING, "", e);
+    /**
+     * Open the exported file (if there is only one), or the destination
+     * directory.
+     * 
+     * @param exportedFiles The exported files.
+     * @param toDir         The destination directory.
+     */
+    protected void openExportedFiles(List<File> exportedFiles, File toDir) {
+	try {
+	    if (Desktop.getDesktop().isSupported(Action.OPEN)) {
+		if (exportedFiles.size() == 1) {
+		    Desktop.getDesktop().open(exportedFiles.get(0));
+		} else if (exportedFiles.size() > 1) {
+		    Desktop.getDesktop().open(toDir);
 		}
-		return null;
 	    }
-	});
+	} catch (IOException e) {
+	    logger.log(Level.WARNING, "", e);
+	}
+    }
+
+    /**
+     * Display all the errors of an export in a single alert.
+     * 
+     * @param title  Title of the alert.
+     * @param header Header text of the alert.
+     * @param errors The errors, by file.
+     */
+    protected void showExportErrors(String title, String header, Map<File, Exception> errors) {
+	StringBuilder sb = new StringBuilder();
+	errors.forEach((file, error) -> sb.append(file.getAbsolutePath()).append(" : ")
+		.append(error.getLocalizedMessage()).append(System.lineSeparator()));
+
+	TextArea details = new TextArea(sb.toString());
+	details.setEditable(false);
+
+	Alert alert = new Alert(AlertType.ERROR);
+	alert.setTitle(title);
+	alert.setHeaderText(header);
+	alert.getDialogPane().setContent(details);
+	alert.getButtonTypes().setAll(ButtonType.CLOSE);
+	alert.setResizable(true);
+	alert.showAndWait();
     }
 
     /**
@@ -1174,12 +1483,7 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	Optional<ButtonType> result = Optional.of(ButtonType.YES);
 
 	List<File> alreadyExistingFiles = new ArrayList<>();
-	for (Contact contact : selectedContacts) {
-	    String name = contact.getCompleteName();
-	    if (Contact.UNKNOWN_CONTACT.equals(name)) {
-		name = contact.getPhoneNumber();
-	    }
-	    File toFile = new File(exportDir, FilenameUtils.normalize(name + ".html"));
+	for (File toFile : ConversationsExportTask.getExportFiles(selectedContacts, exportDir).values()) {
 	    if (toFile.exists()) {
 		alreadyExistingFiles.add(toFile);
 	    }
@@ -1216,6 +1520,8 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 
     /**
      * Refresh the contacts list (e.g. after the contacts sorting order changes).
+     * Only the contacts that have been added, removed or moved are updated in the
+     * list, and the selected contacts remain selected.
      */
     public void refreshContactsList() {
 	if (mModel != null) {
@@ -1227,8 +1533,67 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 		contacts.addAll(
 			mModel.getContactNamesSortedByLexicographicOrder(mPreferences.getPreferredContactOrder()));
 	    }
-	    mContactListView.getItems().setAll(contacts);
+
+	    List<Contact> selectedContacts = new ArrayList<>(mContactListView.getSelectionModel().getSelectedItems());
+	    Contact focusedContact = mContactListView.getSelectionModel().getSelectedItem();
+
+	    int operations = ListUtil.applyDiff(mContactListView.getItems(), contacts);
+	    logger.log(Level.TRACE, "{0} changes in the contacts list", operations);
+
+	    // Moved contacts are removed then inserted : restore their selection
+	    List<Contact> stillSelected = selectedContacts.stream().filter(contacts::contains).toList();
+	    if (!stillSelected.equals(mContactListView.getSelectionModel().getSelectedItems())) {
+		mContactListView.getSelectionModel().clearSelection();
+		stillSelected.stream().filter(c -> !c.equals(focusedContact))
+			.forEach(c -> mContactListView.getSelectionModel().select(c));
+		if (stillSelected.contains(focusedContact)) {
+		    mContactListView.getSelectionModel().select(focusedContact);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Get the display model of a contacts list cell. Models are computed once,
+     * until the model or the display preferences change.
+     * 
+     * @param contact The contact.
+     * @return The display model.
+     */
+    protected ContactCellModel getContactCellModel(Contact contact) {
+	return mContactCellModels.computeIfAbsent(contact, this::createContactCellModel);
+    }
+
+    /**
+     * Compute the display model of a contacts list cell.
+     * 
+     * @param contact The contact.
+     * @return The display model.
+     */
+    protected ContactCellModel createContactCellModel(Contact contact) {
+	long date = mPreferences.getPreferredContactOrder() == Order.ASC ? mModel.getFirstMessageDate(contact)
+		: mModel.getLastMessageDate(contact);
+	String sDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(date), ZoneId.systemDefault())
+		.format(mContactDateFormatter);
+
+	boolean isDraft = StringUtils.isAllBlank(contact.getCompleteName(), contact.getPhoneNumber());
+	String label;
+	if (isDraft) {
+	    label = mBundle.getString(ContactCell.DRAFT);
+	} else {
+	    label = StringUtils.isBlank(contact.getCompleteName()) ? contact.getPhoneNumber() : contact.toString();
 	}
+	return new ContactCellModel(sDate, label, isDraft);
+    }
+
+    /**
+     * Discard the display models of the contacts list cells, and redraw the
+     * cells.
+     */
+    protected void invalidateContactCellModels() {
+	mContactCellModels.clear();
+	mContactDateFormatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM);
+	mContactListView.refresh();
     }
 
     /**
@@ -1246,130 +1611,316 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     /**
      * Load all SMS of a conversation into a separate background thread.
      * 
+     * Rapid calls (e.g. when the user holds an arrow key in the contact list) are
+     * debounced : only the last requested conversation is rendered, and a render
+     * still running for a previous conversation is cancelled.
+     * 
      * @param selectedContact The contact you want to load conversation from.
      */
     public void showConversationForContact(Contact selectedContact) {
-	Service<String> mServiceLoadConversation = new Service<>() {
-	    public Task<String> createTask() {
-		return new Task<String>() {
-		    @Override
-		    protected String call() throws Exception {
-			StringBuilder sb = new StringBuilder(mHtmlizer.getHtmlDocumentHeader(mNumPalette));
-			if (selectedContact != null) {
-			    sb.append("<h1>").append(selectedContact).append("</h1>");
-
-			    List<Sms> messages = mModel.getConversation(selectedContact,
-				    mPreferences.getPreferredMessageOrder());
-			    long currentDay = -1;
-
-			    int count = 0;
-			    for (Sms sms : messages) {
-				if (isCancelled()) {
-				    return null;
-				}
-				if (currentDay == -1 || mHtmlizer.isNewDay(currentDay, sms.getDate())) {
-				    sb.append(mHtmlizer.getHtmlDateDivider(sms.getDate()));
-				}
-				sb.append(mHtmlizer.getHtmlSmsContent(sms));
-				currentDay = sms.getDate();
-				Platform.runLater(() -> fillImagesOverviewTabWithThumbnails(sms));
-				updateProgress(count++, messages.size());
-			    }
-			} else {
-			    sb.append(mBundle.getString(WEB_VIEW_WELCOME_MESSAGE));
+	mRenderedContact = selectedContact;
+	mConversationRenderDelay.playFromStart();
+    }
+
+    /**
+     * Start rendering the conversation of {@link #mRenderedContact}, cancelling
+     * the previous render if it is still running. If the conversation has been
+     * rendered recently, its WebView is displayed again from the
+     * {@link #mConversationViewPool}.
+     */
+    protected void startConversationRender() {
+	// The conversation the user is looking at has priority
+	mPrerenderQueue.clear();
+	mConversationPrerenderService.cancel();
+
+	WebView view = mConversationViewPool.get(mRenderedContact);
+	if (view == null) {
+	    // Don't overwrite a cached conversation
+	    view = mConversationViewPool.containsView(mConversationWebView) ? mConversationViewPool.acquire()
+		    : mConversationWebView;
+	}
+	showConversationWebView(view);
+
+	mImagesOverviewPane.getChildren().clear();
+	mActionCancelTask.setOnAction(ae -> mConversationRenderService.cancel());
+	mProgressIndicator.progressProperty().bind(mConversationRenderService.progressProperty());
+	mConversationRenderService.restart();
+    }
+
+    /**
+     * Display a WebView in the {@link #mConversationStackPane}, in place of the
+     * current one.
+     * 
+     * @param view The WebView to display.
+     */
+    protected void showConversationWebView(WebView view) {
+	if (view != mConversationWebView) {
+	    ObservableList<Node> children = mConversationStackPane.getChildren();
+	    children.set(children.indexOf(mConversationWebView), view);
+	    mConversationViewPool.release(mConversationWebView);
+	    mConversationWebView = view;
+	    hideImagePreviewLayer();
+
+	    // A view rendered while hidden has never been scrolled to the most recent
+	    // messages
+	    if (view.getProperties().remove(PRERENDERED_VIEW_PROPERTY) != null) {
+		WebEngine engine = view.getEngine();
+		Platform.runLater(() -> engine.executeScript("window.scrollTo(0, "
+			+ (mPreferences.getPreferredMessageOrder() == Order.ASC ? "document.documentElement.scrollHeight"
+				: "0")
+			+ ");"));
+	    }
+	}
+    }
+
+    /**
+     * Render in advance the conversations next to the selected one in the
+     * contacts list (unless they are already rendered).
+     */
+    protected void prerenderNeighbourConversations() {
+	mPrerenderQueue.clear();
+	List<Contact> contacts = mContactListView.getItems();
+	int index = mContactListView.getSelectionModel().getSelectedIndex();
+	if (index < 0) {
+	    return;
+	}
+	for (int i : new int[] { index + 1, index - 1 }) {
+	    if (i >= 0 && i < contacts.size() && !mConversationViewPool.contains(contacts.get(i))) {
+		mPrerenderQueue.add(contacts.get(i));
+	    }
+	}
+	prerenderNextConversation();
+    }
+
+    /**
+     * Render in advance the next conversation of the {@link #mPrerenderQueue}.
+     */
+    protected void prerenderNextConversation() {
+	if (!mPrerenderQueue.isEmpty()) {
+	    mConversationPrerenderService.restart();
+	}
+    }
+
+    /**
+     * Create a task that renders a conversation into a WebView. An empty document
+     * is loaded first, then messages are rendered by chunks and pushed into the
+     * document as they are produced, starting from the most recent ones. When the
+     * rendering succeeds, the WebView is stored in the
+     * {@link #mConversationViewPool}.
+     * 
+     * If the conversation is already rendered in this WebView, only the images
+     * overview tab is filled. Conversations rendered in advance in a hidden
+     * WebView don't fill the images overview tab, and the WebView is given back
+     * to the {@link #mConversationViewPool} if the rendering doesn't succeed.
+     * 
+     * @param selectedContact The contact you want to load conversation from, or
+     *                        <code>null</code> for the welcome message.
+     * @param view            The WebView to render into.
+     * @param isDisplayed     <code>false</code> if the WebView is hidden.
+     * @return The new task.
+     */
+    protected Task<Void> createConversationRenderTask(Contact selectedContact, WebView view,
+	    boolean isDisplayed) {
+	WebEngine engine = view.getEngine();
+	boolean isRendered = selectedContact != null && mConversationViewPool.get(selectedContact) == view;
+	// The model may be replaced while rendering
+	Conversations model = mModel;
+	return new Task<Void>() {
+	    @Override
+	    protected Void call() throws Exception {
+		if (isRendered) {
+		    for (Sms sms : model.getAllMessagesWithImages(selectedContact)) {
+			if (isCancelled()) {
+			    return null;
+			}
+			fillImagesOverviewTabWithThumbnails(this, sms);
+		    }
+		    return null;
+		}
+		if (selectedContact == null) {
+		    String welcome = mHtmlizer.getHtmlDocumentHeader(mNumPalette)
+			    + mBundle.getString(WEB_VIEW_WELCOME_MESSAGE);
+		    runLaterIfNotCancelled(() -> engine.loadContent(welcome));
+		    return null;
+		}
+
+		// Load the empty conversation document and wait until it is ready
+		Order order = mPreferences.getPreferredMessageOrder();
+		String document = mHtmlizer.getHtmlConversationDocument(mNumPalette, selectedContact.toString(),
+			order);
+		CountDownLatch documentLoaded = new CountDownLatch(1);
+		runLaterIfNotCancelled(() -> loadContent(engine, document, () -> {
+		    if (!isCancelled()) {
+			// Preferences may have changed since the document was built
+			applyStyles(engine);
+			if (isDisplayed) {
+			    hideImagePreviewLayer();
+			    showBusyOverlay(false);
 			}
-			return sb.toString();
 		    }
-		};
+		    documentLoaded.countDown();
+		}));
+		while (!documentLoaded.await(100, TimeUnit.MILLISECONDS)) {
+		    if (isCancelled()) {
+			return null;
+		    }
+		}
+
+		// Most recent messages are at the end in ASC order (so chunks are inserted
+		// at the top of the document), and at the beginning in DESC order.
+		List<Sms> messages = model.getConversation(selectedContact, order);
+		boolean atTop = order == Order.ASC;
+		int count = messages.size();
+
+		// Limit the number of chunks waiting for the JavaFX thread
+		Semaphore pendingChunks = new Semaphore(CONVERSATION_RENDER_PENDING_CHUNKS);
+
+		for (int done = 0; done < count; done += CONVERSATION_RENDER_CHUNK_SIZE) {
+		    int from = atTop ? Math.max(0, count - done - CONVERSATION_RENDER_CHUNK_SIZE) : done;
+		    int to = atTop ? count - done : Math.min(count, done + CONVERSATION_RENDER_CHUNK_SIZE);
+
+		    String html = mHtmlizer.getHtmlMessages(messages, from, to);
+		    for (int i = from; isDisplayed && i < to; i++) {
+			fillImagesOverviewTabWithThumbnails(this, messages.get(i));
+		    }
+
+		    while (!pendingChunks.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+			if (isCancelled()) {
+			    return null;
+			}
+		    }
+		    runLaterIfNotCancelled(() -> {
+			JSObject window = (JSObject) engine.executeScript("window");
+			window.call(Htmlizer.JS_APPEND_MESSAGES, html, atTop);
+			pendingChunks.release();
+		    });
+		    updateProgress(done + (long) to - from, count);
+		}
+		return null;
 	    }
-	};
 
-	mServiceLoadConversation.setOnRunning(e -> showBusyOverlay(true));
-	mServiceLoadConversation.setOnCancelled(e -> showBusyOverlay(false));
-	mServiceLoadConversation.setOnFailed(e -> {
-	    logger.log(Level.ERROR, "", e.getSource().getException());
-	    showBusyOverlay(false);
-	});
-	mServiceLoadConversation.setOnSucceeded(e -> {
-	    mModelAsHtml = mServiceLoadConversation.getValue();
-	    mConversationWebView.getEngine().loadContent(mModelAsHtml); // asynchronous
-	    hideImagePreviewLayer();
-	    showBusyOverlay(false);
-	});
+	    @Override
+	    protected void succeeded() {
+		super.succeeded();
+		if (selectedContact != null && !isRendered) {
+		    if (!isDisplayed) {
+			view.getProperties().put(PRERENDERED_VIEW_PROPERTY, Boolean.TRUE);
+		    }
+		    mConversationViewPool.put(selectedContact, view);
+		}
+	    }
 
-	mActionCancelTask.setOnAction(ae -> mServiceLoadConversation.cancel());
-	mProgressIndicator.progressProperty().bind(mServiceLoadConversation.progressProperty());
-	mServiceLoadConversation.start();
+	    @Override
+	    protected void cancelled() {
+		super.cancelled();
+		mConversationViewPool.release(view);
+	    }
+
+	    @Override
+	    protected void failed() {
+		super.failed();
+		mConversationViewPool.release(view);
+	    }
+
+	    /**
+	     * Run an action in the JavaFX thread, unless this task is cancelled before.
+	     */
+	    private void runLaterIfNotCancelled(Runnable action) {
+		Platform.runLater(() -> {
+		    if (!isCancelled()) {
+			action.run();
+		    }
+		});
+	    }
+	};
     }
 
     /**
-     * Load a single conversation. Process is not interruptible, contrary to
-     * {@link #showConversationForContact(Contact)}.
+     * Load an HTML document in a WebEngine and run an action when the loading is
+     * over.
      * 
-     * @param selectedContact The contact's conversation to be loaded.
-     * @return The full conversation as a string.
+     * @param engine   The WebEngine.
+     * @param html     The document to load.
+     * @param onLoaded Action to run when the document is loaded.
      */
-    protected String loadConversationNotInterruptible(Contact selectedContact) {
-	StringBuilder sb = new StringBuilder(mHtmlizer.getHtmlDocumentHeader(mNumPalette));
-	if (selectedContact != null) {
-	    sb.append("<h1>").append(selectedContact).append("</h1>");
+    protected void loadContent(WebEngine engine, String html, Runnable onLoaded) {
+	engine.getLoadWorker().stateProperty().addListener(new ChangeListener<State>() {
+	    // Ignore the cancellation of a previous loading
+	    private boolean mIsStarted = false;
 
-	    List<Sms> messages = mModel.getConversation(selectedContact, mPreferences.getPreferredMessageOrder());
-	    long currentDay = -1;
-
-	    for (Sms sms : messages) {
-		if (currentDay == -1 || mHtmlizer.isNewDay(currentDay, sms.getDate())) {
-		    sb.append(mHtmlizer.getHtmlDateDivider(sms.getDate()));
+	    @Override
+	    public void changed(ObservableValue<? extends State> observable, State oldValue, State newValue) {
+		if (newValue == State.RUNNING) {
+		    mIsStarted = true;
+		} else if (mIsStarted
+			&& (newValue == State.SUCCEEDED || newValue == State.FAILED || newValue == State.CANCELLED)) {
+		    observable.removeListener(this);
+		    onLoaded.run();
 		}
-		sb.append(mHtmlizer.getHtmlSmsContent(sms));
-		currentDay = sms.getDate();
 	    }
-	} else {
-	    sb.append(mBundle.getString(WEB_VIEW_WELCOME_MESSAGE));
-	}
-	return sb.toString();
+	});
+	engine.loadContent(html);
     }
 
     /**
      * Extract all images of a SMS and add them into the
-     * {@link #mTabImagesOverview}. Each image has 2 default mouse actions ; primary
-     * mouse button shows t he image over the conversation pane (see
-     * {@link #showImagePreview(String)}) and secondary mouse button displays a
-     * context menu with action {@link #onSaveImageAction(ImagePart)}.
+     * {@link #mTabImagesOverview}. Thumbnails are read from (or written to) the
+     * {@link #mThumbnailCache}, so this method should be called from a background
+     * thread ; thumbnails are then added in the JavaFX thread, unless the task
+     * has been cancelled in the meantime.
      * 
-     * @param sms The SMS containing images to load.
+     * @param task The render task this method is called from.
+     * @param sms  The SMS containing images to load.
      */
-    protected void fillImagesOverviewTabWithThumbnails(Sms sms) {
+    protected void fillImagesOverviewTabWithThumbnails(Task<?> task, Sms sms) {
 	sms.getImages().forEach(i -> {
 	    try {
-		ImageView img = new ImageView(ImageUtil.decodeBase64Mime(i.getBase64()));
-		img.setPreserveRatio(true);
-		img.setFitWidth(100);
-		img.setFitHeight(100);
-		mImagesOverviewPane.getChildren().add(img);
-
-		// Do not propagate the CONTEXT_MENU_REQUESTED event to underlying StackPane
-		img.addEventFilter(ContextMenuEvent.CONTEXT_MENU_REQUESTED, ContextMenuEvent::consume);
-
-		img.setOnMouseClicked(mouseClicked -> {
-		    if (mouseClicked.getButton() == MouseButton.PRIMARY) {
-			showImagePreview(i.getUniqueId());
-		    } else if (mouseClicked.getButton() == MouseButton.SECONDARY) {
-			MenuItem menuItem = new MenuItem(mBundle.getString(CONTEXT_MENU_SAVE_IMAGE));
-			menuItem.setOnAction(menuItemEvent -> onSaveImageAction(i));
-			ContextMenu menu = new ContextMenu(menuItem);
-			menu.show(this.getScene().getWindow(), mouseClicked.getScreenX(), mouseClicked.getScreenY());
+		Image thumbnail = mThumbnailCache.getThumbnail(i);
+		Platform.runLater(() -> {
+		    if (!task.isCancelled()) {
+			addThumbnailToImagesOverviewTab(i, thumbnail);
 		    }
 		});
-		img.setOnMouseEntered(mouseEntered -> getScene().setCursor(Cursor.HAND));
-		img.setOnMouseExited(mouseExited -> getScene().setCursor(Cursor.DEFAULT));
-
 	    } catch (IOException e) {
 		logger.log(Level.ERROR, e.getMessage(), e);
 	    }
 	});
     }
 
+    /**
+     * Add the thumbnail of an image into the {@link #mTabImagesOverview}. Each
+     * image has 2 default mouse actions ; primary mouse button shows the image
+     * over the conversation pane (see {@link #showImagePreview(String)}) and
+     * secondary mouse button displays a context menu with action
+     * {@link #onSaveImageAction(ImagePart)}.
+     * 
+     * @param i         The image.
+     * @param thumbnail The thumbnail of the image.
+     */
+    protected void addThumbnailToImagesOverviewTab(ImagePart i, Image thumbnail) {
+	ImageView img = new ImageView(thumbnail);
+	img.setPreserveRatio(true);
+	img.setFitWidth(THUMBNAILS_SIZE);
+	img.setFitHeight(THUMBNAILS_SIZE);
+	mImagesOverviewPane.getChildren().add(img);
+
+	// Do not propagate the CONTEXT_MENU_REQUESTED event to underlying StackPane
+	img.addEventFilter(ContextMenuEvent.CONTEXT_MENU_REQUESTED, ContextMenuEvent::consume);
+
+	img.setOnMouseClicked(mouseClicked -> {
+	    if (mouseClicked.getButton() == MouseButton.PRIMARY) {
+		showImagePreview(i.getUniqueId());
+	    } else if (mouseClicked.getButton() == MouseButton.SECONDARY) {
+		MenuItem menuItem = new MenuItem(mBundle.getString(CONTEXT_MENU_SAVE_IMAGE));
+		menuItem.setOnAction(menuItemEvent -> onSaveImageAction(i));
+		ContextMenu menu = new ContextMenu(menuItem);
+		menu.show(this.getScene().getWindow(), mouseClicked.getScreenX(), mouseClicked.getScreenY());
+	    }
+	});
+	img.setOnMouseEntered(mouseEntered -> getScene().setCursor(Cursor.HAND));
+	img.setOnMouseExited(mouseExited -> getScene().setCursor(Cursor.DEFAULT));
+    }
+
     /**
      * Go back in history.
      */
@@ -1408,11 +1959,14 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
 	closeButton.setGraphic(Resources.getIcon(Resources.ICON_BACK_URL));
 	closeButton.setOnAction(e -> hideImagePreviewLayer());
 
-	Element elementById = mConversationWebView.getEngine().getDocument().getElementById(imageId);
-	String attribute = elementById.getAttribute("src");
-	String base64 = attribute.substring(Htmlizer.IMAGE_LINK_PREFIX.length());
 	try {
-	    Image fxImage = ImageUtil.decodeBase64Mime(base64);
+	    Element elementById = mConversationWebView.getEngine().getDocument().getElementById(imageId);
+	    // Images with the same content are decoded once
+	    Image fxImage = mImageCache.get(elementById.getAttribute(Htmlizer.IMAGE_CONTENT_ATTRIBUTE), () -> {
+		String attribute = elementById.getAttribute("src");
+		return ImageUtil.decodeBase64Mime(attribute.substring(Htmlizer.IMAGE_LINK_PREFIX.length()));
+	    });
+	    logger.log(Level.TRACE, () -> mImageCache.toString());
 	    ImageView imageView = new ImageView(fxImage);
 	    imageView.setPreserveRatio(true);
 
@@ -1483,44 +2037,82 @@ public class JfxDesktopAppMainPane extends HBox implements IConversationsListene
     }
 
     /**
-     * Renders a cell of the contacts list.
+     * Immutable display model of a contacts list cell.
+     */
+    protected static final class ContactCellModel {
+	/** Formatted date of the conversation. */
+	private final String mDate;
+	/** Label of the contact. */
+	private final String mLabel;
+	/** Tells whether the conversation is a draft (no contact). */
+	private final boolean mIsDraft;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param date    Formatted date of the conversation.
+	 * @param label   Label of the contact.
+	 * @param isDraft Tells whether the conversation is a draft.
+	 */
+	public ContactCellModel(String date, String label, boolean isDraft) {
+	    mDate = date;
+	    mLabel = label;
+	    mIsDraft = isDraft;
+	}
+
+	public String getDate() {
+	    return mDate;
+	}
+
+	public String getLabel() {
+	    return mLabel;
+	}
+
+	public boolean isDraft() {
+	    return mIsDraft;
+	}
+    }
+
+    /**
+     * Renders a cell of the contacts list. The nodes of the cell are created once
+     * and only their texts are updated.
      */
     protected class ContactCell extends ListCell<Contact> {
 	protected static final String DRAFT = PREFIX + ".draft";
 
+	/** Date of the conversation. */
+	protected Text mLabelDate;
+	/** Name or phone number of the contact. */
+	protected Text mLabelContact;
+	/** Graphic of the cell. */
+	protected VBox mGraphic;
+
+	/**
+	 * Constructor.
+	 */
+	public ContactCell() {
+	    super();
+	    mLabelDate = new Text();
+	    mLabelDate.setFont(Font.font(mPreferences.getContactListDatetimeFont(), FontWeight.NORMAL, 12.0));
+	    mLabelContact = new Text();
+	    mLabelContact.setFont(Font.font(mPreferences.getContactListNameFont(), FontWeight.BOLD, 14.0));
+	    mGraphic = new VBox(mLabelDate, mLabelContact);
+	    setText(null);
+	}
+
 	@Override
 	protected void updateItem(Contact item, boolean empty) {
 
 	    super.updateItem(item, empty);
 
 	    if (empty || item == null) {
-		setText(null);
 		setGraphic(null);
 	    } else {
-		List<Sms> conversation = mModel.getConversation(item, mPreferences.getPreferredContactOrder());
-
-		LocalDateTime dt = LocalDateTime.ofInstant(Instant.ofEpochMilli(conversation.get(0).getDate()),
-			ZoneId.systemDefault());
-		String sDate = dt.format(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM));
-		String sContact = formatContact(item);
-
-		Text labelDate = new Text(sDate);
-		labelDate.setFont(Font.font(mPreferences.getContactListDatetimeFont(), FontWeight.NORMAL, 12.0));
-		Text labelContact = new Text(sContact);
-		labelContact.setFont(Font.font(mPreferences.getContactListNameFont(), FontWeight.BOLD, 14.0));
-		VBox label = new VBox(labelDate, labelContact);
-
-		setText(null);
-		setGraphic(label);
+		ContactCellModel model = getContactCellModel(item);
+		mLabelDate.setText(model.getDate());
+		mLabelContact.setText(model.getLabel());
+		setGraphic(mGraphic);
 	    }
 	}
-
-	protected String formatContact(Contact contact) {
-	    String formattedContact = StringUtils.isBlank(contact.getCompleteName()) ? contact.getPhoneNumber()
-		    : contact.toString();
-	    return StringUtils.isAllBlank(contact.getCompleteName(), contact.getPhoneNumber())
-		    ? mBundle.getString(DRAFT)
-		    : formattedContact;
-	}
     }
 }
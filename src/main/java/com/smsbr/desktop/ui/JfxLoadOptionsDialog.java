@@ -0,0 +1,173 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.ui;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import com.smsbr.desktop.app.Bundle;
+import com.smsbr.desktop.io.SmsBackupFileLoadOptions;
+
+import javafx.geometry.HPos;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.stage.Window;
+
+/**
+ * Dialog box for choosing the filters of a file to load (contacts, dates,
+ * images). Its result is the options, or nothing if the user cancels.
+ *
+ * @author Alexandre DERMONT
+ */
+public class JfxLoadOptionsDialog extends Dialog<SmsBackupFileLoadOptions> {
+
+    protected static final String PREFIX = JfxLoadOptionsDialog.class.getName();
+    protected static final String WINDOW_TITLE = PREFIX + ".windowTitle";
+    protected static final String CONTACTS_LABEL = PREFIX + ".contacts.label";
+    protected static final String CONTACTS_PROMPT = PREFIX + ".contacts.prompt";
+    protected static final String FROM_DATE_LABEL = PREFIX + ".fromDate.label";
+    protected static final String TO_DATE_LABEL = PREFIX + ".toDate.label";
+    protected static final String SKIP_ATTACHMENTS_LABEL = PREFIX + ".skipAttachments.label";
+
+    /** The application's bundle for labels. */
+    protected Bundle mBundle;
+
+    /** Contacts to load, separated by commas. */
+    protected TextField mTextContacts;
+    /** Date of the first loaded message. */
+    protected DatePicker mDatePickerFrom;
+    /** Date of the last loaded message. */
+    protected DatePicker mDatePickerTo;
+    /** Skip the images ? */
+    protected CheckBox mCheckBoxSkipAttachments;
+
+    /**
+     * Constructor.
+     *
+     * @param parent  The parent window.
+     * @param options The initial options.
+     * @param bundle  The resources bundle containing labels.
+     */
+    public JfxLoadOptionsDialog(Window parent, SmsBackupFileLoadOptions options, Bundle bundle) {
+	initOwner(parent);
+	mBundle = bundle;
+
+	setTitle(mBundle.getString(WINDOW_TITLE));
+
+	initComponents();
+	initLayout();
+	modelToView(options);
+
+	setResultConverter(buttonType -> buttonType == ButtonType.OK ? viewToModel() : null);
+    }
+
+    /**
+     * Builds JavaFX components.
+     */
+    private void initComponents() {
+	mTextContacts = new TextField();
+	mTextContacts.setPromptText(mBundle.getString(CONTACTS_PROMPT));
+	mDatePickerFrom = new DatePicker();
+	mDatePickerTo = new DatePicker();
+	mCheckBoxSkipAttachments = new CheckBox();
+    }
+
+    /**
+     * Set up the layout.
+     */
+    private void initLayout() {
+	int y = 0;
+
+	GridPane rootPane = new GridPane();
+	rootPane.setVgap(5);
+
+	// CONTACTS ----------------------------
+	Label labelContacts = new Label(mBundle.getString(CONTACTS_LABEL));
+	labelContacts.setTooltip(new Tooltip(mBundle.getString(CONTACTS_PROMPT)));
+	rootPane.add(labelContacts, 0, y);
+	rootPane.add(mTextContacts, 1, y);
+	y++;
+
+	// DATES ----------------------------
+	rootPane.add(new Label(mBundle.getString(FROM_DATE_LABEL)), 0, y);
+	rootPane.add(mDatePickerFrom, 1, y);
+	y++;
+	rootPane.add(new Label(mBundle.getString(TO_DATE_LABEL)), 0, y);
+	rootPane.add(mDatePickerTo, 1, y);
+	y++;
+
+	// SKIP ATTACHMENTS ----------------------------
+	rootPane.add(new Label(mBundle.getString(SKIP_ATTACHMENTS_LABEL)), 0, y);
+	rootPane.add(mCheckBoxSkipAttachments, 1, y);
+
+	rootPane.getColumnConstraints().add(new ColumnConstraints(200, 200, 250, Priority.ALWAYS, HPos.LEFT, true));
+	rootPane.getColumnConstraints().add(new ColumnConstraints(150, 250, 400, Priority.ALWAYS, HPos.LEFT, true));
+
+	getDialogPane().getButtonTypes().add(ButtonType.OK);
+	getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
+	getDialogPane().setContent(rootPane);
+    }
+
+    /**
+     * Fill components values with options.
+     * 
+     * @param options The options.
+     */
+    protected void modelToView(SmsBackupFileLoadOptions options) {
+	mTextContacts.setText(String.join(", ", options.getContacts()));
+	if (options.getFromDate() != Long.MIN_VALUE) {
+	    mDatePickerFrom.setValue(toLocalDate(options.getFromDate()));
+	}
+	if (options.getToDate() != Long.MAX_VALUE) {
+	    mDatePickerTo.setValue(toLocalDate(options.getToDate()));
+	}
+	mCheckBoxSkipAttachments.setSelected(options.isSkipAttachments());
+    }
+
+    /**
+     * @return New options, with the values of the components. Dates are whole
+     *         days, in the system time zone.
+     */
+    protected SmsBackupFileLoadOptions viewToModel() {
+	SmsBackupFileLoadOptions options = new SmsBackupFileLoadOptions();
+	options.setContacts(Arrays.asList(mTextContacts.getText().split(",")));
+	ZoneId zone = ZoneId.systemDefault();
+	LocalDate from = mDatePickerFrom.getValue();
+	LocalDate to = mDatePickerTo.getValue();
+	options.setDateRange(from != null ? from.atStartOfDay(zone).toInstant().toEpochMilli() : Long.MIN_VALUE,
+		to != null ? to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1 : Long.MAX_VALUE);
+	options.setSkipAttachments(mCheckBoxSkipAttachments.isSelected());
+	return options;
+    }
+
+    /**
+     * @param date A date, in milliseconds.
+     * @return The day of the date, in the system time zone.
+     */
+    private static LocalDate toLocalDate(long date) {
+	return Instant.ofEpochMilli(date).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
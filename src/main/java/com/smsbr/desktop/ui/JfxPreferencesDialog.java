@@ -63,6 +63,10 @@ public class JfxPreferencesDialog extends Dialog<ButtonType> {
     protected static final String PALETTE_LABEL = PREFIX + ".palette.label";
     protected static final String IMAGE_HEIGHT_LABEL = PREFIX + ".imageHeight.label";
     protected static final String EMOJI_SIZE_LABEL = PREFIX + ".emojiSize.label";
+    protected static final String EXPORT_ASSETS_LABEL = PREFIX + ".exportAssets.label";
+    protected static final String OFF_HEAP_STORAGE_LABEL = PREFIX + ".offHeapStorage.label";
+    protected static final String LOAD_ON_DEMAND_LABEL = PREFIX + ".loadOnDemand.label";
+    protected static final String FAST_PARSER_LABEL = PREFIX + ".fastParser.label";
 
     /** The user's preferences. */
     protected Preferences mPreferencesModel;
@@ -85,6 +89,14 @@ public class JfxPreferencesDialog extends Dialog<ButtonType> {
     protected JfxPaletteComboBox mComboBoxPalette;
     /** Load the last opened file ? */
     protected CheckBox mCheckBoxLoadLastFile;
+    /** Export images and emojis as separate files ? */
+    protected CheckBox mCheckBoxExportAssets;
+    /** Keep message bodies off-heap ? */
+    protected CheckBox mCheckBoxOffHeapStorage;
+    /** Load conversations only when they are displayed ? */
+    protected CheckBox mCheckBoxLoadOnDemand;
+    /** Parse backup files with the byte-level parser ? */
+    protected CheckBox mCheckBoxFastParser;
     /** Smooth emojis images */
     protected CheckBox mCheckBoxSmoothImages;
     /** Default language. */
@@ -129,6 +141,10 @@ public class JfxPreferencesDialog extends Dialog<ButtonType> {
 	mComboBoxPalette = new JfxPaletteComboBox(mBundle);
 	mComboBoxLanguage = new JfxLanguageComboBox();
 	mCheckBoxLoadLastFile = new CheckBox();
+	mCheckBoxExportAssets = new CheckBox();
+	mCheckBoxOffHeapStorage = new CheckBox();
+	mCheckBoxLoadOnDemand = new CheckBox();
+	mCheckBoxFastParser = new CheckBox();
 	mCheckBoxSmoothImages = new CheckBox();
 
 	mComboOrderBy = new ComboBox<>();
@@ -215,6 +231,34 @@ public class JfxPreferencesDialog extends Dialog<ButtonType> {
 	mRootPane.add(mComboBoxLanguage, 1, y);
 	y++;
 
+	// EXPORT ASSETS ----------------------------
+	Label labelExportAssets = new Label(mBundle.getString(EXPORT_ASSETS_LABEL));
+	labelExportAssets.setTooltip(new Tooltip(labelExportAssets.getText()));
+	mRootPane.add(labelExportAssets, 0, y);
+	mRootPane.add(mCheckBoxExportAssets, 1, y);
+	y++;
+
+	// OFF-HEAP STORAGE ----------------------------
+	Label labelOffHeapStorage = new Label(mBundle.getString(OFF_HEAP_STORAGE_LABEL));
+	labelOffHeapStorage.setTooltip(new Tooltip(labelOffHeapStorage.getText()));
+	mRootPane.add(labelOffHeapStorage, 0, y);
+	mRootPane.add(mCheckBoxOffHeapStorage, 1, y);
+	y++;
+
+	// LOAD ON DEMAND ----------------------------
+	Label labelLoadOnDemand = new Label(mBundle.getString(LOAD_ON_DEMAND_LABEL));
+	labelLoadOnDemand.setTooltip(new Tooltip(labelLoadOnDemand.getText()));
+	mRootPane.add(labelLoadOnDemand, 0, y);
+	mRootPane.add(mCheckBoxLoadOnDemand, 1, y);
+	y++;
+
+	// FAST PARSER ----------------------------
+	Label labelFastParser = new Label(mBundle.getString(FAST_PARSER_LABEL));
+	labelFastParser.setTooltip(new Tooltip(labelFastParser.getText()));
+	mRootPane.add(labelFastParser, 0, y);
+	mRootPane.add(mCheckBoxFastParser, 1, y);
+	y++;
+
 	// FREE SPACE ----------------------------
 	mRootPane.add(new Separator(), 0, y, 2, 1);
 
@@ -259,6 +303,10 @@ public class JfxPreferencesDialog extends Dialog<ButtonType> {
 	prefs.setPreferredPalette(Integer.parseInt(mComboBoxPalette.getSelectionModel().getSelectedItem()));
 	prefs.setPreferredLocale(new Locale(mComboBoxLanguage.getSelectionModel().getSelectedItem()));
 	prefs.setLoadLastFile(mCheckBoxLoadLastFile.isSelected());
+	prefs.setExportAssets(mCheckBoxExportAssets.isSelected());
+	prefs.setOffHeapStorage(mCheckBoxOffHeapStorage.isSelected());
+	prefs.setLoadOnDemand(mCheckBoxLoadOnDemand.isSelected());
+	prefs.setFastParser(mCheckBoxFastParser.isSelected());
     }
 
     /**
@@ -274,6 +322,10 @@ public class JfxPreferencesDialog extends Dialog<ButtonType> {
 	mComboBoxPalette.getSelectionModel().select(String.valueOf(mPreferencesModel.getPreferredPalette()));
 	mComboBoxLanguage.getSelectionModel().select(mPreferencesModel.getPreferredLocale().getLanguage());
 	mCheckBoxLoadLastFile.setSelected(mPreferencesModel.isLoadLastFile());
+	mCheckBoxExportAssets.setSelected(mPreferencesModel.isExportAssets());
+	mCheckBoxOffHeapStorage.setSelected(mPreferencesModel.isOffHeapStorage());
+	mCheckBoxLoadOnDemand.setSelected(mPreferencesModel.isLoadOnDemand());
+	mCheckBoxFastParser.setSelected(mPreferencesModel.isFastParser());
     }
 
     /**
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.smsbr.desktop.model.ImagePart;
+
+/**
+ * Asset resolver for exported HTML pages : images and emojis are written in a
+ * shared "assets" directory next to the pages, and referenced relatively.
+ *
+ * Each distinct image is written once, named after its content hash (see
+ * {@link ImagePart#getContentHash()}), and each used emoji is copied once.
+ * Assets already written by a previous export are kept. This class is
+ * thread-safe, so that conversations can be exported in parallel.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ExportAssetResolver implements IAssetResolver {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(ExportAssetResolver.class.getName());
+
+    /** Name of the assets directory, next to the exported pages. */
+    public static final String ASSETS_DIR = "assets";
+    /** Name of the images sub-directory. */
+    public static final String IMAGES_DIR = "images";
+    /** Name of the emojis sub-directory. */
+    public static final String EMOJIS_DIR = "emojis";
+
+    /**
+     * Writes the content of an asset.
+     */
+    @FunctionalInterface
+    protected static interface AssetWriter {
+	/**
+	 * @param toFile The file of the asset.
+	 * @throws IOException If the asset can't be written.
+	 */
+	void write(File toFile) throws IOException;
+    }
+
+    /** Emoji images missing from the resources, already logged. */
+    private static final Set<String> MISSING_EMOJIS = ConcurrentHashMap.newKeySet();
+
+    /** The assets directory. */
+    protected File mAssetsDir;
+    /**
+     * Assets already written (or being written), by relative path : the future
+     * completes when the file exists.
+     */
+    protected Map<String, CompletableFuture<Void>> mWrittenAssets;
+
+    /**
+     * Constructor.
+     *
+     * @param toDir Directory of the exported pages.
+     */
+    public ExportAssetResolver(File toDir) {
+	mAssetsDir = new File(toDir, ASSETS_DIR);
+	mWrittenAssets = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the path of an image, relative to the assets directory. It is named
+     * after the hash of its content, so that identical images share the same
+     * path.
+     *
+     * @param image The image.
+     * @return The relative path, e.g. "images/0f1e2d...c3.jpeg".
+     */
+    public static String getImagePath(ImagePart image) {
+	String mimeType = image.getMimeType();
+	String extension = mimeType.substring(mimeType.indexOf('/') + 1);
+	return IMAGES_DIR + "/" + image.getContentHash() + "." + extension;
+    }
+
+    /**
+     * Get the path of an emoji, relative to the assets directory.
+     *
+     * @param resourceName Name of the emoji image in the application's resources.
+     * @return The relative path, e.g. "emojis/0x1F600.png".
+     */
+    public static String getEmojiPath(String resourceName) {
+	return EMOJIS_DIR + "/" + FilenameUtils.getName(resourceName);
+    }
+
+    /**
+     * Tell whether the image of an emoji exists in the application's resources.
+     * Codes read from backup files don't always have one (accented letters,
+     * halves of surrogate pairs...) : each missing image is logged once.
+     *
+     * @param resourceName Name of the emoji image in the application's resources.
+     * @return <code>true</code> if the image exists.
+     */
+    static boolean isEmojiAvailable(String resourceName) {
+	if (ExportAssetResolver.class.getResource(resourceName) != null) {
+	    return true;
+	}
+	if (MISSING_EMOJIS.add(resourceName)) {
+	    logger.log(Level.WARNING, "No image for the emoji : " + resourceName);
+	}
+	return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeImageSource(ImagePart image, Writer out) throws IOException {
+	String path = getImagePath(image);
+	writeAsset(path, file -> ImageUtil.exportBase64ToFile(image.getBase64(), file));
+	out.write(ASSETS_DIR + "/" + path);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getEmojiSource(String resourceName) throws IOException {
+	if (!isEmojiAvailable(resourceName)) {
+	    return null;
+	}
+	String path = getEmojiPath(resourceName);
+	writeAsset(path, file -> {
+	    try (InputStream in = getClass().getResourceAsStream(resourceName)) {
+		if (in == null) {
+		    throw new FileNotFoundException(resourceName);
+		}
+		Files.copy(in, file.toPath());
+	    }
+	});
+	return ASSETS_DIR + "/" + path;
+    }
+
+    /**
+     * Write an asset, unless it has already been written. If another thread is
+     * writing the same asset, this method waits until it is written, so that the
+     * asset always exists when its path is used. If that other thread fails, the
+     * asset is written again.
+     *
+     * @param path   Path of the asset, relative to the assets directory.
+     * @param writer Writes the content of the asset.
+     * @throws IOException If the asset can't be written.
+     */
+    protected void writeAsset(String path, AssetWriter writer) throws IOException {
+	while (true) {
+	    CompletableFuture<Void> claim = new CompletableFuture<>();
+	    CompletableFuture<Void> existing = mWrittenAssets.putIfAbsent(path, claim);
+	    if (existing == null) {
+		try {
+		    writeAssetFile(path, writer);
+		} catch (IOException | RuntimeException e) {
+		    // Another thread will try again
+		    mWrittenAssets.remove(path, claim);
+		    claim.completeExceptionally(e);
+		    throw e;
+		}
+		claim.complete(null);
+		return;
+	    }
+	    try {
+		existing.get();
+		return;
+	    } catch (ExecutionException e) {
+		// Written by another thread, which failed : try again
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new InterruptedIOException(path);
+	    }
+	}
+    }
+
+    /**
+     * Write the file of an asset, unless it exists. The asset is written in a
+     * temporary file first, so that an interrupted export never leaves a
+     * truncated asset.
+     *
+     * @param path   Path of the asset, relative to the assets directory.
+     * @param writer Writes the content of the asset.
+     * @throws IOException If the asset can't be written.
+     */
+    protected void writeAssetFile(String path, AssetWriter writer) throws IOException {
+	File file = new File(mAssetsDir, path);
+	if (file.exists()) {
+	    return;
+	}
+	File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+	try {
+	    Files.createDirectories(file.getParentFile().toPath());
+	    Files.deleteIfExists(tmpFile.toPath());
+	    writer.write(tmpFile);
+	    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	} catch (IOException e) {
+	    Files.deleteIfExists(tmpFile.toPath());
+	    throw e;
+	}
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+
+import com.smsbr.desktop.model.ImagePart;
+import com.smsbr.desktop.model.Sms;
+
+/**
+ * Manifest of an export directory : for each exported file, it stores a hash of
+ * the exported messages and of the rendering options. A conversation whose
+ * hash has not changed since the previous export does not need to be exported
+ * again.
+ *
+ * The manifest is stored as a properties file in the export directory. Its
+ * methods can be called from several threads.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ExportManifest {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(ExportManifest.class.getName());
+
+    /** Name of the manifest file in the export directory. */
+    public static final String MANIFEST_FILE = ".smsbr-export.properties";
+
+    /** The manifest file. */
+    protected File mFile;
+    /** Hashes, by file name. */
+    protected Properties mHashes;
+
+    /**
+     * Constructor. Reads the manifest of a directory, if there is one. An
+     * unreadable manifest is ignored (everything will be exported again).
+     *
+     * @param dir The export directory.
+     */
+    public ExportManifest(File dir) {
+	mFile = new File(dir, MANIFEST_FILE);
+	mHashes = new Properties();
+	if (mFile.isFile()) {
+	    try (InputStream in = Files.newInputStream(mFile.toPath())) {
+		mHashes.load(in);
+	    } catch (IOException | IllegalArgumentException e) {
+		logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+		mHashes.clear();
+	    }
+	}
+    }
+
+    /**
+     * @param file An exported file.
+     * @param hash The hash of the content that should be exported in this file.
+     * @return <code>true</code> if the file exists and has been exported from
+     *         the same content.
+     */
+    public boolean isUpToDate(File file, String hash) {
+	return hash.equals(mHashes.getProperty(file.getName())) && file.isFile();
+    }
+
+    /**
+     * Record the hash of the content of an exported file.
+     *
+     * @param file The exported file.
+     * @param hash The hash of its content.
+     */
+    public void put(File file, String hash) {
+	mHashes.setProperty(file.getName(), hash);
+    }
+
+    /**
+     * Forget an exported file (e.g. it could not be exported).
+     *
+     * @param file The file.
+     */
+    public void remove(File file) {
+	mHashes.remove(file.getName());
+    }
+
+    /**
+     * Write the manifest in the export directory. The previous manifest is
+     * replaced only once the new one has been completely written.
+     *
+     * @throws IOException If the manifest can't be written.
+     */
+    public void save() throws IOException {
+	Path target = mFile.toPath();
+	Path tmp = Files.createTempFile(target.getParent(), MANIFEST_FILE, ".tmp");
+	try {
+	    try (OutputStream out = Files.newOutputStream(tmp)) {
+		mHashes.store(out, null);
+	    }
+	    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+	} finally {
+	    Files.deleteIfExists(tmp);
+	}
+    }
+
+    /**
+     * Compute the hash of an exported conversation. It depends on everything
+     * rendered in the HTML file : the messages (dates, authors, texts and
+     * images) and the rendering options.
+     *
+     * @param renderKey A string representing the rendering options.
+     * @param pages     The messages of the conversation, in display order.
+     * @return The SHA-256 hash, as an hexadecimal string.
+     */
+    public static String computeHash(String renderKey, Iterable<List<Sms>> pages) {
+	MessageDigest digest;
+	try {
+	    digest = MessageDigest.getInstance("SHA-256");
+	} catch (NoSuchAlgorithmException e) {
+	    // SHA-256 is supported by every Java platform
+	    throw new IllegalStateException(e);
+	}
+
+	try (DataOutputStream data = new DataOutputStream(
+		new BufferedOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest)))) {
+	    writeString(data, renderKey);
+	    for (List<Sms> page : pages) {
+		for (Sms sms : page) {
+		    data.writeLong(sms.getDate());
+		    data.writeBoolean(sms.isMe());
+		    data.writeBoolean(sms.isDraft());
+		    writeString(data, sms.getBody());
+		    data.writeInt(sms.getImages().size());
+		    for (ImagePart image : sms.getImages()) {
+			writeString(data, image.getMimeType());
+			writeString(data, image.getContentHash());
+		    }
+		}
+	    }
+	} catch (IOException e) {
+	    // Nothing is actually written
+	    throw new IllegalStateException(e);
+	}
+	return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Write a string (possibly <code>null</code>), preceded by its length, so
+     * that the concatenation of several strings is not ambiguous.
+     */
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+	if (s == null) {
+	    data.writeInt(-1);
+	} else {
+	    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+	    data.writeInt(bytes.length);
+	    data.write(bytes);
+	}
+    }
+}
@@ -15,16 +15,15 @@
  */
 package com.smsbr.desktop.util;
 
-import java.awt.Dimension;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.Date;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -37,6 +36,7 @@ import org.apache.commons.lang3.time.DateUtils;
 import com.smsbr.desktop.app.Bundle;
 import com.smsbr.desktop.app.Preferences;
 import com.smsbr.desktop.model.ImagePart;
+import com.smsbr.desktop.model.Order;
 import com.smsbr.desktop.model.Sms;
 import com.smsbr.desktop.ui.JfxDesktopAppMainPane;
 import com.smsbr.desktop.ui.Resources;
@@ -56,8 +56,74 @@ public class Htmlizer {
 
     /** */
     public static final String IMAGE_LINK_PREFIX = "data:image/png;base64, ";
+    /** Attribute of the images holding the hash of their content. */
+    public static final String IMAGE_CONTENT_ATTRIBUTE = "data-content";
     /** */
     protected static final String BALLOON_DATE_FORMAT = "dd MMM yyyy HH:mm";
+    /** Format of the day identifiers used to group messages in the document. */
+    protected static final String DAY_FORMAT = "yyyyMMdd";
+
+    /** Id of the HTML element that contains the messages of a conversation. */
+    public static final String CONVERSATION_ELEMENT_ID = "conversation";
+    /** Javascript function that inserts HTML messages at the top or at the bottom. */
+    public static final String JS_APPEND_MESSAGES = "appendMessages";
+    /** Javascript function that replaces the style sheets of the document. */
+    public static final String JS_APPLY_STYLES = "applyStyles";
+    /** Javascript function that changes the order of the messages in place. */
+    public static final String JS_SET_MESSAGE_ORDER = "setMessageOrder";
+
+    /** Id of the style element containing the color palette. */
+    protected static final String PALETTE_STYLE_ID = "palette";
+    /** Id of the style element containing the CSS variables from preferences. */
+    protected static final String VARIABLES_STYLE_ID = "variables";
+
+    /**
+     * Script of the conversation document. When messages are inserted at the top,
+     * the scroll position is kept relative to the bottom of the document so that
+     * the messages being read don't move.
+     */
+    protected static final String CONVERSATION_SCRIPT = "function " + JS_APPEND_MESSAGES + "(html, atTop) {"
+	    + "  var c = document.getElementById('" + CONVERSATION_ELEMENT_ID + "');"
+	    + "  if (atTop) {"
+	    + "    var h = document.documentElement.scrollHeight;"
+	    + "    c.insertAdjacentHTML('afterbegin', html);"
+	    + "    window.scrollBy(0, document.documentElement.scrollHeight - h);"
+	    + "  } else {"
+	    + "    c.insertAdjacentHTML('beforeend', html);"
+	    + "  }"
+	    + "}"
+	    + "function " + JS_SET_MESSAGE_ORDER + "(order) {"
+	    + "  var c = document.getElementById('" + CONVERSATION_ELEMENT_ID + "');"
+	    + "  if (c.getAttribute('data-order') === order) {"
+	    + "    return;"
+	    + "  }"
+	    + "  var messages = c.querySelectorAll('div.me, div.other');"
+	    + "  var dividers = c.querySelectorAll('div.divider');"
+	    + "  var fragment = document.createDocumentFragment();"
+	    + "  var day = null;"
+	    + "  var d = 0;"
+	    + "  for (var i = messages.length - 1; i >= 0; i--) {"
+	    + "    var m = messages[i];"
+	    + "    if (m.getAttribute('data-day') !== day && d < dividers.length) {"
+	    + "      day = m.getAttribute('data-day');"
+	    + "      dividers[d].textContent = m.getAttribute('data-divider');"
+	    + "      fragment.appendChild(dividers[d++]);"
+	    + "    }"
+	    + "    var p = m.nextElementSibling;"
+	    + "    fragment.appendChild(m);"
+	    + "    if (p !== null && p.tagName === 'P') {"
+	    + "      fragment.appendChild(p);"
+	    + "    }"
+	    + "  }"
+	    + "  c.textContent = '';"
+	    + "  c.appendChild(fragment);"
+	    + "  c.setAttribute('data-order', order);"
+	    + "  window.scrollTo(0, order === 'ASC' ? document.documentElement.scrollHeight : 0);"
+	    + "}"
+	    + "function " + JS_APPLY_STYLES + "(palette, variables) {"
+	    + "  document.getElementById('" + PALETTE_STYLE_ID + "').textContent = palette;"
+	    + "  document.getElementById('" + VARIABLES_STYLE_ID + "').textContent = variables;"
+	    + "}";
 
     // =====================================================================
 
@@ -65,6 +131,8 @@ public class Htmlizer {
     protected Preferences mPreferences;
     /** Application's bundle. */
     protected Bundle mBundle;
+    /** Resolves assets in-lined in the documents (default). */
+    protected IAssetResolver mInlineAssetResolver;
 
     /**
      * Constructor.
@@ -75,12 +143,13 @@ public class Htmlizer {
     public Htmlizer(Bundle bundle, Preferences preferences) {
 	mBundle = bundle;
 	mPreferences = preferences;
+	mInlineAssetResolver = new InlineAssetResolver();
     }
 
     /**
      * @return The CSS style sheet associated to the selected palette.
      */
-    protected String getStylesheetContent(int numPalette) {
+    public String getStylesheetContent(int numPalette) {
 	StringBuilder styles = new StringBuilder();
 	try (InputStream stream = Resources.class.getResourceAsStream("resources/styles" + numPalette + ".css");) {
 	    BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
@@ -93,13 +162,134 @@ public class Htmlizer {
 	return styles.toString();
     }
 
+    /**
+     * Returns the CSS variables holding the user's preferences (messages width,
+     * images height and emojis size). Elements refer to these variables instead
+     * of in-lined values, so that preferences can be changed without rendering
+     * the document again.
+     * 
+     * @return The CSS rule declaring the variables.
+     */
+    public String getStyleVariables() {
+	return String.format(":root { --message-width: %s; --image-height: %dpx; --emoji-size: %dpx; }",
+		mPreferences.getPreferredMessageWidth(), mPreferences.getPreferredImageHeight(),
+		mPreferences.getPreferredEmojiSize());
+    }
+
+    /**
+     * Returns a string representing the options that change the rendering of a
+     * conversation, apart from its messages : palette, order, language and
+     * preferences. Two exports with the same key and the same messages produce
+     * the same document.
+     * 
+     * @param numPalette Number of the color palette.
+     * @param order      Order of the messages.
+     * @return The rendering key.
+     */
+    public String getRenderKey(int numPalette, Order order) {
+	return new StringBuilder().append(numPalette).append('|').append(order).append('|')
+		.append(mBundle.getLocale()).append('|').append(getStyleVariables()).append('|')
+		.append(getStylesheetContent(numPalette)).toString();
+    }
+
     /**
      * @return HTML header of the document with an in-lined style sheet.
      */
     public String getHtmlDocumentHeader(int numPalette) {
 	return new StringBuilder("<html>")
 		.append("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\">")
-		.append("<head><style>").append(getStylesheetContent(numPalette)).append("</style></head>").toString();
+		.append("<head><style id=\"").append(PALETTE_STYLE_ID).append("\">")
+		.append(getStylesheetContent(numPalette)).append("</style>")
+		.append("<style id=\"").append(VARIABLES_STYLE_ID).append("\">").append(getStyleVariables())
+		.append("</style></head>").toString();
+    }
+
+    /**
+     * Returns an HTML document with an empty conversation, in which messages are
+     * then added with the {@link #JS_APPEND_MESSAGES} javascript function.
+     *
+     * The order of the messages can then be reversed in place with the
+     * {@link #JS_SET_MESSAGE_ORDER} javascript function.
+     *
+     * @param numPalette Number of the color palette.
+     * @param title      Title of the conversation.
+     * @param order      Order of the messages that will be added.
+     * @return The HTML document.
+     */
+    public String getHtmlConversationDocument(int numPalette, String title, Order order) {
+	return new StringBuilder(getHtmlDocumentHeader(numPalette)).append("<body>")
+		.append("<script>").append(CONVERSATION_SCRIPT).append("</script>")
+		.append("<h1>").append(title).append("</h1>")
+		.append("<div id=\"").append(CONVERSATION_ELEMENT_ID).append("\" data-order=\"").append(order)
+		.append("\" style=\"overflow: hidden;\"></div>")
+		.append("</body></html>").toString();
+    }
+
+    /**
+     * Writes a whole conversation as an HTML document, page by page, so that the
+     * conversation is never entirely converted in memory.
+     *
+     * @param out        Destination of the document (should be buffered).
+     * @param numPalette Number of the color palette.
+     * @param title      Title of the conversation.
+     * @param pages      The messages of the conversation, in display order.
+     * @throws IOException If the document can't be written.
+     */
+    public void writeHtmlConversation(Writer out, int numPalette, String title, Iterable<List<Sms>> pages)
+	    throws IOException {
+	writeHtmlConversation(out, numPalette, title, pages, mInlineAssetResolver);
+    }
+
+    /**
+     * Writes a whole conversation as an HTML document, page by page, with assets
+     * (images and emojis) resolved by an asset resolver.
+     *
+     * @param out        Destination of the document (should be buffered).
+     * @param numPalette Number of the color palette.
+     * @param title      Title of the conversation.
+     * @param pages      The messages of the conversation, in display order.
+     * @param assets     Resolves the images and emojis.
+     * @throws IOException If the document can't be written.
+     */
+    public void writeHtmlConversation(Writer out, int numPalette, String title, Iterable<List<Sms>> pages,
+	    IAssetResolver assets) throws IOException {
+	out.write(getHtmlDocumentHeader(numPalette));
+	out.write("<body><h1>");
+	out.write(title);
+	out.write("</h1>");
+
+	long previousDate = -1;
+	for (List<Sms> page : pages) {
+	    for (Sms sms : page) {
+		if (previousDate == -1 || isNewDay(previousDate, sms.getDate())) {
+		    out.write(getHtmlDateDivider(sms.getDate()));
+		}
+		writeHtmlSmsContent(sms, out, assets);
+		previousDate = sms.getDate();
+	    }
+	}
+	out.write("</body></html>");
+    }
+
+    /**
+     * Converts a range of messages of a conversation into HTML, with date
+     * dividers at the beginning of each day.
+     *
+     * @param messages The messages of the conversation, in display order.
+     * @param from     Index of the first message to convert (inclusive).
+     * @param to       Index of the last message to convert (exclusive).
+     * @return The HTML code of the messages.
+     */
+    public String getHtmlMessages(List<Sms> messages, int from, int to) {
+	StringBuilder sb = new StringBuilder();
+	for (int i = from; i < to; i++) {
+	    Sms sms = messages.get(i);
+	    if (i == 0 || isNewDay(messages.get(i - 1).getDate(), sms.getDate())) {
+		sb.append(getHtmlDateDivider(sms.getDate()));
+	    }
+	    sb.append(getHtmlSmsContent(sms));
+	}
+	return sb.toString();
     }
 
     /**
@@ -123,7 +313,7 @@ public class Htmlizer {
      */
     public String getHtmlDateDivider(long date) {
 	StringBuilder sb = new StringBuilder();
-	sb.append("<div style=\"");
+	sb.append("<div class=\"divider\" style=\"");
 	sb.append("display: block; ");
 	sb.append("font: 14px Impact; ");
 	sb.append("border-radius: 12px; ");
@@ -145,16 +335,53 @@ public class Htmlizer {
      * @return SMS content as HTML code (with CSS style).
      */
     public String getHtmlSmsContent(Sms sms) {
+	StringWriter out = new StringWriter();
+	try {
+	    writeHtmlSmsContent(sms, out);
+	} catch (IOException e) {
+	    // Never happens with a StringWriter
+	    throw new UncheckedIOException(e);
+	}
+	return out.toString();
+    }
+
+    /**
+     * Writes the equivalent HTML code (with CSS style) of a SMS. Base64 data of
+     * the images are written as is, without being copied.
+     *
+     * @param sms The message to convert into HTML.
+     * @param out Destination of the HTML code.
+     * @throws IOException If the HTML code can't be written.
+     */
+    public void writeHtmlSmsContent(Sms sms, Writer out) throws IOException {
+	writeHtmlSmsContent(sms, out, mInlineAssetResolver);
+    }
+
+    /**
+     * Writes the equivalent HTML code (with CSS style) of a SMS, with assets
+     * (images and emojis) resolved by an asset resolver.
+     *
+     * @param sms    The message to convert into HTML.
+     * @param out    Destination of the HTML code.
+     * @param assets Resolves the images and emojis.
+     * @throws IOException If the HTML code can't be written.
+     */
+    public void writeHtmlSmsContent(Sms sms, Writer out, IAssetResolver assets) throws IOException {
 	StringBuilder sb = new StringBuilder();
 
 	String meAlign = "right";
 	String otherAlign = "left";
 
-	sb.append("<div class=\"").append(sms.isMe() ? "me" : "other").append("\" style=\"");
+	// The day and the text of the day divider are kept as attributes, so that
+	// dividers can be moved when the order of the messages is reversed.
+	sb.append("<div class=\"").append(sms.isMe() ? "me" : "other").append("\"");
+	sb.append(" data-day=\"").append(DateFormatUtils.format(sms.getDate(), DAY_FORMAT)).append("\"");
+	sb.append(" data-divider=\"").append(DateFormatUtils.format(sms.getDate(), BALLOON_DATE_FORMAT)).append("\"");
+	sb.append(" style=\"");
 	sb.append("position: relative;");
 	sb.append("float: ").append(sms.isMe() ? meAlign : otherAlign).append(";");
 	sb.append("clear:").append(sms.isMe() ? meAlign : otherAlign).append(";");
-	sb.append("width: ").append(mPreferences.getPreferredMessageWidth()).append(";");
+	sb.append("width: var(--message-width);");
 	sb.append("border-radius: 10px;");
 	sb.append("padding: 10px;");
 	sb.append("margin: 10px;");
@@ -165,12 +392,18 @@ public class Htmlizer {
 	    List<ImagePart> images = sms.getImages();
 	    sb.append("<div style=\"text-align: ").append(sms.isMe() ? meAlign : otherAlign).append(";\">");
 	    for (ImagePart image : images) {
-		Dimension dim = ImageUtil.normalizeImageDimensions(image, mPreferences.getPreferredImageHeight());
-
+		// Images are never higher than the preferred height, and keep their ratio
 		sb.append("<a href=\"#\" onclick=\"alert('image:").append(image.getUniqueId()).append("');\">");
-		sb.append("<img id=\"").append(image.getUniqueId()).append("\" width=\"").append(dim.width)
-			.append("px\" height=\"").append(dim.height).append("px\" src=\"").append(IMAGE_LINK_PREFIX)
-			.append(image.getBase64()).append("\" />&nbsp;");
+		sb.append("<img id=\"").append(image.getUniqueId()).append("\"");
+		sb.append(" ").append(IMAGE_CONTENT_ATTRIBUTE).append("=\"").append(image.getContentHash()).append("\"");
+		sb.append(" style=\"");
+		if (image.getHeight() > 0) {
+		    sb.append("height: ").append(image.getHeight()).append("px; ");
+		}
+		sb.append("max-height: var(--image-height); width: auto;\" src=\"");
+		writeHtmlLines(sb, out);
+		assets.writeImageSource(image, out);
+		sb.append("\" />&nbsp;");
 		sb.append("</a>");
 	    }
 	    sb.append("</div>");
@@ -187,7 +420,8 @@ public class Htmlizer {
 	Pattern patternEmojis = Pattern.compile("emoji\\:\\/\\/([0-9]*);");
 	Matcher matcherEmojis = patternEmojis.matcher(sms.getBody());
 	while (matcherEmojis.find()) {
-	    matcherEmojis.appendReplacement(body, getHtmlElementForHtmlEmojiCode(matcherEmojis.group(1)));
+	    matcherEmojis.appendReplacement(body,
+		    Matcher.quoteReplacement(getHtmlElementForHtmlEmojiCode(matcherEmojis.group(1), assets)));
 	}
 	matcherEmojis.appendTail(body);
 
@@ -214,7 +448,20 @@ public class Htmlizer {
 	sb.append("</span>");
 	sb.append("</div><p>");
 
-	return sb.toString().replace("\n", "<br>");
+	writeHtmlLines(sb, out);
+    }
+
+    /**
+     * Writes HTML code with line breaks replaced by "&lt;br&gt;" elements, then
+     * clears the buffer.
+     *
+     * @param sb  The HTML code.
+     * @param out Destination of the HTML code.
+     * @throws IOException If the HTML code can't be written.
+     */
+    protected void writeHtmlLines(StringBuilder sb, Writer out) throws IOException {
+	out.write(sb.toString().replace("\n", "<br>"));
+	sb.setLength(0);
     }
 
     /**
@@ -233,9 +480,29 @@ public class Htmlizer {
      * the JavaFX WebView component does not display emojis.
      *
      * @param emojiCode number of the emoji native code (without '&#' and ';').
-     * @return An &lt;img&gt; element that replaces the native HTML emoji.
+     * @return An &lt;img&gt; element that replaces the native HTML emoji, or the
+     *         character reference if there is no image for it.
      */
     public String getHtmlElementForHtmlEmojiCode(String emojiCode) {
+	try {
+	    return getHtmlElementForHtmlEmojiCode(emojiCode, mInlineAssetResolver);
+	} catch (IOException e) {
+	    // Never happens with in-lined assets
+	    throw new UncheckedIOException(e);
+	}
+    }
+
+    /**
+     * Returns an HTML "&lt;img&gt;" element replacing the native HTML code of an
+     * emoji, with the emoji image resolved by an asset resolver.
+     *
+     * @param emojiCode number of the emoji native code (without '&#' and ';').
+     * @param assets    Resolves the emoji image.
+     * @return An &lt;img&gt; element that replaces the native HTML emoji, or the
+     *         character reference if there is no image for it.
+     * @throws IOException If the emoji image can't be resolved.
+     */
+    public String getHtmlElementForHtmlEmojiCode(String emojiCode, IAssetResolver assets) throws IOException {
 
 	String unicode = EmojiParser.parseToUnicode(String.format("&#%s;", emojiCode));
 	String hexa = StringUtils
@@ -244,18 +511,13 @@ public class Htmlizer {
 	hexa = StringUtils.replaceChars(hexa, "&#X;", "");
 
 	String resName = String.format("/emojis/0x%s.png", hexa);
-	URI uri = null;
-	try {
-	    URL resource = getClass().getResource(resName);
-	    if (resource != null) {
-		uri = resource.toURI();
-	    }
-	} catch (URISyntaxException e) {
-	    logger.log(Level.WARNING, "Resource not found: " + resName, e);
+	String source = assets.getEmojiSource(resName);
+	if (source == null) {
+	    // Not an emoji, or no image for it (e.g. an accented letter) : the character
+	    // reference is kept
+	    return String.format("&#%s;", emojiCode);
 	}
-
-	return String.format(
-		"<img style=\"vertical-align: middle; width: %dpx; height: %dpx; display: inline; \" src=\"%s\" />",
-		mPreferences.getPreferredEmojiSize(), mPreferences.getPreferredEmojiSize(), uri);
+	return String.format("<img style=\"vertical-align: middle; width: var(--emoji-size); "
+		+ "height: var(--emoji-size); display: inline; \" src=\"%s\" />", source);
     }
 }
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.smsbr.desktop.model.ImagePart;
+
+/**
+ * Resolves the location of the assets (images and emojis) referenced by the
+ * HTML documents produced by the {@link Htmlizer}.
+ *
+ * @author Alexandre DERMONT
+ */
+public interface IAssetResolver {
+
+    /**
+     * Writes the value of the "src" attribute of an image.
+     *
+     * @param image The image.
+     * @param out   Destination of the attribute value.
+     * @throws IOException If the image can't be resolved or written.
+     */
+    void writeImageSource(ImagePart image, Writer out) throws IOException;
+
+    /**
+     * Get the value of the "src" attribute of an emoji.
+     *
+     * @param resourceName Name of the emoji image in the application's resources
+     *                     (e.g. "/emojis/0x1F600.png").
+     * @return The value of the "src" attribute, or <code>null</code> if there is
+     *         no image for this emoji.
+     * @throws IOException If the emoji can't be resolved.
+     */
+    String getEmojiSource(String resourceName) throws IOException;
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.smsbr.desktop.model.ImagePart;
+
+import javafx.scene.image.Image;
+
+/**
+ * Application-wide memory cache of decoded images, keyed by the hash of their
+ * content (see {@link ImagePart#getContentHash()}) : identical images are
+ * decoded once.
+ *
+ * The cache is bounded by the estimated size of the decoded pixels (width x
+ * height x 4 bytes) ; the least recently used images are evicted first. Hits,
+ * misses and evictions are counted so that the cache efficiency can be
+ * monitored.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ImageCache {
+
+    /** Default maximum size of the decoded images : 256 MB. */
+    public static final long DEFAULT_MAX_SIZE_IN_BYTES = 256L * 1024 * 1024;
+
+    /** The application-wide cache. */
+    private static final ImageCache INSTANCE = new ImageCache(DEFAULT_MAX_SIZE_IN_BYTES);
+
+    /**
+     * Decodes an image when it is not in the cache.
+     */
+    @FunctionalInterface
+    public static interface ImageLoader {
+	/**
+	 * @return The decoded image.
+	 * @throws IOException If the image can't be decoded.
+	 */
+	Image load() throws IOException;
+    }
+
+    /**
+     * @return The application-wide cache.
+     */
+    public static ImageCache getInstance() {
+	return INSTANCE;
+    }
+
+    /**
+     * Estimate the memory used by the pixels of a decoded image.
+     *
+     * @param image The image.
+     * @return The estimated size in bytes (4 bytes per pixel).
+     */
+    public static long getEstimatedSizeInBytes(Image image) {
+	return (long) image.getWidth() * (long) image.getHeight() * 4L;
+    }
+
+    // -------------------------------------------------------------------
+
+    /** Decoded images, from the least recently used to the most recent. */
+    protected Map<String, Image> mImages;
+    /** Maximum size of the cache, in bytes. */
+    protected long mMaxSizeInBytes;
+    /** Current size of the cache, in bytes. */
+    protected long mSizeInBytes;
+    /** Number of successful lookups. */
+    protected long mHitCount;
+    /** Number of failed lookups. */
+    protected long mMissCount;
+    /** Number of evicted images. */
+    protected long mEvictionCount;
+
+    /**
+     * Constructor.
+     *
+     * @param maxSizeInBytes Maximum size of the cache, in bytes.
+     */
+    public ImageCache(long maxSizeInBytes) {
+	mMaxSizeInBytes = maxSizeInBytes;
+	mImages = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get a decoded image from the cache. If the image is not in the cache, it is
+     * decoded with the <code>loader</code> and then stored in the cache.
+     *
+     * @param imageId Hash of the content of the image.
+     * @param loader  Decodes the image when it is not in the cache.
+     * @return The decoded image.
+     * @throws IOException If the image can't be decoded.
+     */
+    public Image get(String imageId, ImageLoader loader) throws IOException {
+	synchronized (this) {
+	    Image image = mImages.get(imageId);
+	    if (image != null) {
+		mHitCount++;
+		return image;
+	    }
+	    mMissCount++;
+	}
+
+	// Decoding is done outside of the lock
+	Image image = loader.load();
+	if (image != null && !image.isError()) {
+	    put(imageId, image);
+	}
+	return image;
+    }
+
+    /**
+     * Store a decoded image in the cache. Images larger than the cache itself are
+     * ignored.
+     *
+     * @param imageId Hash of the content of the image.
+     * @param image   The decoded image.
+     */
+    public synchronized void put(String imageId, Image image) {
+	long size = getEstimatedSizeInBytes(image);
+	if (size > mMaxSizeInBytes) {
+	    return;
+	}
+	Image previous = mImages.put(imageId, image);
+	if (previous != null) {
+	    mSizeInBytes -= getEstimatedSizeInBytes(previous);
+	}
+	mSizeInBytes += size;
+
+	Iterator<Image> it = mImages.values().iterator();
+	while (mSizeInBytes > mMaxSizeInBytes && it.hasNext()) {
+	    mSizeInBytes -= getEstimatedSizeInBytes(it.next());
+	    it.remove();
+	    mEvictionCount++;
+	}
+    }
+
+    /**
+     * Remove all the images (metrics are left unchanged).
+     */
+    public synchronized void clear() {
+	mImages.clear();
+	mSizeInBytes = 0;
+    }
+
+    /**
+     * @return The estimated size of the cached images, in bytes.
+     */
+    public synchronized long getSizeInBytes() {
+	return mSizeInBytes;
+    }
+
+    /**
+     * @return The maximum size of the cache, in bytes.
+     */
+    public long getMaxSizeInBytes() {
+	return mMaxSizeInBytes;
+    }
+
+    /**
+     * @return The number of images currently in the cache.
+     */
+    public synchronized int getImageCount() {
+	return mImages.size();
+    }
+
+    /**
+     * @return The number of successful lookups.
+     */
+    public synchronized long getHitCount() {
+	return mHitCount;
+    }
+
+    /**
+     * @return The number of failed lookups.
+     */
+    public synchronized long getMissCount() {
+	return mMissCount;
+    }
+
+    /**
+     * @return The number of evicted images.
+     */
+    public synchronized long getEvictionCount() {
+	return mEvictionCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+	return String.format("ImageCache[images=%d, size=%d/%d bytes, hits=%d, misses=%d, evictions=%d]",
+		mImages.size(), mSizeInBytes, mMaxSizeInBytes, mHitCount, mMissCount, mEvictionCount);
+    }
+}
@@ -21,14 +21,22 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Base64;
+import java.util.Iterator;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.input.CharSequenceInputStream;
 
 import com.smsbr.desktop.model.ImagePart;
 
@@ -42,6 +50,9 @@ import javafx.scene.image.Image;
  */
 public class ImageUtil {
 
+    /** Size of the buffers used to decode base64 images. */
+    public static final int DECODE_BUFFER_SIZE = 64 * 1024;
+
     private ImageUtil() {
 	// No constructor for static classes
     }
@@ -55,10 +66,74 @@ public class ImageUtil {
      * @throws IOException
      */
     public static void exportBase64ToFile(String base64, File toFile) throws IOException {
+	streamBase64ToFile(base64, toFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+		StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Open a stream decoding a base64 string on the fly : the decoded content is
+     * never entirely copied in memory.
+     * 
+     * @param base64 The base 64 content.
+     * @return The decoded content.
+     */
+    public static InputStream newBase64InputStream(CharSequence base64) {
+	return Base64.getDecoder()
+		.wrap(new CharSequenceInputStream(base64, StandardCharsets.ISO_8859_1, DECODE_BUFFER_SIZE));
+    }
 
-	byte[] decodedImg = Base64.getDecoder().decode(base64.getBytes(StandardCharsets.UTF_8));
-	Path destinationFile = toFile.toPath();
-	Files.write(destinationFile, decodedImg);
+    /**
+     * Decode the content of a base64 string into a file. The string is decoded
+     * on the fly : the decoded image is never entirely copied in memory.
+     * 
+     * @param base64  The base 64 image to decode.
+     * @param toFile  The destination file.
+     * @param options Options specifying how the file is opened (e.g.
+     *                {@link StandardOpenOption#CREATE_NEW} to never overwrite an
+     *                existing file).
+     * @throws IOException If the string is not valid base64, or if the file
+     *                     can't be written.
+     */
+    public static void streamBase64ToFile(String base64, Path toFile, OpenOption... options) throws IOException {
+	try (InputStream in = newBase64InputStream(base64);
+		FileChannel channel = FileChannel.open(toFile, options)) {
+	    ByteBuffer buffer = ByteBuffer.allocate(DECODE_BUFFER_SIZE);
+	    int count;
+	    while ((count = in.read(buffer.array())) >= 0) {
+		buffer.limit(count);
+		while (buffer.hasRemaining()) {
+		    channel.write(buffer);
+		}
+		buffer.clear();
+	    }
+	}
+    }
+
+    /**
+     * Read the dimensions of a base64 image. Only the header of the image is
+     * decoded : its pixels are never loaded in memory.
+     * 
+     * @param base64 The image as a Base64 string.
+     * @return The dimensions of the image, or <code>null</code> if its format is
+     *         not supported.
+     * @throws IOException If the string is not valid base64, or if the header
+     *                     of the image can't be read.
+     */
+    public static Dimension readBase64Dimensions(String base64) throws IOException {
+	try (InputStream in = newBase64InputStream(base64);
+		ImageInputStream iis = new MemoryCacheImageInputStream(in)) {
+	    Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+	    if (!readers.hasNext()) {
+		return null;
+	    }
+	    ImageReader reader = readers.next();
+	    try {
+		reader.setInput(iis, true, true);
+		return new Dimension(reader.getWidth(0), reader.getHeight(0));
+	    } finally {
+		reader.dispose();
+	    }
+	}
     }
 
     /**
@@ -77,6 +152,24 @@ public class ImageUtil {
 	}
     }
 
+    /**
+     * Decodes a base64 image and scales it down while decoding, so that the full
+     * size image is never loaded in memory.
+     * 
+     * @param base64          The image as a Base64 string.
+     * @param requestedWidth  Width of the bounding box of the decoded image.
+     * @param requestedHeight Height of the bounding box of the decoded image.
+     * @return a JavaFX {@link Image}, with preserved ratio.
+     * @throws IOException In case of I/O error (invalid bytes...etc).
+     */
+    public static Image decodeBase64Mime(String base64, double requestedWidth, double requestedHeight)
+	    throws IOException {
+	try (ByteArrayInputStream bais = new ByteArrayInputStream(base64.getBytes());) {
+	    InputStream in = Base64.getDecoder().wrap(bais);
+	    return new Image(in, requestedWidth, requestedHeight, true, true);
+	}
+    }
+
     /**
      * Write an image on disk.
      * 
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import com.smsbr.desktop.model.ImagePart;
+
+/**
+ * Default asset resolver : images are in-lined as base64 data, and emojis are
+ * referenced from the application's resources. This is what the conversation
+ * WebView displays.
+ *
+ * @author Alexandre DERMONT
+ */
+public class InlineAssetResolver implements IAssetResolver {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(InlineAssetResolver.class.getName());
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeImageSource(ImagePart image, Writer out) throws IOException {
+	out.write(Htmlizer.IMAGE_LINK_PREFIX);
+	out.write(image.getBase64());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getEmojiSource(String resourceName) {
+	URI uri = null;
+	try {
+	    URL resource = getClass().getResource(resourceName);
+	    if (resource != null) {
+		uri = resource.toURI();
+	    }
+	} catch (URISyntaxException e) {
+	    logger.log(Level.WARNING, "Resource not found: " + resourceName, e);
+	}
+	return uri != null ? uri.toString() : null;
+    }
+}
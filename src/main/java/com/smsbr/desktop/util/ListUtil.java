@@ -0,0 +1,124 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility class for lists.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ListUtil {
+
+    /**
+     * Private constructor (utility class).
+     */
+    private ListUtil() {
+    }
+
+    /**
+     * Update a list so that it becomes equal to another one, with as few removals
+     * and insertions as possible : elements missing from <code>source</code> are
+     * removed, the longest sequence of elements already in the right order is
+     * kept, other elements are moved (removed then inserted) and new elements are
+     * inserted. This is useful for observable lists, whose listeners are notified
+     * of each modification.
+     *
+     * Elements of both lists must be unique.
+     *
+     * @param <T>    Type of the elements.
+     * @param target The list to update.
+     * @param source The expected content of <code>target</code>.
+     * @return The number of removals and insertions done.
+     */
+    public static <T> int applyDiff(List<T> target, List<T> source) {
+	Map<T, Integer> sourceIndexes = new HashMap<>(source.size() * 2);
+	for (int i = 0; i < source.size(); i++) {
+	    sourceIndexes.put(source.get(i), i);
+	}
+
+	// Positions in 'source' of the elements of 'target' (-1 when removed)
+	int[] positions = new int[target.size()];
+	for (int i = 0; i < positions.length; i++) {
+	    Integer index = sourceIndexes.get(target.get(i));
+	    positions[i] = index != null ? index : -1;
+	}
+	boolean[] isKept = longestIncreasingSubsequence(positions);
+
+	int operations = 0;
+	for (int i = positions.length - 1; i >= 0; i--) {
+	    if (!isKept[i]) {
+		target.remove(i);
+		operations++;
+	    }
+	}
+
+	// 'target' is now a subsequence of 'source'
+	for (int i = 0; i < source.size(); i++) {
+	    T element = source.get(i);
+	    if (i >= target.size() || !element.equals(target.get(i))) {
+		target.add(i, element);
+		operations++;
+	    }
+	}
+	return operations;
+    }
+
+    /**
+     * Find a longest strictly increasing subsequence of non-negative values (negative
+     * values are ignored), in O(n log n).
+     *
+     * @param values The values.
+     * @return For each value, <code>true</code> if it belongs to the subsequence.
+     */
+    protected static boolean[] longestIncreasingSubsequence(int[] values) {
+	// tails[k] : index of the smallest tail of the increasing subsequences of
+	// length k + 1
+	int[] tails = new int[values.length];
+	int[] previous = new int[values.length];
+	int length = 0;
+
+	for (int i = 0; i < values.length; i++) {
+	    if (values[i] < 0) {
+		continue;
+	    }
+	    int low = 0;
+	    int high = length;
+	    while (low < high) {
+		int middle = (low + high) >>> 1;
+		if (values[tails[middle]] < values[i]) {
+		    low = middle + 1;
+		} else {
+		    high = middle;
+		}
+	    }
+	    previous[i] = low > 0 ? tails[low - 1] : -1;
+	    tails[low] = i;
+	    if (low == length) {
+		length++;
+	    }
+	}
+
+	boolean[] result = new boolean[values.length];
+	for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+	    result[i] = true;
+	}
+	return result;
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.smsbr.desktop.model.ImagePart;
+
+import javafx.scene.image.Image;
+
+/**
+ * Disk-backed cache of small pre-scaled thumbnails, so that images of
+ * previously viewed conversations don't have to be decoded again from base64
+ * on the next launch.
+ *
+ * Entries are keyed by the content hash of the images (see
+ * {@link ImagePart#getContentHash()}). When the total size of the cache exceeds
+ * its maximum size, the least recently used thumbnails are deleted.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ThumbnailCache {
+
+    /** Private logger for this class. */
+    private static Logger logger = System.getLogger(ThumbnailCache.class.getName());
+
+    /** Default maximum size of the cache on disk : 64 MB. */
+    public static final long DEFAULT_MAX_SIZE_IN_BYTES = 64L * 1024 * 1024;
+
+    /** Format (and file extension) of the thumbnails written on disk. */
+    protected static final String THUMBNAIL_FORMAT = "png";
+
+    /** Directory where thumbnails are stored. */
+    protected File mDirectory;
+    /** Size of the bounding box of the thumbnails. */
+    protected int mThumbnailSize;
+    /** Maximum size of the cache on disk, in bytes. */
+    protected long mMaxSizeInBytes;
+    /** Current size of the cache on disk, in bytes. */
+    protected long mSizeInBytes;
+    /** Size of each entry, from the least recently used to the most recent. */
+    protected Map<String, Long> mEntries;
+
+    /**
+     * Constructor. The directory is scanned for existing thumbnails.
+     *
+     * @param directory      Directory where thumbnails are stored.
+     * @param thumbnailSize  Size of the bounding box of the thumbnails.
+     * @param maxSizeInBytes Maximum size of the cache on disk, in bytes.
+     */
+    public ThumbnailCache(File directory, int thumbnailSize, long maxSizeInBytes) {
+	mDirectory = directory;
+	mThumbnailSize = thumbnailSize;
+	mMaxSizeInBytes = maxSizeInBytes;
+	mEntries = new LinkedHashMap<>(16, 0.75f, true);
+	loadIndex();
+    }
+
+    /**
+     * Scan the cache directory to rebuild the index of entries. The last
+     * modification date of the files gives the LRU order.
+     */
+    protected synchronized void loadIndex() {
+	if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+	    logger.log(Level.WARNING, () -> String.format("Unable to create directory '%s'", mDirectory));
+	    return;
+	}
+	File[] files = mDirectory.listFiles((dir, name) -> name.endsWith("." + THUMBNAIL_FORMAT));
+	if (files != null) {
+	    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+	    for (File file : files) {
+		mEntries.put(FilenameUtils.getBaseName(file.getName()), file.length());
+		mSizeInBytes += file.length();
+	    }
+	}
+	evictEntries();
+    }
+
+    /**
+     * Get the thumbnail of an image, from the cache if it exists, or by decoding
+     * the image and storing its thumbnail in the cache.
+     *
+     * @param image The image.
+     * @return The thumbnail of the image.
+     * @throws IOException If the image can't be decoded.
+     */
+    public Image getThumbnail(ImagePart image) throws IOException {
+	String key = image.getContentHash();
+	File file = getFile(key);
+
+	if (touchEntry(key)) {
+	    Image thumbnail = new Image(file.toURI().toString());
+	    if (!thumbnail.isError()) {
+		return thumbnail;
+	    }
+	    // Corrupted or deleted file
+	    removeEntry(key);
+	}
+
+	Image thumbnail = ImageUtil.decodeBase64Mime(image.getBase64(), mThumbnailSize, mThumbnailSize);
+	try {
+	    ImageUtil.writeImage(thumbnail, file);
+	    addEntry(key, file.length());
+	} catch (IOException e) {
+	    logger.log(Level.WARNING, "Unable to write thumbnail " + file, e);
+	}
+	return thumbnail;
+    }
+
+    /**
+     * Mark an entry as the most recently used one.
+     *
+     * @param key Key of the entry.
+     * @return <code>true</code> if the entry exists.
+     */
+    protected synchronized boolean touchEntry(String key) {
+	if (mEntries.get(key) != null) {
+	    getFile(key).setLastModified(System.currentTimeMillis());
+	    return true;
+	}
+	return false;
+    }
+
+    /**
+     * Add a new entry in the index and evict the oldest entries if the cache is
+     * full.
+     *
+     * @param key         Key of the entry.
+     * @param sizeInBytes Size of the entry's file.
+     */
+    protected synchronized void addEntry(String key, long sizeInBytes) {
+	Long previousSize = mEntries.put(key, sizeInBytes);
+	mSizeInBytes += sizeInBytes - (previousSize != null ? previousSize : 0L);
+	evictEntries();
+    }
+
+    /**
+     * Remove an entry from the index and delete its file.
+     *
+     * @param key Key of the entry.
+     */
+    protected synchronized void removeEntry(String key) {
+	Long size = mEntries.remove(key);
+	if (size != null) {
+	    mSizeInBytes -= size;
+	}
+	deleteFile(key);
+    }
+
+    /**
+     * Delete the least recently used entries until the cache size is under its
+     * maximum.
+     */
+    protected synchronized void evictEntries() {
+	Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+	while (mSizeInBytes > mMaxSizeInBytes && it.hasNext()) {
+	    Map.Entry<String, Long> eldest = it.next();
+	    mSizeInBytes -= eldest.getValue();
+	    it.remove();
+	    deleteFile(eldest.getKey());
+	}
+    }
+
+    /**
+     * Delete the file of an entry.
+     *
+     * @param key Key of the entry.
+     */
+    protected void deleteFile(String key) {
+	File file = getFile(key);
+	if (file.exists() && !file.delete()) {
+	    logger.log(Level.WARNING, () -> String.format("Unable to delete thumbnail '%s'", file));
+	}
+    }
+
+    /**
+     * @param key Key of an entry.
+     * @return The file of this entry.
+     */
+    protected File getFile(String key) {
+	return new File(mDirectory, key + "." + THUMBNAIL_FORMAT);
+    }
+
+    /**
+     * @return The current size of the cache on disk, in bytes.
+     */
+    public synchronized long getSizeInBytes() {
+	return mSizeInBytes;
+    }
+}
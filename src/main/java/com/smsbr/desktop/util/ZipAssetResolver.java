@@ -0,0 +1,174 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.smsbr.desktop.model.ImagePart;
+
+/**
+ * Asset resolver for pages exported in a ZIP archive : images and emojis are
+ * stored once in the "assets" directory of the archive, with the same layout
+ * as {@link ExportAssetResolver}.
+ *
+ * A ZIP archive is written one entry at a time : assets referenced while a
+ * page is written are only recorded, then written by
+ * {@link #writePendingAssets()} once the entry of the page has been closed.
+ *
+ * Images and emojis are already compressed (JPEG, PNG, GIF...) : they are
+ * stored without compression, which saves CPU without making the archive
+ * bigger.
+ *
+ * @author Alexandre DERMONT
+ */
+public class ZipAssetResolver implements IAssetResolver {
+
+    /**
+     * Opens the content of an entry. It is read twice : once for its size and
+     * CRC, once to write it.
+     */
+    @FunctionalInterface
+    public static interface EntryContent {
+	/**
+	 * @return A new stream on the content of the entry.
+	 * @throws IOException If the content can't be read.
+	 */
+	InputStream open() throws IOException;
+    }
+
+    /** The archive. */
+    protected ZipOutputStream mZip;
+    /** Entries of the assets already written or pending. */
+    protected Set<String> mAssetEntries;
+    /** Images to write, by entry name. */
+    protected Map<String, ImagePart> mPendingImages;
+    /** Emojis to write (resource names), by entry name. */
+    protected Map<String, String> mPendingEmojis;
+
+    /**
+     * Constructor.
+     *
+     * @param zip The archive.
+     */
+    public ZipAssetResolver(ZipOutputStream zip) {
+	mZip = zip;
+	mAssetEntries = new HashSet<>();
+	mPendingImages = new LinkedHashMap<>();
+	mPendingEmojis = new LinkedHashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeImageSource(ImagePart image, Writer out) throws IOException {
+	String entryName = ExportAssetResolver.ASSETS_DIR + "/" + ExportAssetResolver.getImagePath(image);
+	if (mAssetEntries.add(entryName)) {
+	    mPendingImages.put(entryName, image);
+	}
+	out.write(entryName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getEmojiSource(String resourceName) throws IOException {
+	if (!ExportAssetResolver.isEmojiAvailable(resourceName)) {
+	    // Never pending, so that it can't fail the whole archive
+	    return null;
+	}
+	String entryName = ExportAssetResolver.ASSETS_DIR + "/" + ExportAssetResolver.getEmojiPath(resourceName);
+	if (mAssetEntries.add(entryName)) {
+	    mPendingEmojis.put(entryName, resourceName);
+	}
+	return entryName;
+    }
+
+    /**
+     * Write the assets referenced since the last call in the archive. No entry
+     * must be open.
+     *
+     * @throws IOException If the assets can't be written.
+     */
+    public void writePendingAssets() throws IOException {
+	for (Map.Entry<String, ImagePart> image : mPendingImages.entrySet()) {
+	    // Images are decoded on the fly : they may be huge (see ImagePayload)
+	    String base64 = image.getValue().getBase64();
+	    writeStoredEntry(mZip, image.getKey(), () -> ImageUtil.newBase64InputStream(base64));
+	}
+	mPendingImages.clear();
+
+	for (Map.Entry<String, String> emoji : mPendingEmojis.entrySet()) {
+	    writeStoredEntry(mZip, emoji.getKey(), () -> {
+		InputStream in = getClass().getResourceAsStream(emoji.getValue());
+		if (in == null) {
+		    throw new FileNotFoundException(emoji.getValue());
+		}
+		return in;
+	    });
+	}
+	mPendingEmojis.clear();
+    }
+
+    /**
+     * Write an uncompressed entry. Its size and CRC are computed beforehand, as
+     * required by the ZIP format for stored entries : the content is read twice,
+     * and never entirely loaded in memory.
+     *
+     * @param zip       The archive.
+     * @param entryName Name of the entry.
+     * @param content   Content of the entry.
+     * @throws IOException If the entry can't be written.
+     */
+    public static void writeStoredEntry(ZipOutputStream zip, String entryName, EntryContent content)
+	    throws IOException {
+	byte[] buffer = new byte[ImageUtil.DECODE_BUFFER_SIZE];
+	CRC32 crc = new CRC32();
+	long size = 0;
+	try (InputStream in = content.open()) {
+	    int count;
+	    while ((count = in.read(buffer)) >= 0) {
+		crc.update(buffer, 0, count);
+		size += count;
+	    }
+	}
+
+	ZipEntry entry = new ZipEntry(entryName);
+	entry.setMethod(ZipEntry.STORED);
+	entry.setSize(size);
+	entry.setCompressedSize(size);
+	entry.setCrc(crc.getValue());
+	zip.putNextEntry(entry);
+	try (InputStream in = content.open()) {
+	    int count;
+	    while ((count = in.read(buffer)) >= 0) {
+		zip.write(buffer, 0, count);
+	    }
+	}
+	zip.closeEntry();
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Test of the class {@link SmsBackupFileFastParser}.
+ */
+class TestSmsBackupFileFastParser {
+
+    private static final String DATA = "QUJD".repeat(30);
+
+    private static final String XML = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\r\n"
+	    + "<!--File Created By SMS Backup & Restore -> v10 -->\r\n"
+	    + "<smses count=\"5\">\r\n"
+	    + "  <sms address=\"+33612345678\" date=\"1000\" type=\"2\" body=\"a &gt; b &amp; &#233;&#x1F600;&#128512; /&gt;\""
+	    + " contact_name=\"Zoë &quot;Z&quot;\" />\r\n"
+	    + "  <sms address=\"0612\" date=\"2000\" type=\"1\" body=\"line1\r\nline2\tend\" readable_date=\"x\"></sms>\n"
+	    + "  <mms date=\"3000\" address=\"0613\" m_type=\"128\" snippet=\"null\"><parts>\n"
+	    + "    <part ct=\"image/png\" cl=\"a.png\" data=\"" + DATA + "\" />\n"
+	    + "    <!-- comment --><part ct=\"image/png\" cl=\"b.png\" data='é" + DATA + "' />\n"
+	    + "  </parts><addrs><addr address=\"0613\" type=\"137\"/></addrs></mms>\n"
+	    + "  <sms address=\"0614\" date=\"4000\" body=\"text follows\">text</sms>\n"
+	    + "  <sms address=\"0615\" date=\"5000\" body=\"last\" />\n"
+	    + "</smses>\n";
+
+    /**
+     * Records the events of a parser.
+     */
+    private static class EventRecorder extends SmsBackupContentHandler {
+
+	private SpilledAttributeStore mStore;
+	private List<String> mEvents = new ArrayList<>();
+
+	EventRecorder(SpilledAttributeStore store) {
+	    mStore = store;
+	}
+
+	@Override
+	public void startElement(String name, String[] values) {
+	    if (!name.equals("smses")) {
+		String[] read = values.clone();
+		for (int i = 0; i < read.length; i++) {
+		    if (SpilledAttributeStore.isToken(read[i])) {
+			read[i] = "spilled:" + mStore.take(read[i]).getBase64();
+		    }
+		}
+		mEvents.add(name + Arrays.toString(read));
+	    }
+	}
+
+	@Override
+	public void endElement(String name) {
+	    if (!name.equals("smses")) {
+		mEvents.add("/" + name);
+	    }
+	}
+    }
+
+    @Test
+    @DisplayName("The handler receives the same events as with the SAX parser")
+    void testSameEvents(@TempDir File dir) throws IOException, SAXException, ParserConfigurationException {
+	Path file = new File(dir, "backup.xml").toPath();
+	Files.writeString(file, XML, StandardCharsets.UTF_8);
+
+	SpilledAttributeStore saxStore = new SpilledAttributeStore(dir);
+	EventRecorder sax = new EventRecorder(saxStore);
+	try (Reader in = new SmsBackupFileReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8),
+		Set.of("data"), saxStore, 100)) {
+	    SmsBackupFile.newParser().parse(new InputSource(in), sax);
+	}
+
+	// Small mapped parts, so that the file is mapped several times
+	for (int windowSize : new int[] { 1024 * 1024, 500, 200 }) {
+	    SpilledAttributeStore store = new SpilledAttributeStore(dir);
+	    EventRecorder fast = new EventRecorder(store);
+	    new SmsBackupFileFastParser(fast, store, 100, windowSize).parse(file);
+	    assertEquals(sax.mEvents, fast.mEvents, "Window of " + windowSize + " bytes");
+	    store.dispose();
+	}
+	saxStore.dispose();
+    }
+
+    @Test
+    @DisplayName("Values are decoded, and unexpected content is left to SAX")
+    void testValues(@TempDir File dir) throws IOException, SAXException, ParserConfigurationException {
+	Path file = new File(dir, "backup.xml").toPath();
+	Files.writeString(file, XML, StandardCharsets.UTF_8);
+
+	SpilledAttributeStore store = new SpilledAttributeStore(dir);
+	EventRecorder recorder = new EventRecorder(store);
+	SmsBackupFileFastParser parser = new SmsBackupFileFastParser(recorder, store, 100, 1024 * 1024);
+	parser.parse(file);
+
+	// The non ASCII data of the 2nd part can't be spilled as is, and the text
+	// in the 4th message is not expected
+	assertEquals(2, parser.getFallbackCount());
+	assertEquals(20, recorder.mEvents.size());
+	assertEquals("sms[+33612345678, 1000, Zoë \"Z\", null, 2, a > b & emoji://233;😀emoji://128512; />, null, null, "
+		+ "null, null, null, null]", recorder.mEvents.get(0));
+	assertEquals("sms[0612, 2000, null, null, 1, line1 line2 end, null, null, null, null, null, null]",
+		recorder.mEvents.get(2));
+	assertEquals("part[null, null, null, null, null, null, null, null, null, a.png, image/png, spilled:" + DATA + "]",
+		recorder.mEvents.get(6));
+	store.dispose();
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.smsbr.desktop.model.Contact;
+
+/**
+ * Test of the class {@link SmsBackupFileLoadOptions}.
+ */
+class TestSmsBackupFileLoadOptions {
+
+    private static final Contact CONTACT = new Contact("+33612345678", "Someone");
+
+    @Test
+    @DisplayName("Default options accept every message")
+    void testNoFilter() {
+	SmsBackupFileLoadOptions options = new SmsBackupFileLoadOptions();
+	assertFalse(options.isFiltering());
+	assertTrue(options.isAccepted(CONTACT, 0L));
+    }
+
+    @Test
+    @DisplayName("Contacts are matched by name or by phone number digits")
+    void testContacts() {
+	SmsBackupFileLoadOptions options = new SmsBackupFileLoadOptions();
+	options.setContacts(List.of(" someone ", ""));
+	assertTrue(options.isFiltering());
+	assertTrue(options.isAccepted(CONTACT, 0L));
+	assertFalse(options.isAccepted(new Contact("+33698765432", "Other"), 0L));
+
+	options.setContacts(List.of("06 12 34 56 78"));
+	assertTrue(options.isAccepted(CONTACT, 0L));
+	assertTrue(options.isAccepted(new Contact("0612345678", "Other"), 0L));
+	assertFalse(options.isAccepted(new Contact("5678", "Other"), 0L));
+    }
+
+    @Test
+    @DisplayName("Dates are filtered inclusively")
+    void testDateRange() {
+	SmsBackupFileLoadOptions options = new SmsBackupFileLoadOptions();
+	options.setDateRange(1000L, 2000L);
+	assertFalse(options.isAccepted(CONTACT, 999L));
+	assertTrue(options.isAccepted(CONTACT, 1000L));
+	assertTrue(options.isAccepted(CONTACT, 2000L));
+	assertFalse(options.isAccepted(CONTACT, 2001L));
+    }
+}
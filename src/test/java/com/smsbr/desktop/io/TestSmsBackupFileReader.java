@@ -0,0 +1,76 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.smsbr.desktop.model.ImagePayload;
+
+/**
+ * Test of the class {@link SmsBackupFileReader}.
+ */
+class TestSmsBackupFileReader {
+
+    /**
+     * Read a whole content through a reader.
+     */
+    private static String readAll(Reader reader) throws IOException {
+	StringWriter out = new StringWriter();
+	try (reader) {
+	    reader.transferTo(out);
+	}
+	return out.toString();
+    }
+
+    @Test
+    @DisplayName("Emoji codes are replaced, other character references are kept")
+    void testEmojiCodes() throws IOException {
+	String xml = "<sms body=\"&#128512;&#10;&amp;&#x1F600;&#&#55357;\" />&#128512";
+	assertEquals("<sms body=\"emoji://128512;&#10;&amp;&#x1F600;&#emoji://55357;\" />&#128512",
+		readAll(new SmsBackupFileReader(new StringReader(xml))));
+    }
+
+    @Test
+    @DisplayName("Oversized values of the chosen attributes are spilled, and stored once")
+    void testSpilledAttributes(@TempDir File dir) throws IOException {
+	String big = "A".repeat(100);
+	String xml = "<?xml version='1.0'?><!-- data=\"" + big + "\" --><smses><part data=\"" + big
+		+ "\" text=\"" + big + "\"/><part DATA = '" + big + "'/><part data=\"small\"/></smses>";
+
+	SpilledAttributeStore store = new SpilledAttributeStore(dir);
+	String content = readAll(new SmsBackupFileReader(new StringReader(xml), Set.of("data"), store, 10));
+	assertEquals("<?xml version='1.0'?><!-- data=\"" + big + "\" --><smses><part data=\"spilled://0\" text=\"" + big
+		+ "\"/><part DATA = 'spilled://1'/><part data=\"small\"/></smses>", content);
+
+	ImagePayload payload = store.take("spilled://0");
+	assertEquals(big, payload.getBase64());
+	assertEquals(ImagePayload.computeHash(big), payload.getContentHash());
+	assertSame(payload, store.take("spilled://1"));
+	store.dispose();
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Test of the class {@link SmsBackupFileScanner}.
+ */
+class TestSmsBackupFileScanner {
+
+    private static final String XML = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n"
+	    + "<!--File Created By SMS Backup & Restore -> v10 -->\n"
+	    + "<smses count=\"3\">\n"
+	    + "  <sms address=\"+33612345678\" date=\"1000\" body=\"a &gt; b &amp; &#233; /&gt;\" contact_name=\"Jo &quot;J&quot;\" />\n"
+	    + "  <mms date=\"2000\" address=\"0612\" contact_name='X'><parts><part text=\"<smil>\"/></parts></mms>\n"
+	    + "  <sms address=\"9\" date=\"3000\" body=\"&lt;/sms&gt;\"></sms>\n"
+	    + "</smses>\n";
+
+    @Test
+    @DisplayName("Message elements are found with their byte ranges and attributes")
+    void testScan(@TempDir File dir) throws IOException {
+	Path file = new File(dir, "backup.xml").toPath();
+	Files.writeString(file, XML, StandardCharsets.UTF_8);
+	byte[] bytes = Files.readAllBytes(file);
+
+	List<String> elements = new ArrayList<>();
+	List<Attributes> attributes = new ArrayList<>();
+	boolean isComplete = new SmsBackupFileScanner(Set.of("sms", "mms")).scan(file, (name, atts, start, end) -> {
+	    elements.add(new String(bytes, (int) start, (int) (end - start), StandardCharsets.UTF_8));
+	    attributes.add(atts);
+	}, () -> false, null);
+
+	assertTrue(isComplete);
+	assertEquals(3, elements.size());
+	assertTrue(elements.get(0).startsWith("<sms address=\"+33612345678\"") && elements.get(0).endsWith("/>"));
+	assertTrue(elements.get(1).startsWith("<mms") && elements.get(1).endsWith("</mms>"));
+	assertEquals("<sms address=\"9\" date=\"3000\" body=\"&lt;/sms&gt;\"></sms>", elements.get(2));
+
+	assertEquals("a > b & emoji://233; />", attributes.get(0).getValue("body"));
+	assertEquals("Jo \"J\"", attributes.get(0).getValue("contact_name"));
+	assertEquals("X", attributes.get(1).getValue("contact_name"));
+	assertEquals("</sms>", attributes.get(2).getValue("body"));
+    }
+
+    @Test
+    @DisplayName("Only the requested attributes are read")
+    void testAttributeNames(@TempDir File dir) throws IOException {
+	Path file = new File(dir, "backup.xml").toPath();
+	Files.writeString(file, XML, StandardCharsets.UTF_8);
+
+	List<Attributes> attributes = new ArrayList<>();
+	new SmsBackupFileScanner(Set.of("sms"), Set.of("ADDRESS", "date", "Contact_Name")).scan(file,
+		(name, atts, start, end) -> attributes.add(atts), () -> false, null);
+
+	assertEquals(2, attributes.size());
+	assertEquals("+33612345678", attributes.get(0).getValue("address"));
+	assertEquals("1000", attributes.get(0).getValue("date"));
+	assertEquals("Jo \"J\"", attributes.get(0).getValue("contact_name"));
+	assertNull(attributes.get(0).getValue("body"));
+    }
+
+    @Test
+    @DisplayName("Attribute values are the same as with a full load")
+    void testSameValuesAsFullLoad(@TempDir File dir) throws Exception {
+	String xml = "<smses><sms contact_name=\"Jo&#128512;\tB\r\nC&#10;D&#x41; &amp;&#65;\" /></smses>";
+	Path file = new File(dir, "backup.xml").toPath();
+	Files.writeString(file, xml, StandardCharsets.UTF_8);
+
+	List<String> names = new ArrayList<>();
+	new SmsBackupFileScanner(Set.of("sms"), Set.of("contact_name")).scan(file,
+		(name, atts, start, end) -> names.add(atts.getValue("contact_name")), () -> false, null);
+	SAXParserFactory.newInstance().newSAXParser().parse(
+		new InputSource(new SmsBackupFileReader(new StringReader(xml))), new DefaultHandler() {
+		    @Override
+		    public void startElement(String uri, String localName, String qName, Attributes atts) {
+			if (qName.equals("sms")) {
+			    names.add(atts.getValue("contact_name"));
+			}
+		    }
+		});
+
+	assertEquals(2, names.size());
+	assertEquals("Joemoji://128512; B C\nDA &A", names.get(0));
+	assertEquals(names.get(1), names.get(0));
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test of the class {@link ColumnarMessageStore}.
+ */
+class TestColumnarMessageStore {
+
+    @Test
+    @DisplayName("Messages are stored by contact and sorted by date")
+    void testAddAndGet() {
+	Contact john = new Contact("+33695142235", "John");
+	Contact debbie = new Contact("+33632145147", "Debbie");
+	ColumnarMessageStore store = new ColumnarMessageStore();
+	store.add(new Sms(3000, true, false, "Third", john));
+	store.add(new Sms(1000, false, true, "First \u00e9", john));
+	store.add(new Sms(2000, false, false, null, john));
+	store.add(new Sms(3000, false, false, "Fourth", john));
+	store.add(new Sms(500, false, false, "Hi", debbie));
+
+	// Messages added out of order can't be read before the store is sealed
+	assertThrows(IllegalStateException.class, () -> store.getDate(john, 0));
+	store.seal();
+
+	assertEquals(2, store.getContacts().size());
+	assertEquals(4, store.size(john));
+	assertEquals(0, store.size(new Contact("+33600000000", "Nobody")));
+
+	List<Sms> messages = store.getMessages(john, 0, 4);
+	assertEquals(List.of("First \u00e9", "Third", "Fourth"),
+		List.of(messages.get(0).getBody(), messages.get(2).getBody(), messages.get(3).getBody()));
+	assertNull(messages.get(1).getBody());
+	assertTrue(messages.get(0).isDraft());
+	assertFalse(messages.get(0).isMe());
+	assertTrue(messages.get(2).isMe());
+	assertSame(john, messages.get(0).getContact());
+	assertEquals(1000, store.getDate(john, 0));
+	assertEquals(3000, store.getDate(john, 3));
+    }
+
+    @Test
+    @DisplayName("A sealed store can be read by several threads at the same time")
+    void testConcurrentReads() throws Exception {
+	List<Contact> contacts = List.of(new Contact("+33695142235", "John"), new Contact("+33632145147", "Debbie"));
+	ColumnarMessageStore store = new ColumnarMessageStore();
+	int count = 2000;
+	for (int i = 0; i < count; i++) {
+	    // Dates in reverse order : every conversation has to be sorted
+	    long date = (count - i) * 1000L;
+	    for (Contact contact : contacts) {
+		store.add(new Sms(date, i % 2 == 0, false, String.valueOf(date), contact));
+	    }
+	}
+	store.seal();
+
+	ExecutorService executor = Executors.newFixedThreadPool(8);
+	try {
+	    List<Future<?>> futures = new ArrayList<>();
+	    for (int t = 0; t < 32; t++) {
+		Contact contact = contacts.get(t % contacts.size());
+		futures.add(executor.submit(() -> {
+		    assertEquals(1000L, store.getDate(contact, 0));
+		    List<Sms> messages = store.getMessages(contact, 0, count);
+		    for (int i = 0; i < count; i++) {
+			Sms sms = messages.get(i);
+			assertEquals((i + 1) * 1000L, sms.getDate());
+			// Each body and flag stays with its date
+			assertEquals(String.valueOf(sms.getDate()), sms.getBody());
+			assertEquals((count - i - 1) % 2 == 0, sms.isMe());
+		    }
+		    return null;
+		}));
+	    }
+	    for (Future<?> future : futures) {
+		future.get();
+	    }
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    @Test
+    @DisplayName("Images and recipients are kept, and removed with the conversation")
+    void testImagesAndRemove() {
+	Contact john = new Contact("+33695142235", "John");
+	ImagePart image = new ImagePart("image/png", "a.png", "aGVsbG8=", 10, 10);
+	Sms mms = new Sms(1000, true, false, "Look", john);
+	mms.add(image);
+	mms.addRecipient("+33695142235", 151);
+	ColumnarMessageStore store = new ColumnarMessageStore();
+	store.add(mms);
+	store.add(new Sms(2000, false, false, "Nice", john));
+
+	List<Sms> withImages = store.getMessagesWithImages(john);
+	assertEquals(1, withImages.size());
+	assertSame(image, withImages.get(0).getImages().get(0));
+	assertEquals(List.of("+33695142235"), withImages.get(0).getRecipients());
+	assertTrue(store.getMessages(john, 1, 2).get(0).getImages().isEmpty());
+
+	store.remove(john);
+	assertEquals(0, store.size(john));
+	assertTrue(store.mImages.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Bodies can be stored off-heap, even when they are bigger than a chunk")
+    void testDirectTextArena() {
+	Contact john = new Contact("+33695142235", "John");
+	ColumnarMessageStore store = new ColumnarMessageStore(new DirectTextArena(16));
+	String longBody = "A long message \u00e9\u00e8\u00e0 that doesn't fit in a chunk";
+	store.add(new Sms(1000, true, false, "Hello", john));
+	store.add(new Sms(2000, false, false, longBody, john));
+	store.add(new Sms(3000, false, false, "Bye", john));
+
+	List<Sms> messages = store.getMessages(john, 0, 3);
+	assertEquals(List.of("Hello", longBody, "Bye"),
+		List.of(messages.get(0).getBody(), messages.get(1).getBody(), messages.get(2).getBody()));
+    }
+
+    @Test
+    @DisplayName("Bodies and images can be spilled to a temporary file, deleted on dispose")
+    void testMappedTextArena(@TempDir File dir) throws IOException {
+	Contact john = new Contact("+33695142235", "John");
+	MappedTextArena arena = new MappedTextArena(dir, 32, 1);
+	ColumnarMessageStore store = new ColumnarMessageStore(arena, arena);
+	ImagePayload payload = new ImagePayload("iVBORw0KGgo=");
+	Sms withImage = new Sms(2000, false, false, "Look \u00e0 this", john);
+	withImage.add(new ImagePart("image/png", "image.png", payload, 10, 10));
+	store.add(new Sms(1000, true, false, "A message longer than a segment of the arena", john));
+	store.add(withImage);
+
+	assertTrue(payload.isSpilled());
+	List<Sms> messages = store.getMessages(john, 0, 2);
+	assertEquals("A message longer than a segment of the arena", messages.get(0).getBody());
+	assertEquals("Look \u00e0 this", messages.get(1).getBody());
+	assertEquals("iVBORw0KGgo=", messages.get(1).getImages().get(0).getBase64());
+	assertEquals(1, dir.list().length);
+
+	store.dispose();
+	assertEquals(0, dir.list().length);
+	assertThrows(IllegalStateException.class, () -> arena.get(0, 1));
+    }
+}
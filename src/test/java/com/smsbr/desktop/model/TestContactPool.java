@@ -0,0 +1,54 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of the class {@link ContactPool}.
+ */
+class TestContactPool {
+
+    @Test
+    @DisplayName("Each phone number is represented by a single contact")
+    void testIntern() {
+	ContactPool pool = new ContactPool();
+	Contact c1 = pool.intern("+33684552136", "Someone");
+	Contact c2 = pool.intern("+33684552136", "Someone else");
+	Contact c3 = pool.intern("+33625147896", "Another one");
+
+	assertSame(c1, c2);
+	assertNotSame(c1, c3);
+	assertEquals("Someone", c2.getCompleteName());
+	assertEquals(2, pool.size());
+    }
+
+    @Test
+    @DisplayName("A contact without name is given the name found later")
+    void testNameCompletion() {
+	ContactPool pool = new ContactPool();
+	Contact c1 = pool.intern("+33684552136", "");
+	Contact c2 = pool.intern("+33684552136", "Someone");
+
+	assertSame(c1, c2);
+	assertEquals("Someone", c1.getCompleteName());
+    }
+}
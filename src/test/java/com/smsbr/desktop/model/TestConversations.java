@@ -16,7 +16,10 @@
 package com.smsbr.desktop.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.jupiter.api.DisplayName;
@@ -70,4 +73,50 @@ class TestConversations {
 	assertEquals(sms2, conversationWithJohn.get(1));
 	assertEquals(sms3, conversationWithJohn.get(2));
     }
+
+    @Test
+    @DisplayName("Conversations are iterated page by page in both orders")
+    void testConversationPages() {
+	Contact john = new Contact("+33695142235", "John");
+	Conversations conversations = new Conversations();
+	for (int i = 0; i < 5; i++) {
+	    conversations.add(new Sms(1000L * i, i % 2 == 0, false, "Message " + i, john));
+	}
+
+	List<Sms> asc = new ArrayList<>();
+	List<Integer> pageSizes = new ArrayList<>();
+	for (List<Sms> page : conversations.getConversationPages(john, Order.ASC, 2)) {
+	    asc.addAll(page);
+	    pageSizes.add(page.size());
+	}
+	assertEquals(conversations.getConversation(john, Order.ASC), asc);
+	assertEquals(List.of(2, 2, 1), pageSizes);
+
+	List<Sms> desc = new ArrayList<>();
+	conversations.getConversationPages(john, Order.DESC, 2).forEach(desc::addAll);
+	assertEquals(conversations.getConversation(john, Order.DESC), desc);
+    }
+
+    @Test
+    @DisplayName("Conversations used by background tasks are disposed when the last task ends")
+    void testDeferredDispose() {
+	Conversations conversations = new Conversations();
+	boolean[] isDisposed = { false };
+	conversations.addDisposeAction(() -> isDisposed[0] = true);
+
+	conversations.retain();
+	conversations.retain();
+	conversations.dispose();
+	assertFalse(isDisposed[0]);
+	conversations.release();
+	assertFalse(isDisposed[0]);
+	conversations.release();
+	assertTrue(isDisposed[0]);
+
+	// Not used by any task : disposed at once
+	Conversations other = new Conversations();
+	other.addDisposeAction(() -> isDisposed[0] = false);
+	other.dispose();
+	assertFalse(isDisposed[0]);
+    }
 }
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of the class {@link ImagePayloadStore}.
+ */
+class TestImagePayloadStore {
+
+    @Test
+    @DisplayName("Identical contents share the same payload")
+    void testIntern() {
+	ImagePayloadStore store = new ImagePayloadStore();
+	ImagePayload p1 = store.intern(new String("aGVsbG8="));
+	ImagePayload p2 = store.intern(new String("aGVsbG8="));
+	ImagePayload p3 = store.intern("d29ybGQ=");
+
+	assertSame(p1, p2);
+	assertNotSame(p1, p3);
+	assertEquals(2, store.size());
+	assertEquals(1, store.getDuplicateCount());
+    }
+
+    @Test
+    @DisplayName("Image parts sharing a payload have the same hash, but their own id")
+    void testSharedImageParts() {
+	ImagePayloadStore store = new ImagePayloadStore();
+	ImagePart i1 = new ImagePart("image/png", "a.png", store.intern("aGVsbG8="), 10, 10);
+	ImagePart i2 = new ImagePart("image/png", "b.png", store.intern("aGVsbG8="), 10, 10);
+	ImagePart i3 = new ImagePart("image/png", "c.png", "aGVsbG8=", 10, 10);
+
+	assertNotEquals(i1.getUniqueId(), i2.getUniqueId());
+	assertSame(i1.getPayload(), i2.getPayload());
+	assertEquals(i1.getContentHash(), i3.getContentHash());
+	assertSame(i1.getBase64(), i2.getBase64());
+    }
+}
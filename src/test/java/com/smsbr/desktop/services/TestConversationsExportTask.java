@@ -0,0 +1,49 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.smsbr.desktop.model.Contact;
+
+/**
+ * Test of the class {@link ConversationsExportTask}.
+ */
+class TestConversationsExportTask {
+
+    @Test
+    @DisplayName("Contacts with the same name are exported in different files")
+    void testGetExportFiles() {
+	File dir = new File("export");
+	Contact bob1 = new Contact("+33625147896", "Bob");
+	Contact bob2 = new Contact("+33625147897", "BOB");
+	Contact alice = new Contact("+33625147898", "Alice");
+	Map<Contact, File> files = ConversationsExportTask.getExportFiles(List.of(bob1, alice, bob2, bob1), dir);
+
+	assertEquals(List.of(bob1, alice, bob2), List.copyOf(files.keySet()));
+	assertEquals(new File(dir, "Bob (+33625147896).html"), files.get(bob1));
+	assertEquals(new File(dir, "BOB (+33625147897).html"), files.get(bob2));
+	assertEquals(new File(dir, "Alice.html"), files.get(alice));
+	assertEquals(ConversationsExportTask.getExportFile(alice, dir), files.get(alice));
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test of the class {@link ExportAssetResolver}.
+ */
+class TestExportAssetResolver {
+
+    @Test
+    @DisplayName("Emoji images are copied once in the assets directory")
+    void testEmoji(@TempDir File dir) throws IOException {
+	ExportAssetResolver assets = new ExportAssetResolver(dir);
+	String source = assets.getEmojiSource("/emojis/0x1F600.png");
+
+	assertEquals("assets/emojis/0x1F600.png", source);
+	assertTrue(new File(dir, source).isFile());
+	assertEquals(source, assets.getEmojiSource("/emojis/0x1F600.png"));
+    }
+
+    @Test
+    @DisplayName("A code without emoji image is skipped without failing the export")
+    void testMissingEmoji(@TempDir File dir) throws IOException {
+	ExportAssetResolver assets = new ExportAssetResolver(dir);
+
+	assertNull(assets.getEmojiSource("/emojis/0x233.png"));
+	assertFalse(new File(dir, "assets/emojis/0x233.png").exists());
+	assertEquals("&#233;", new Htmlizer(null, null).getHtmlElementForHtmlEmojiCode("233", assets));
+    }
+}
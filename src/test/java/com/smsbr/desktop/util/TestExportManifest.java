@@ -0,0 +1,74 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.smsbr.desktop.model.Contact;
+import com.smsbr.desktop.model.Sms;
+
+/**
+ * Test of the class {@link ExportManifest}.
+ */
+class TestExportManifest {
+
+    private static final Contact CONTACT = new Contact("+33625147896", "Someone");
+
+    @Test
+    @DisplayName("The hash depends on the messages and on the rendering options")
+    void testComputeHash() {
+	Sms sms1 = new Sms(1000L, true, false, "Hello", CONTACT);
+	Sms sms2 = new Sms(2000L, false, false, "Hi", CONTACT);
+	String hash = ExportManifest.computeHash("key", List.of(List.of(sms1), List.of(sms2)));
+
+	assertEquals(hash, ExportManifest.computeHash("key", List.of(List.of(sms1, sms2))));
+	assertNotEquals(hash, ExportManifest.computeHash("other key", List.of(List.of(sms1, sms2))));
+	assertNotEquals(hash, ExportManifest.computeHash("key", List.of(List.of(sms1))));
+	assertNotEquals(hash, ExportManifest.computeHash("key",
+		List.of(List.of(sms1, new Sms(2000L, false, false, "Hi!", CONTACT)))));
+    }
+
+    @Test
+    @DisplayName("Hashes are saved in the export directory and read again")
+    void testSaveAndLoad(@TempDir File dir) throws IOException {
+	File exported = new File(dir, "Someone.html");
+	Files.writeString(exported.toPath(), "<html></html>");
+	File missing = new File(dir, "Missing.html");
+
+	ExportManifest manifest = new ExportManifest(dir);
+	assertFalse(manifest.isUpToDate(exported, "abc"));
+	manifest.put(exported, "abc");
+	manifest.put(missing, "def");
+	manifest.save();
+
+	ExportManifest reloaded = new ExportManifest(dir);
+	assertTrue(reloaded.isUpToDate(exported, "abc"));
+	assertFalse(reloaded.isUpToDate(exported, "abd"));
+	assertFalse(reloaded.isUpToDate(missing, "def"));
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Test of the class {@link ImageCache}.
+ */
+class TestImageCache {
+
+    /** Estimated size of a 10x10 image. */
+    private static final long IMAGE_SIZE = 10 * 10 * 4;
+
+    @Test
+    @DisplayName("The least recently used images are evicted when the cache is full")
+    void testEviction() throws IOException {
+	ImageCache cache = new ImageCache(2 * IMAGE_SIZE);
+	Image a = new WritableImage(10, 10);
+	cache.put("a", a);
+	cache.put("b", new WritableImage(10, 10));
+	assertEquals(2 * IMAGE_SIZE, cache.getSizeInBytes());
+
+	// "a" becomes the most recently used one, "b" is evicted instead
+	assertSame(a, cache.get("a", () -> null));
+	cache.put("c", new WritableImage(10, 10));
+	assertEquals(2, cache.getImageCount());
+	assertEquals(2 * IMAGE_SIZE, cache.getSizeInBytes());
+	assertEquals(1, cache.getEvictionCount());
+
+	Image b = new WritableImage(10, 10);
+	assertSame(b, cache.get("b", () -> b));
+	assertEquals(2, cache.getEvictionCount());
+	assertSame(b, cache.get("b", () -> null));
+    }
+
+    @Test
+    @DisplayName("The cache is bounded by the estimated size of the pixels")
+    void testSizeBound() {
+	ImageCache cache = new ImageCache(2 * IMAGE_SIZE);
+	cache.put("small", new WritableImage(10, 10));
+	cache.put("large", new WritableImage(10, 20));
+	assertEquals(1, cache.getImageCount());
+	assertEquals(2 * IMAGE_SIZE, cache.getSizeInBytes());
+
+	// Images larger than the cache itself are ignored
+	cache.put("huge", new WritableImage(30, 10));
+	assertEquals(1, cache.getImageCount());
+	assertEquals(2 * IMAGE_SIZE, cache.getSizeInBytes());
+
+	// Replacing an image updates the size
+	cache.put("large", new WritableImage(10, 10));
+	assertEquals(IMAGE_SIZE, cache.getSizeInBytes());
+
+	cache.clear();
+	assertEquals(0, cache.getImageCount());
+	assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    @DisplayName("Hits and misses are counted, and images are decoded only on misses")
+    void testCounters() throws IOException {
+	ImageCache cache = new ImageCache(ImageCache.DEFAULT_MAX_SIZE_IN_BYTES);
+	int[] loadCount = { 0 };
+	ImageCache.ImageLoader loader = () -> {
+	    loadCount[0]++;
+	    return new WritableImage(10, 10);
+	};
+	Image image = cache.get("a", loader);
+	assertSame(image, cache.get("a", loader));
+	assertSame(image, cache.get("a", loader));
+	cache.get("b", loader);
+
+	assertEquals(2, loadCount[0]);
+	assertEquals(2, cache.getHitCount());
+	assertEquals(2, cache.getMissCount());
+	assertEquals(0, cache.getEvictionCount());
+    }
+}
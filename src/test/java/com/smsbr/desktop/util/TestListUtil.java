@@ -0,0 +1,68 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of the class {@link ListUtil}.
+ */
+class TestListUtil {
+
+    @Test
+    @DisplayName("Identical lists are left unchanged")
+    void testIdenticalLists() {
+	List<String> target = new ArrayList<>(List.of("a", "b", "c"));
+	assertEquals(0, ListUtil.applyDiff(target, List.of("a", "b", "c")));
+	assertEquals(List.of("a", "b", "c"), target);
+    }
+
+    @Test
+    @DisplayName("Only new elements are inserted and missing elements removed")
+    void testInsertionsAndRemovals() {
+	List<String> target = new ArrayList<>(List.of("a", "b", "c", "d"));
+	assertEquals(2, ListUtil.applyDiff(target, List.of("a", "c", "d", "e")));
+	assertEquals(List.of("a", "c", "d", "e"), target);
+    }
+
+    @Test
+    @DisplayName("A moved element costs one removal and one insertion")
+    void testMove() {
+	List<String> target = new ArrayList<>(List.of("a", "b", "c", "d", "e"));
+	assertEquals(2, ListUtil.applyDiff(target, List.of("e", "a", "b", "c", "d")));
+	assertEquals(List.of("e", "a", "b", "c", "d"), target);
+    }
+
+    @Test
+    @DisplayName("Reversed and empty lists")
+    void testReverseAndEmpty() {
+	List<String> target = new ArrayList<>(List.of("a", "b", "c"));
+	ListUtil.applyDiff(target, List.of("c", "b", "a"));
+	assertEquals(List.of("c", "b", "a"), target);
+
+	assertEquals(3, ListUtil.applyDiff(target, List.of()));
+	assertEquals(List.of(), target);
+
+	assertEquals(2, ListUtil.applyDiff(target, List.of("x", "y")));
+	assertEquals(List.of("x", "y"), target);
+    }
+}
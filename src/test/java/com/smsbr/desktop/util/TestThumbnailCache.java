@@ -0,0 +1,95 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test of the class {@link ThumbnailCache}.
+ */
+class TestThumbnailCache {
+
+    private static final int ENTRY_SIZE = 40;
+
+    @Test
+    @DisplayName("The least recently used thumbnails are deleted when the cache is full")
+    void testEviction(@TempDir File dir) throws IOException {
+	ThumbnailCache cache = new ThumbnailCache(dir, 10, 2 * ENTRY_SIZE);
+	add(cache, "a");
+	add(cache, "b");
+	assertEquals(2 * ENTRY_SIZE, cache.getSizeInBytes());
+
+	// "a" becomes the most recently used one, "b" is evicted instead
+	assertTrue(cache.touchEntry("a"));
+	add(cache, "c");
+	assertEquals(2 * ENTRY_SIZE, cache.getSizeInBytes());
+	assertTrue(cache.getFile("a").exists());
+	assertFalse(cache.getFile("b").exists());
+	assertTrue(cache.getFile("c").exists());
+	assertFalse(cache.touchEntry("b"));
+
+	cache.removeEntry("a");
+	assertEquals(ENTRY_SIZE, cache.getSizeInBytes());
+	assertFalse(cache.getFile("a").exists());
+    }
+
+    @Test
+    @DisplayName("The order of use is kept across sessions by the modification dates of the files")
+    void testTouchAcrossSessions(@TempDir File dir) throws IOException {
+	ThumbnailCache cache = new ThumbnailCache(dir, 10, ThumbnailCache.DEFAULT_MAX_SIZE_IN_BYTES);
+	add(cache, "a");
+	add(cache, "b");
+	add(cache, "c");
+	long now = System.currentTimeMillis();
+	cache.getFile("a").setLastModified(now - 30_000);
+	cache.getFile("b").setLastModified(now - 20_000);
+	cache.getFile("c").setLastModified(now - 10_000);
+
+	// Touching "a" makes it the most recent file on disk
+	assertTrue(cache.touchEntry("a"));
+	assertTrue(cache.getFile("a").lastModified() > cache.getFile("c").lastModified());
+
+	// The next session, with a smaller cache, evicts "b" then "c"
+	ThumbnailCache reloaded = new ThumbnailCache(dir, 10, ENTRY_SIZE);
+	assertEquals(ENTRY_SIZE, reloaded.getSizeInBytes());
+	assertTrue(reloaded.getFile("a").exists());
+	assertFalse(reloaded.getFile("b").exists());
+	assertFalse(reloaded.getFile("c").exists());
+    }
+
+    /**
+     * Write the file of an entry and add it to the cache.
+     *
+     * @param cache The cache.
+     * @param key   Key of the entry.
+     * @throws IOException If the file can't be written.
+     */
+    private static void add(ThumbnailCache cache, String key) throws IOException {
+	File file = cache.getFile(key);
+	Files.write(file.toPath(), new byte[ENTRY_SIZE]);
+	cache.addEntry(key, file.length());
+    }
+}
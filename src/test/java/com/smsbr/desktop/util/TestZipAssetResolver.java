@@ -0,0 +1,59 @@
+/**
+ * Copyright 2022 Alexandre DERMONT
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.smsbr.desktop.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test of the class {@link ZipAssetResolver}.
+ */
+class TestZipAssetResolver {
+
+    @Test
+    @DisplayName("A code without emoji image is skipped without failing the archive")
+    void testMissingEmoji() throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+	    ZipAssetResolver assets = new ZipAssetResolver(zip);
+	    assertNull(assets.getEmojiSource("/emojis/0x233.png"));
+	    assertEquals("assets/emojis/0x1F600.png", assets.getEmojiSource("/emojis/0x1F600.png"));
+	    assertEquals("assets/emojis/0x1F600.png", assets.getEmojiSource("/emojis/0x1F600.png"));
+	    assets.writePendingAssets();
+	}
+
+	List<String> entries = new ArrayList<>();
+	try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+	    ZipEntry entry;
+	    while ((entry = zip.getNextEntry()) != null) {
+		entries.add(entry.getName());
+	    }
+	}
+	assertEquals(List.of("assets/emojis/0x1F600.png"), entries);
+    }
+}